@@ -8,6 +8,7 @@ import javafx.scene.control.Hyperlink;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import se.myhappyplants.client.model.BoxTitle;
+import se.myhappyplants.client.model.ClientExecutor;
 import se.myhappyplants.client.model.LoggedInUser;
 import se.myhappyplants.client.model.RootName;
 import se.myhappyplants.client.model.Verifier;
@@ -91,32 +92,22 @@ public class LoginPaneController {
             return;
         }
 
-        Thread loginThread = new Thread(() -> {
-            Message loginMessage = new Message(MessageType.login, new User(txtFldEmail.getText(), passFldPassword.getText()));
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message loginResponse = connection.makeRequest(loginMessage);
-
-            if (loginResponse != null) {
-                if (loginResponse.isSuccess()) {
-                    LoggedInUser.getInstance().setUser(loginResponse.getUser());
-                    Platform.runLater(() -> new PopupBox("Now logged in as\n" + LoggedInUser.getInstance().getUser().getUsername()));
-                    try {
-                        switchToMainPane();
-                    }
-                    catch (IOException e) {
-                        e.printStackTrace();
-                    }
+        Message loginMessage = new Message(MessageType.login, new User(txtFldEmail.getText(), passFldPassword.getText()));
+        ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(loginMessage), loginResponse -> {
+            if (loginResponse.isSuccess()) {
+                LoggedInUser.getInstance().setUser(loginResponse.getUser());
+                new PopupBox("Now logged in as\n" + LoggedInUser.getInstance().getUser().getUsername());
+                try {
+                    switchToMainPane();
                 }
-                else {
-                    Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "Sorry, we couldn't find an account with that email or you typed the password wrong. Try again or create a new account."));
-
+                catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
             else {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "Sorry, we couldn't find an account with that email or you typed the password wrong. Try again or create a new account.");
             }
-        });
-        loginThread.start();
+        }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
     }
 
     /**
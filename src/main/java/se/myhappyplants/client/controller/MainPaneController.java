@@ -1,6 +1,5 @@
 package se.myhappyplants.client.controller;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.TabPane;
 import se.myhappyplants.client.model.BoxTitle;
@@ -15,7 +14,6 @@ import se.myhappyplants.shared.Plant;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controls the inputs from a 'logged in' user and is the mainPane for the GUI
@@ -105,31 +103,21 @@ public class MainPaneController {
     }
 
     public boolean addPlantToDB(Plant plantToAdd, String database) {
-        AtomicBoolean success = new AtomicBoolean(false);
-        Thread addPlantThread = new Thread(() ->  {
-            Message savePlant = null;
-            if(database.equals("wishlist")){
-                savePlant = new Message(MessageType.savePlantWishlist, LoggedInUser.getInstance().getUser(), plantToAdd);
-            }else if (database.equals("library")){
-                savePlant = new Message(MessageType.savePlant, LoggedInUser.getInstance().getUser(), plantToAdd);
-            }
-
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(savePlant);
-            if (!response.isSuccess()) {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
-            }else {
-                success.set(true);
-            }
-        });
-        addPlantThread.start();
-
-        try {
-            addPlantThread.join(); // Wait for the thread to finish
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        Message savePlant = null;
+        if(database.equals("wishlist")){
+            savePlant = new Message(MessageType.savePlantWishlist, LoggedInUser.getInstance().getUser(), plantToAdd);
+        }else if (database.equals("library")){
+            savePlant = new Message(MessageType.savePlant, LoggedInUser.getInstance().getUser(), plantToAdd);
+        }
+
+        // the caller needs the answer, so wait for it here instead of starting a thread and joining it
+        ServerConnection connection = ServerConnection.getClientConnection();
+        Message response = connection.makeRequest(savePlant);
+        if (response == null || !response.isSuccess()) {
+            MessageBox.displayLater(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
+            return false;
         }
-        return success.get();
+        return true;
     }
 
 
@@ -19,6 +19,7 @@ import se.myhappyplants.client.view.ServerConnection;
 import se.myhappyplants.client.util.ImageUtils;
 import se.myhappyplants.client.view.LibraryPlantPane;
 import se.myhappyplants.client.view.MessageBox;
+import se.myhappyplants.client.view.PlantListCell;
 import se.myhappyplants.client.view.PopupBox;
 import se.myhappyplants.shared.*;
 import se.myhappyplants.client.model.SetAvatar;
@@ -30,7 +31,13 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Controller with logic used by the "My Plants" tab
@@ -44,6 +51,10 @@ public class MyPlantsTabPaneController {
 
     private List<Plant> currentUserLibrary = new ArrayList<>();
     private boolean isLoadingLibrary = true;
+    private final Set<Plant> expandedPlants = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, PlantDetails> plantDetailsCache = new ConcurrentHashMap<>();
+    private CompletableFuture<Message> libraryRequest;
+    private final LibraryMutationQueue mutationQueue = new LibraryMutationQueue(this::changesRolledBack);
 
     @FXML
     private MainPaneController mainPaneController;
@@ -58,7 +69,7 @@ public class MyPlantsTabPaneController {
     private ComboBox<SortingOption> cmbSortOption;
 
     @FXML
-    private ListView lstViewUserPlantLibrary;
+    private ListView<Plant> lstViewUserPlantLibrary;
 
     @FXML
     private ListView<String> lstViewNotifications;
@@ -83,6 +94,7 @@ public class MyPlantsTabPaneController {
         String avatarURL = SetAvatar.setAvatarOnLogin(loggedInUser.getUser().getEmail());
         imgUserAvatar.setFill(new ImagePattern(new Image(avatarURL)));
         cmbSortOption.setItems(ListSorter.sortOptionsLibrary());
+        lstViewUserPlantLibrary.setCellFactory(listView -> new PlantListCell<>(plant -> new LibraryPlantPane(this, plant)));
         addCurrentUserLibraryToHomeScreen();
         createCurrentUserLibraryFromDB();
     }
@@ -107,53 +119,47 @@ public class MyPlantsTabPaneController {
     }
 
     /**
-     * Method to add a users plants to myPlantsTab
+     * Method to add a users plants to myPlantsTab.
+     * The list only creates panes for the rows that can be seen and reuses them while scrolling.
      */
     @FXML
     public void addCurrentUserLibraryToHomeScreen() {
-        ObservableList<LibraryPlantPane> obsListLibraryPlantPane = FXCollections.observableArrayList();
-
-        if (isLoadingLibrary) {
+        ObservableList<Plant> obsListLibrary = FXCollections.observableArrayList(currentUserLibrary);
+        boolean loading = isLoadingLibrary;
+        if (loading || currentUserLibrary.isEmpty()) {
             disableButtons();
-            obsListLibraryPlantPane.add(new LibraryPlantPane(true));
         } else {
-            if (currentUserLibrary.isEmpty()) {
-                disableButtons();
-                obsListLibraryPlantPane.add(new LibraryPlantPane(this));
-            } else {
-                for (Plant plant : currentUserLibrary) {
-                    obsListLibraryPlantPane.add(new LibraryPlantPane(this, plant));
-                }
-                enableButtons();
-            }
+            enableButtons();
         }
         Platform.runLater(() -> {
-            lstViewUserPlantLibrary.setItems(obsListLibraryPlantPane);
+            lstViewUserPlantLibrary.setPlaceholder(loading ? new LibraryPlantPane(true) : new LibraryPlantPane(this));
+            lstViewUserPlantLibrary.setItems(obsListLibrary);
             sortLibrary();
         });
     }
 
     /**
-     * Method to create the logged in users library from the database
+     * Method to create the logged in users library from the database. A library that is still on its way
+     * is cancelled, so an older answer can't replace a newer one.
      */
     @FXML
     public void createCurrentUserLibraryFromDB() {
-        System.out.println("Entered createCurrentUserLibraryFromDB in MyPlantsTabPaneController");
-        Thread getLibraryThread = new Thread(() -> {
-            Message getLibrary = new Message(MessageType.getLibrary, LoggedInUser.getInstance().getUser());
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(getLibrary);
-
+        if (libraryRequest != null) {
+            libraryRequest.cancel(false);
+        }
+        Message getLibrary = new Message(MessageType.getLibrary, LoggedInUser.getInstance().getUser());
+        // changes that are still on their way are sent first, so the library that comes back has them
+        libraryRequest = mutationQueue.flush().thenCompose(flushed -> ServerConnection.getClientConnection().makeRequestAsync(getLibrary));
+        ClientExecutor.onFxThread(libraryRequest, response -> {
             if (response.isSuccess()) {
                 currentUserLibrary = response.getPlantArray();
                 isLoadingLibrary = false;
                 addCurrentUserLibraryToHomeScreen();
                 showNotifications();
             } else {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
             }
-        });
-        getLibraryThread.start();
+        }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
     }
 
     /**
@@ -183,7 +189,8 @@ public class MyPlantsTabPaneController {
     }
 
     /**
-     * Method to update the favorite status of a plant
+     * Method to update the favorite status of a plant. The plant is changed at once and the change is sent
+     * to the server in the background, it is undone if the server doesn't take it.
      *
      * @param actionEvent the event that triggers the method
      * @param plant       the plant that the user has selected
@@ -200,27 +207,10 @@ public class MyPlantsTabPaneController {
         fullHeartImg.setFitHeight(16);
         fullHeartImg.setFitWidth(15);
 
-        Thread updateFavoriteThread = new Thread(() -> {
-            Message updateFavorite = new Message(MessageType.updateIsFavorite, LoggedInUser.getInstance().getUser(), plant);
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(updateFavorite);
-
-            if (response.isSuccess()) {
-                Platform.runLater(() -> {
-                    new PopupBox(MessageText.successfullyUpdatedFavoriteStatus.toString());
-                    if (plant.getIsFavorite()) {
-                        favoriteButton.setGraphic(emptyHeartImg);
-                        plant.setIsFavorite(false);
-                    } else {
-                        favoriteButton.setGraphic(fullHeartImg);
-                        plant.setIsFavorite(true);
-                    }
-                });
-            } else {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
-            }
-        });
-        updateFavoriteThread.start();
+        boolean favorite = !plant.getIsFavorite();
+        mutationQueue.favorite(plant, favorite);
+        favoriteButton.setGraphic(favorite ? fullHeartImg : emptyHeartImg);
+        new PopupBox(MessageText.successfullyUpdatedFavoriteStatus.toString());
     }
 
     /**
@@ -231,19 +221,21 @@ public class MyPlantsTabPaneController {
     @FXML
     public void removePlantFromDB(Plant plant) {
         Platform.runLater(() -> new PopupBox(MessageText.removePlant.toString()));
-        Thread removePlantThread = new Thread(() -> {
-            currentUserLibrary.remove(plant);
-            addCurrentUserLibraryToHomeScreen();
-            Message deletePlant = new Message(MessageType.deletePlant, LoggedInUser.getInstance().getUser(), plant);
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(deletePlant);
-
+        currentUserLibrary.remove(plant);
+        addCurrentUserLibraryToHomeScreen();
+        User user = LoggedInUser.getInstance().getUser();
+        // changes that are still on their way are sent first, so the server knows the plant by the name it has here
+        CompletableFuture<Message> deletePlant = mutationQueue.flush().thenCompose(flushed ->
+                ServerConnection.getClientConnection().makeRequestAsync(new Message(MessageType.deletePlant, user, plant)));
+        ClientExecutor.onFxThread(deletePlant, response -> {
             if (!response.isSuccess()) {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
                 createCurrentUserLibraryFromDB();
             }
+        }, error -> {
+            MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
+            createCurrentUserLibraryFromDB();
         });
-        removePlantThread.start();
     }
 
     /**
@@ -260,17 +252,17 @@ public class MyPlantsTabPaneController {
      */
     @FXML
     public void addPlantToDB(Plant plant) {
-        Thread addPlantThread = new Thread(() -> {
-            currentUserLibrary.add(plant);
-            Message savePlant = new Message(MessageType.savePlant, LoggedInUser.getInstance().getUser(), plant);
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(savePlant);
+        currentUserLibrary.add(plant);
+        Message savePlant = new Message(MessageType.savePlant, LoggedInUser.getInstance().getUser(), plant);
+        ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(savePlant), response -> {
             if (!response.isSuccess()) {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
             }
             createCurrentUserLibraryFromDB();
+        }, error -> {
+            MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
+            createCurrentUserLibraryFromDB();
         });
-        addPlantThread.start();
     }
 
     /**
@@ -284,25 +276,26 @@ public class MyPlantsTabPaneController {
     }
 
     /**
-     * Method to change last watered date in database, send a request to server and get a boolean respons depending on the result
+     * Method to change last watered date. The plant is changed at once and the change is sent to the server
+     * in the background, it is undone if the server doesn't take it.
      *
      * @param plant instance of the plant which to change last watered date
      * @param date  new date to change to
+     * @return false if the date is in the future
      */
-    public void changeLastWateredInDB(Plant plant, LocalDate date) {
-        Message changeLastWatered = new Message(MessageType.changeLastWatered, LoggedInUser.getInstance().getUser(), plant, date);
-        ServerConnection connection = ServerConnection.getClientConnection();
-        Message response = connection.makeRequest(changeLastWatered);
-        new PopupBox(MessageText.successfullyChangedDate.toString());
-        if (!response.isSuccess()) {
-            Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+    public boolean changeLastWateredInDB(Plant plant, LocalDate date) {
+        if (!mutationQueue.water(plant, date)) {
+            return false;
         }
-        createCurrentUserLibraryFromDB();
+        new PopupBox(MessageText.successfullyChangedDate.toString());
+        sortLibrary();
         showNotifications();
+        return true;
     }
 
     /**
-     * Method to send to the server to change the nickname of a selected plant in the database.
+     * Method to change the nickname of a selected plant. The plant is changed at once and the change is sent
+     * to the server in the background, it is undone if the server doesn't take it.
      *
      * @param plant       the selected plant
      * @param newNickname the new nickname of the plant
@@ -314,16 +307,7 @@ public class MyPlantsTabPaneController {
             return false;
         }
 
-        Message changeNicknameRequest = new Message(MessageType.changeNickname, LoggedInUser.getInstance().getUser(), plant, newNickname);
-        ServerConnection connection = ServerConnection.getClientConnection();
-        Message response = connection.makeRequest(changeNicknameRequest);
-
-        if (!response.isSuccess()) {
-            Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "It was not possible to change the nickname. Try again."));
-            return false;
-        }
-
-        plant.setNickname(newNickname);
+        mutationQueue.rename(plant, newNickname);
         sortLibrary();
 
         Platform.runLater(() -> new PopupBox(MessageText.successfullyChangedPlant.toString()));
@@ -331,27 +315,37 @@ public class MyPlantsTabPaneController {
     }
 
     /**
-     * Method to send to the server to change the watering frequency of a selected plant in the database.
+     * Method to change the watering frequency of a selected plant. The plant is changed at once and the change
+     * is sent to the server in the background, it is undone if the server doesn't take it.
      *
      * @param plant             the selected plant
      * @param wateringFrequency the new watering frequency of the plant
      * @return if it's successful. true or false
      */
     public boolean changeWateringFrequencyInDB(Plant plant, int wateringFrequency) {
-        Message changeWateringFrequencyInDB = new Message(MessageType.changeWateringFrequency, LoggedInUser.getInstance().getUser(), plant, wateringFrequency);
-        ServerConnection connection = ServerConnection.getClientConnection();
-        Message response = connection.makeRequest(changeWateringFrequencyInDB);
+        mutationQueue.changeWateringFrequency(plant, wateringFrequency);
         new PopupBox(MessageText.successfullyChangedPlant.toString());
-        if (!response.isSuccess()) {
-            Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "It was not possible to change watering frequency for you plant. Try again."));
-            return false;
-        } else {
-            //plant.setUsers_watering_frequency(wateringFrequency);
-            //sortLibrary();
-            createCurrentUserLibraryFromDB(); // TODO: is this correct?
-            showNotifications();
-            return true;
+        sortLibrary();
+        showNotifications();
+        return true;
+    }
+
+    /**
+     * Method to tell the user that changes could not be saved, the plants have been reset to what the server has
+     *
+     * @param plants the plants whose changes were undone
+     */
+    private void changesRolledBack(List<Plant> plants) {
+        StringBuilder nicknames = new StringBuilder();
+        for (Plant plant : plants) {
+            if (nicknames.length() > 0) {
+                nicknames.append(", ");
+            }
+            nicknames.append(plant.getNickname());
         }
+        sortLibrary();
+        showNotifications();
+        MessageBox.display(BoxTitle.Failed, "Your changes to " + nicknames + " could not be saved. Check your connection and try again.");
     }
 
     /**
@@ -363,6 +357,7 @@ public class MyPlantsTabPaneController {
         if (selectedOption == null)
             selectedOption = SortingOption.FAVORITES;
         lstViewUserPlantLibrary.setItems(ListSorter.sort(selectedOption, lstViewUserPlantLibrary.getItems()));
+        lstViewUserPlantLibrary.refresh();
     }
 
     /**
@@ -374,36 +369,79 @@ public class MyPlantsTabPaneController {
     }
 
     /**
-     * Method to send to the server to get extended information about the plant
+     * Method to send to the server to get extended information about the plant.
+     * The details of each kind of plant are only fetched once, since rows are reused while scrolling.
      *
      * @param plant the selected plant
      * @return an instance of the class PlantDetails
      */
     public PlantDetails getPlantDetails(Plant plant) {
-        System.out.println("Entered getPlantDetails in MyPlantsTabPaneController");
-        PlantDetails plantDetails = null; // TODO: Optional.empty() ?
+        PlantDetails plantDetails = plantDetailsCache.get(plant.getPlantId());
+        if (plantDetails != null) {
+            return plantDetails;
+        }
         Message getInfoSearchedPlant = new Message(MessageType.getMorePlantInfo, plant);
         ServerConnection connection = ServerConnection.getClientConnection();
         Message response = connection.makeRequest(getInfoSearchedPlant);
         if (response != null) {
             plantDetails = response.getPlantDetails();
         }
-        System.out.println("PlantDetails: " + plantDetails);
+        if (plantDetails != null) {
+            plantDetailsCache.put(plant.getPlantId(), plantDetails);
+        }
         return plantDetails;
     }
 
+    /**
+     * Method to get extended information about the plant without waiting for the server
+     *
+     * @param plant the selected plant
+     * @return the future details, right away if they have been fetched before
+     */
+    public CompletableFuture<PlantDetails> getPlantDetailsAsync(Plant plant) {
+        PlantDetails plantDetails = plantDetailsCache.get(plant.getPlantId());
+        if (plantDetails != null) {
+            return CompletableFuture.completedFuture(plantDetails);
+        }
+        return ClientExecutor.getInstance().submit(() -> getPlantDetails(plant));
+    }
+
+    /**
+     * Method to check if the user has opened the extended information of a plant
+     *
+     * @param plant the plant
+     * @return true if its pane should be shown opened
+     */
+    public boolean isExpanded(Plant plant) {
+        return expandedPlants.contains(plant);
+    }
+
+    /**
+     * Method to remember if the user has opened the extended information of a plant,
+     * so the pane is shown the same way when its row is scrolled out of view and back
+     *
+     * @param plant    the plant
+     * @param expanded true if it has been opened
+     */
+    public void setExpanded(Plant plant, boolean expanded) {
+        if (expanded) {
+            expandedPlants.add(plant);
+        } else {
+            expandedPlants.remove(plant);
+        }
+    }
+
     /**
      * Method to water all the plant at once
      */
     @FXML
     public void waterAll() {
         btnWaterAll.setDisable(true);
-        ObservableList<LibraryPlantPane> libraryPlantPanes = lstViewUserPlantLibrary.getItems();
         changeAllToWateredInDB();
-        for (LibraryPlantPane lpp : libraryPlantPanes) {
-            lpp.getProgressBar().setProgress(100);
-            lpp.setColorProgressBar(100);
+        for (Plant plant : lstViewUserPlantLibrary.getItems()) {
+            plant.setLastWatered(LocalDate.now());
         }
+        lstViewUserPlantLibrary.refresh();
     }
 
     /**
@@ -412,11 +450,8 @@ public class MyPlantsTabPaneController {
     @FXML
     public void expandAll() {
         btnExpandAll.setDisable(true);
-        ObservableList<LibraryPlantPane> libraryPlantPanes = lstViewUserPlantLibrary.getItems();
-        for (LibraryPlantPane lpp : libraryPlantPanes) {
-            if (!lpp.extended)
-                lpp.pressInfoButton();
-        }
+        expandedPlants.addAll(lstViewUserPlantLibrary.getItems());
+        lstViewUserPlantLibrary.refresh();
         btnExpandAll.setDisable(false);
     }
 
@@ -426,11 +461,8 @@ public class MyPlantsTabPaneController {
     @FXML
     public void collapseAll() {
         btnCollapseAll.setDisable(true);
-        ObservableList<LibraryPlantPane> libraryPlantPanes = lstViewUserPlantLibrary.getItems();
-        for (LibraryPlantPane lpp : libraryPlantPanes) {
-            if (lpp.extended)
-                lpp.pressInfoButton();
-        }
+        expandedPlants.clear();
+        lstViewUserPlantLibrary.refresh();
         btnCollapseAll.setDisable(false);
     }
 
@@ -438,18 +470,22 @@ public class MyPlantsTabPaneController {
      * Method to send a message to the server to change the date of the last watered in the database
      */
     private void changeAllToWateredInDB() {
-        Thread waterAllThread = new Thread(() -> {
-            Message changeAllToWatered = new Message(MessageType.changeAllToWatered, LoggedInUser.getInstance().getUser());
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(changeAllToWatered);
+        Message changeAllToWatered = new Message(MessageType.changeAllToWatered, LoggedInUser.getInstance().getUser());
+        // older watering dates that are still on their way are sent first, so they can't overwrite this one
+        CompletableFuture<Message> request = mutationQueue.flush().thenCompose(flushed ->
+                ServerConnection.getClientConnection().makeRequestAsync(changeAllToWatered));
+        ClientExecutor.onFxThread(request, response -> {
             if (!response.isSuccess()) {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
             }
             btnWaterAll.setDisable(false);
             createCurrentUserLibraryFromDB();
             showNotifications();
+        }, error -> {
+            MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
+            btnWaterAll.setDisable(false);
+            createCurrentUserLibraryFromDB();
         });
-        waterAllThread.start();
     }
 
     /**
@@ -481,15 +517,16 @@ public class MyPlantsTabPaneController {
                 }
                 lpp.getPlant().setImageURL(newPictureFile.toURI().toURL().toString());
                 lpp.updateImage();
-                Thread changePlantPictureThread = new Thread(() -> {
-                    Message changePlantPicture = new Message(MessageType.changePlantPicture, LoggedInUser.getInstance().getUser(), lpp.getPlant());
-                    ServerConnection connection = ServerConnection.getClientConnection();
-                    Message response = connection.makeRequest(changePlantPicture);
+                User user = LoggedInUser.getInstance().getUser();
+                Plant plant = lpp.getPlant();
+                // a rename that is still on its way is sent first, so the server knows the plant by the name it has here
+                CompletableFuture<Message> changePlantPicture = mutationQueue.flush().thenCompose(flushed ->
+                        ServerConnection.getClientConnection().makeRequestAsync(new Message(MessageType.changePlantPicture, user, plant)));
+                ClientExecutor.onFxThread(changePlantPicture, response -> {
                     if (!response.isSuccess()) {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                        MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
                     }
-                });
-                changePlantPictureThread.start();
+                }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -1,12 +1,12 @@
 package se.myhappyplants.client.controller;
 
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 import se.myhappyplants.client.model.BoxTitle;
+import se.myhappyplants.client.model.ClientExecutor;
 import se.myhappyplants.client.model.LoggedInUser;
 import se.myhappyplants.client.model.RootName;
 import se.myhappyplants.client.model.Verifier;
@@ -50,32 +50,24 @@ public class RegisterPaneController {
         int answer = MessageBox.askYesNo(BoxTitle.GDPR, "Your account details will be saved in accordance with GDPR requirements" + "\n" + "Do you still want to create the account?");
         if(answer == 1){
             boolean verifiedRegistration = verifier.validateRegistration(this);
-            Thread registerThread = new Thread(() -> {
-                if (!verifiedRegistration) {
-                    return;
-                }
-                Message registerRequest = new Message(MessageType.register, new User(txtFldNewEmail.getText(), txtFldNewUsername.getText(), passFldNewPassword.getText(), true));
-                ServerConnection connection = ServerConnection.getClientConnection();
-                Message registerResponse = connection.makeRequest(registerRequest);
-
-                if (registerResponse != null) {
-                    if (registerResponse.isSuccess()) {
-                        LoggedInUser.getInstance().setUser(registerResponse.getUser());
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Success, "Account created successfully! Now logged in as " + LoggedInUser.getInstance().getUser().getUsername()));
-                        try {
-                            switchToMainPane();
-                        }
-                        catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    } else {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "An account with this email address or username already exists here at My Happy Plants."));
+            if (!verifiedRegistration) {
+                return;
+            }
+            Message registerRequest = new Message(MessageType.register, new User(txtFldNewEmail.getText(), txtFldNewUsername.getText(), passFldNewPassword.getText(), true));
+            ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(registerRequest), registerResponse -> {
+                if (registerResponse.isSuccess()) {
+                    LoggedInUser.getInstance().setUser(registerResponse.getUser());
+                    MessageBox.display(BoxTitle.Success, "Account created successfully! Now logged in as " + LoggedInUser.getInstance().getUser().getUsername());
+                    try {
+                        switchToMainPane();
+                    }
+                    catch (IOException e) {
+                        e.printStackTrace();
                     }
                 } else {
-                    Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                    MessageBox.display(BoxTitle.Failed, "An account with this email address or username already exists here at My Happy Plants.");
                 }
-            });
-            registerThread.start();
+            }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
         }
         else{
             return;
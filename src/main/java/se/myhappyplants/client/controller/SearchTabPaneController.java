@@ -3,19 +3,20 @@ package se.myhappyplants.client.controller;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.concurrent.Task;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.ImagePattern;
 import javafx.scene.shape.Circle;
-import javafx.scene.text.Text;
 import se.myhappyplants.client.model.*;
 import se.myhappyplants.client.view.ServerConnection;
 import se.myhappyplants.client.util.DialogUtils;
 import se.myhappyplants.client.model.AutocompleteSearchField;
 import se.myhappyplants.client.view.MessageBox;
+import se.myhappyplants.client.view.PlantListCell;
 import se.myhappyplants.client.view.PopupBox;
 import se.myhappyplants.client.view.SearchPlantPane;
 import se.myhappyplants.shared.*;
@@ -23,7 +24,9 @@ import se.myhappyplants.client.model.SetAvatar;
 
 import java.io.IOException;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class that controls the logic of the "search"-tab
@@ -47,7 +50,7 @@ public class SearchTabPaneController {
     @FXML
     private ComboBox<SortingOption> cmbSortOption;
     @FXML
-    private ListView listViewResult;
+    private ListView<Plant> listViewResult;
     @FXML
     private ProgressIndicator progressIndicator;
     @FXML
@@ -55,7 +58,16 @@ public class SearchTabPaneController {
     @FXML
     public TextField txtNbrOfResults;
 
-    private List<Plant> searchResults;
+    private static final int PAGE_SIZE = 15;
+
+    private List<Plant> searchResults = new ArrayList<>();
+    private String currentSearch;
+    private SortingOption currentSortingOption;
+    private int totalResults;
+    private boolean loadingPage;
+    private boolean firstPageShown;
+    private ScrollBar resultScrollBar;
+    private CompletableFuture<Message> pageRequest;
 
     private final String database = "library";
 
@@ -79,6 +91,7 @@ public class SearchTabPaneController {
         }
         cmbSortOption.setValue(SortingOption.COMMON_NAME); // set default sorting value
         cmbSortOption.setItems(ListSorter.sortOptionsSearch());
+        listViewResult.setCellFactory(listView -> new PlantListCell<>(plant -> new SearchPlantPane(this, ImageLibrary.getLoadingImage(), plant)));
     }
 
     /**
@@ -204,45 +217,44 @@ public class SearchTabPaneController {
     }
 
     /**
-    * Method to show the search result on the pane
+    * Method to show the search result on the pane. Panes are only made for the rows that can be seen, and each
+    * pane asks for its own picture when it is shown.
+    *
+    * @param page   the plants to show
+    * @param append true to add the plants after the ones already shown, false to replace them
     */
-    private void showResultsOnPane() {
-        ObservableList<SearchPlantPane> searchPlantPanes = FXCollections.observableArrayList();
-        for (Plant plant : searchResults) {
-            searchPlantPanes.add(new SearchPlantPane(this, ImageLibrary.getLoadingImage(), plant));
+    private void showResultsOnPane(List<Plant> page, boolean append) {
+        if (append) {
+            listViewResult.getItems().addAll(page);
+        } else {
+            listViewResult.setItems(FXCollections.observableArrayList(page));
         }
-        listViewResult.getItems().clear();
-        listViewResult.setItems(searchPlantPanes);
+        progressIndicator.progressProperty().unbind();
+        progressIndicator.setProgress(1);
+        Platform.runLater(this::watchScrollBar);
+    }
 
-        Task getImagesTask =
-            new Task() {
-                @Override
-                protected Object call() {
-                    long i = 1;
-                    for (SearchPlantPane spp : searchPlantPanes) {
-                        Plant Plant = spp.getPlant();
-                        if (Plant.getImageURL().equals("")) {
-                            spp.setDefaultImage(ImageLibrary.getDefaultPlantImage().getUrl());
-                        } else {
-                            try {
-                                spp.updateImage();
-                            } catch (IllegalArgumentException e) {
-                                spp.setDefaultImage(ImageLibrary.getDefaultPlantImage().getUrl());
-                            }
+    /**
+     * Loads the next page when the user scrolls near the end of the results. The scroll bar only exists once the
+     * list has been drawn, so it is looked up after the first page is shown. If the results don't fill the list
+     * there is nothing to scroll and the next page is loaded right away.
+     */
+    private void watchScrollBar() {
+        if (resultScrollBar == null) {
+            for (Node node : listViewResult.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                    resultScrollBar = scrollBar;
+                    resultScrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                        if (newValue.doubleValue() >= resultScrollBar.getMax() * 0.9) {
+                            loadNextPage();
                         }
-                        updateProgress(i++, searchPlantPanes.size());
-                    }
-                    Text text = (Text) progressIndicator.lookup(".percentage");
-                    if (text.getText().equals("90%") || text.getText().equals("Done")) {
-                        text.setText("Done");
-                        progressIndicator.setPrefWidth(text.getLayoutBounds().getWidth());
-                    }
-                    return true;
+                    });
                 }
-            };
-        Thread imageThread = new Thread(getImagesTask);
-        progressIndicator.progressProperty().bind(getImagesTask.progressProperty());
-        imageThread.start();
+            }
+        }
+        if (resultScrollBar == null || !resultScrollBar.isVisible()) {
+            loadNextPage();
+        }
     }
 
     /**
@@ -253,30 +265,67 @@ public class SearchTabPaneController {
         btnSearch.setDisable(true);
         txtFldSearchText.addToHistory();
         new PopupBox(MessageText.holdOnGettingInfo.toString());
+        currentSearch = txtFldSearchText.getText();
+        currentSortingOption = cmbSortOption.getValue();
+        firstPageShown = false;
+        requestPage(0, false);
+    }
 
-        Thread searchThread = new Thread(() -> {
-            SortingOption selectedSortingOption = cmbSortOption.getValue();
-            Message apiRequest = new Message(MessageType.search, txtFldSearchText.getText(), selectedSortingOption);
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message apiResponse = connection.makeRequest(apiRequest);
-
-            if (apiResponse != null && apiResponse.isSuccess()) {
-                searchResults = apiResponse.getPlantArray();
-                Platform.runLater(() -> txtNbrOfResults.setText(searchResults.size() + " results"));
-                if (searchResults.isEmpty()) {
-                    progressIndicator.progressProperty().unbind();
-                    progressIndicator.setProgress(100);
-                    btnSearch.setDisable(false);
-                    Platform.runLater(() -> listViewResult.getItems().clear());
-                    return;
-                }
-                Platform.runLater(this::showResultsOnPane);
+    /**
+     * Asks the server for one page of the current search. The first page replaces the shown results
+     * and later pages are added after them. A page that is still on its way is cancelled, so the results
+     * of an old search never show up after those of a new one.
+     *
+     * @param offset   index of the first result of the page
+     * @param sortOnly true if the search is only sorted again, so the server doesn't count it as a new search
+     */
+    private void requestPage(int offset, boolean sortOnly) {
+        if (pageRequest != null) {
+            pageRequest.cancel(false);
+        }
+        loadingPage = true;
+        Message apiRequest = new Message(MessageType.search, currentSearch, currentSortingOption, offset, PAGE_SIZE, sortOnly);
+        pageRequest = ServerConnection.getClientConnection().makeRequestAsync(apiRequest);
+        ClientExecutor.onFxThread(pageRequest, apiResponse -> {
+            loadingPage = false;
+            btnSearch.setDisable(false);
+            if (!apiResponse.isSuccess()) {
+                MessageBox.display(BoxTitle.Error, "The connection to the server has failed. Check your connection and try again.");
+                return;
+            }
+            List<Plant> page = apiResponse.getPlantArray();
+            if (offset == 0) {
+                searchResults = new ArrayList<>(page);
+                firstPageShown = true;
             } else {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Error, "The connection to the server has failed. Check your connection and try again."));
+                searchResults.addAll(page);
             }
+            totalResults = apiResponse.getTotalResults();
+            txtNbrOfResults.setText(totalResults + " results");
+            if (page.isEmpty()) {
+                progressIndicator.progressProperty().unbind();
+                progressIndicator.setProgress(100);
+                if (offset == 0) {
+                    listViewResult.getItems().clear();
+                }
+                return;
+            }
+            showResultsOnPane(page, offset > 0);
+        }, error -> {
+            loadingPage = false;
             btnSearch.setDisable(false);
+            MessageBox.display(BoxTitle.Error, "The connection to the server has failed. Check your connection and try again.");
         });
-        searchThread.start();
+    }
+
+    /**
+     * Asks for the next page of results if there is one and no page is on its way
+     */
+    private void loadNextPage() {
+        if (loadingPage || currentSearch == null || searchResults.size() >= totalResults) {
+            return;
+        }
+        requestPage(searchResults.size(), false);
     }
 
     /**
@@ -322,6 +371,13 @@ public class SearchTabPaneController {
         if (selectedOption == null) {
             selectedOption = SortingOption.COMMON_NAME;
         }
+        if (currentSearch != null && (searchResults.size() < totalResults || loadingPage)) {
+            // only some pages are shown or a page is on its way in the old order, cancel it and let the server
+            // sort all results and start over from the first page
+            currentSortingOption = selectedOption;
+            requestPage(0, firstPageShown);
+            return;
+        }
         listViewResult.setItems(ListSorter.sort(selectedOption, listViewResult.getItems()));
     }
 
@@ -15,6 +15,7 @@ import se.myhappyplants.client.model.SetAvatar;
 import se.myhappyplants.client.view.ServerConnection;
 import se.myhappyplants.client.util.ImageUtils;
 import se.myhappyplants.client.model.ButtonText;
+import se.myhappyplants.client.model.ClientExecutor;
 import se.myhappyplants.client.view.MessageBox;
 import se.myhappyplants.client.view.PopupBox;
 import se.myhappyplants.shared.Message;
@@ -77,27 +78,21 @@ public class SettingsTabPaneController {
      */
     @FXML
     public void changeNotificationsSetting() {
-        Thread changeNotificationsThread = new Thread(() -> {
-            tglBtnChangeNotification.setDisable(true);
-            try {
-                Message notificationRequest = new Message(MessageType.changeNotifications, tglBtnChangeNotification.isSelected(), LoggedInUser.getInstance().getUser());
-                ServerConnection connection = ServerConnection.getClientConnection();
-                Message notificationResponse = connection.makeRequest(notificationRequest);
-                if (notificationResponse != null) {
-                    if (notificationResponse.isSuccess()) {
-                        LoggedInUser.getInstance().getUser().setIsNotificationsActivated(tglBtnChangeNotification.isSelected());
-                        Platform.runLater(() -> new PopupBox("Notification settings\n changed"));
-                    } else {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "Settings could not be changed"));
-                    }
-                } else {
-                    Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
-                }
-            } finally {
-                tglBtnChangeNotification.setDisable(false);
+        tglBtnChangeNotification.setDisable(true);
+        boolean notificationsActivated = tglBtnChangeNotification.isSelected();
+        Message notificationRequest = new Message(MessageType.changeNotifications, notificationsActivated, LoggedInUser.getInstance().getUser());
+        ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(notificationRequest), notificationResponse -> {
+            tglBtnChangeNotification.setDisable(false);
+            if (notificationResponse.isSuccess()) {
+                LoggedInUser.getInstance().getUser().setIsNotificationsActivated(notificationsActivated);
+                new PopupBox("Notification settings\n changed");
+            } else {
+                MessageBox.display(BoxTitle.Failed, "Settings could not be changed");
             }
+        }, error -> {
+            tglBtnChangeNotification.setDisable(false);
+            MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
         });
-        changeNotificationsThread.start();
         ButtonText.setButtonText(tglBtnChangeNotification);
         mainPaneController.getMyPlantsTabPaneController().createCurrentUserLibraryFromDB();
     }
@@ -107,27 +102,21 @@ public class SettingsTabPaneController {
      */
     @FXML
     public void changeFunFactsSetting() {
-        Thread changeFunFactsThread = new Thread(() -> {
-            tglBtnChangeFunFacts.setDisable(true);
-            try {
-                Message changeFunFactsRequest = new Message(MessageType.changeFunFacts, tglBtnChangeFunFacts.isSelected(), LoggedInUser.getInstance().getUser());
-                ServerConnection connection = ServerConnection.getClientConnection();
-                Message funFactsResponse = connection.makeRequest(changeFunFactsRequest);
-                if (funFactsResponse != null) {
-                    if (funFactsResponse.isSuccess()) {
-                        LoggedInUser.getInstance().getUser().setFunFactsActivated(tglBtnChangeFunFacts.isSelected());
-                        Platform.runLater(() -> new PopupBox("Fun Facts settings\n changed"));
-                    } else {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "Settings could not be changed"));
-                    }
-                } else {
-                    Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
-                }
-            } finally {
-                tglBtnChangeFunFacts.setDisable(false);
+        tglBtnChangeFunFacts.setDisable(true);
+        boolean funFactsActivated = tglBtnChangeFunFacts.isSelected();
+        Message changeFunFactsRequest = new Message(MessageType.changeFunFacts, funFactsActivated, LoggedInUser.getInstance().getUser());
+        ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(changeFunFactsRequest), funFactsResponse -> {
+            tglBtnChangeFunFacts.setDisable(false);
+            if (funFactsResponse.isSuccess()) {
+                LoggedInUser.getInstance().getUser().setFunFactsActivated(funFactsActivated);
+                new PopupBox("Fun Facts settings\n changed");
+            } else {
+                MessageBox.display(BoxTitle.Failed, "Settings could not be changed");
             }
+        }, error -> {
+            tglBtnChangeFunFacts.setDisable(false);
+            MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
         });
-        changeFunFactsThread.start();
         ButtonText.setButtonText(tglBtnChangeFunFacts);
         mainPaneController.getSearchTabPaneController().showFunFact(tglBtnChangeFunFacts.isSelected());
         mainPaneController.getWishlistTabPaneController().showFunFact(tglBtnChangeFunFacts.isSelected());
@@ -142,26 +131,19 @@ public class SettingsTabPaneController {
         MessageBox.display(BoxTitle.Delete, "All your personal information will be deleted. \n A deleted account cannot be restored.");
         int answer = MessageBox.askYesNo(BoxTitle.Delete, "Are you sure you want to delete your account?");
         if (answer == 1) {
-            Thread deleteAccountThread = new Thread(() -> {
-                Message deleteMessage = new Message(MessageType.deleteAccount, new User(LoggedInUser.getInstance().getUser().getEmail(), passFldDeleteAccount.getText()));
-                ServerConnection connection = ServerConnection.getClientConnection();
-                Message deleteResponse = connection.makeRequest(deleteMessage);
-                if (deleteResponse != null) {
-                    if (deleteResponse.isSuccess()) {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Success, "We are sorry to see you go"));
-                        try {
-                            logoutButtonPressed();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    } else {
-                        Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The passwords you entered do not match"));
+            Message deleteMessage = new Message(MessageType.deleteAccount, new User(LoggedInUser.getInstance().getUser().getEmail(), passFldDeleteAccount.getText()));
+            ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(deleteMessage), deleteResponse -> {
+                if (deleteResponse.isSuccess()) {
+                    MessageBox.display(BoxTitle.Success, "We are sorry to see you go");
+                    try {
+                        logoutButtonPressed();
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
                 } else {
-                    Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                    MessageBox.display(BoxTitle.Failed, "The passwords you entered do not match");
                 }
-            });
-            deleteAccountThread.start();
+            }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
         }
     }
 
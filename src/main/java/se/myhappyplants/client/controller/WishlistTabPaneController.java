@@ -4,11 +4,8 @@ package se.myhappyplants.client.controller;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.scene.Parent;
-import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.image.Image;
@@ -19,6 +16,7 @@ import se.myhappyplants.client.model.*;
 import se.myhappyplants.client.view.ServerConnection;
 import se.myhappyplants.client.util.DialogUtils;
 import se.myhappyplants.client.view.MessageBox;
+import se.myhappyplants.client.view.PlantListCell;
 import se.myhappyplants.client.view.PopupBox;
 import se.myhappyplants.client.view.WishlistPlantPane;
 import se.myhappyplants.shared.*;
@@ -26,6 +24,7 @@ import se.myhappyplants.shared.*;
 import java.io.IOException;
 import java.sql.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class WishlistTabPaneController {
     @FXML
@@ -34,7 +33,7 @@ public class WishlistTabPaneController {
     private List<Plant> currentUserWishlist;
 
     @FXML
-    private ListView lstViewUserPlantWishlist;
+    private ListView<Plant> lstViewUserPlantWishlist;
 
     @FXML
     private MainPaneController mainPaneController;
@@ -49,6 +48,7 @@ public class WishlistTabPaneController {
     private Circle imgUserAvatar;
 
     private final String database = "wishlist";
+    private CompletableFuture<Message> wishlistRequest;
 
     /**
      * Method that initializes the wishlist tab pane
@@ -59,6 +59,7 @@ public class WishlistTabPaneController {
         lblUsername.setText(loggedInUser.getUser().getUsername());
         imgUserAvatar.setFill(new ImagePattern(new Image(SetAvatar.setAvatarOnLogin(loggedInUser.getUser().getEmail()))));
         showFunFact(loggedInUser.getUser().getFunFactsActivated());
+        lstViewUserPlantWishlist.setCellFactory(listView -> new PlantListCell<>(plant -> new WishlistPlantPane(this, ImageLibrary.getLoadingImage(), plant)));
         createCurrentUserWishlistFromDB();
         addCurrentUserWishlistToHomeScreen();
     }
@@ -153,10 +154,7 @@ public class WishlistTabPaneController {
         Plant plantToRemove = new Plant(selectedPlant.getCommonName(), selectedPlant.getPlantId(), null);
         removePlantFromDB(plantToRemove);
         currentUserWishlist.remove(selectedPlant);
-        Parent listItemToRemove = ((Button) action.getSource()).getParent();
-        lstViewUserPlantWishlist.getItems().remove(listItemToRemove);
-        System.out.println(lstViewUserPlantWishlist.getItems());
-        lstViewUserPlantWishlist.refresh();
+        lstViewUserPlantWishlist.getItems().remove(selectedPlant);
     }
 
     /**
@@ -167,84 +165,48 @@ public class WishlistTabPaneController {
     @FXML
     public void removePlantFromDB(Plant plant) {
         Platform.runLater(() -> new PopupBox(MessageText.removeWishlistPlant.toString()));
-        Thread removePlantThread = new Thread(() -> {
-            currentUserWishlist.remove(plant);
-            Message deletePlant = new Message(MessageType.removePlantWishlist, LoggedInUser.getInstance().getUser(), plant);
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(deletePlant);
-
+        currentUserWishlist.remove(plant);
+        Message deletePlant = new Message(MessageType.removePlantWishlist, LoggedInUser.getInstance().getUser(), plant);
+        ClientExecutor.onFxThread(ServerConnection.getClientConnection().makeRequestAsync(deletePlant), response -> {
             if (!response.isSuccess()) {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
             }
-        });
-        removePlantThread.start();
+        }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
     }
 
     /**
-     * Method that creates the current user's wishlist from the database
+     * Method that creates the current user's wishlist from the database. A wishlist that is still on its way
+     * is cancelled, so an older answer can't replace a newer one.
      */
     @FXML
     public void createCurrentUserWishlistFromDB() {
-        Thread getWishlistThread = new Thread(() -> {
-            Message getWishlist = new Message(MessageType.getWishlist, LoggedInUser.getInstance().getUser());
-            ServerConnection connection = ServerConnection.getClientConnection();
-            Message response = connection.makeRequest(getWishlist);
-
+        if (wishlistRequest != null) {
+            wishlistRequest.cancel(false);
+        }
+        Message getWishlist = new Message(MessageType.getWishlist, LoggedInUser.getInstance().getUser());
+        wishlistRequest = ServerConnection.getClientConnection().makeRequestAsync(getWishlist);
+        ClientExecutor.onFxThread(wishlistRequest, response -> {
             if (response.isSuccess()) {
                 currentUserWishlist = response.getPlantArray();
-                System.out.println("currentUserWishlist: " + currentUserWishlist);
                 addCurrentUserWishlistToHomeScreen();
             } else {
-                Platform.runLater(() -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
+                MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again.");
             }
-        });
-        getWishlistThread.start();
+        }, error -> MessageBox.display(BoxTitle.Failed, "The connection to the server has failed. Check your connection and try again."));
     }
 
     /**
-     * Method that adds the current user's wishlist to the home screen
+     * Method that adds the current user's wishlist to the home screen.
+     * The list only creates panes for the rows that can be seen and reuses them while scrolling.
      */
     @FXML
     private void addCurrentUserWishlistToHomeScreen() {
-        ObservableList<WishlistPlantPane> obsListWishlistPlantPane = FXCollections.observableArrayList();
-        if (currentUserWishlist == null) {
-            obsListWishlistPlantPane.add(new WishlistPlantPane());
-        } else {
-            if (currentUserWishlist.size() < 1) {
-                obsListWishlistPlantPane.add(new WishlistPlantPane(this));
-            } else {
-                for (Plant plant : currentUserWishlist) {
-                    obsListWishlistPlantPane.add(new WishlistPlantPane(this, ImageLibrary.getLoadingImage(), plant));
-                }
-            }
-        }
+        List<Plant> wishlist = currentUserWishlist;
+        ObservableList<Plant> obsListWishlist = wishlist == null ? FXCollections.observableArrayList() : FXCollections.observableArrayList(wishlist);
         Platform.runLater(() -> {
-            lstViewUserPlantWishlist.setItems(obsListWishlistPlantPane);
+            lstViewUserPlantWishlist.setPlaceholder(wishlist == null ? new WishlistPlantPane() : new WishlistPlantPane(this));
+            lstViewUserPlantWishlist.setItems(obsListWishlist);
         });
-
-        Task getImagesTask =
-                new Task() {
-                    @Override
-                    protected Object call() {
-                        long i = 1;
-                        for (WishlistPlantPane wishlistPlantPane : obsListWishlistPlantPane) {
-                            Plant Plant = wishlistPlantPane.getPlant();
-                            if (Plant.getImageURL().equals("")) {
-                                wishlistPlantPane.setDefaultImage(ImageLibrary.getDefaultPlantImage().getUrl());
-                            } else {
-                                try {
-                                    wishlistPlantPane.updateImage();
-                                } catch (IllegalArgumentException e) {
-                                    wishlistPlantPane.setDefaultImage(ImageLibrary.getDefaultPlantImage().getUrl());
-                                }
-                            }
-                            updateProgress(i++, obsListWishlistPlantPane.size());
-                        }
-                        return true;
-                    }
-                };
-        Thread imageThread = new Thread(getImagesTask);
-        imageThread.start();
     }
 
     public MainPaneController getMainPaneController() {
@@ -289,7 +251,7 @@ public class WishlistTabPaneController {
         boolean success = mainPaneController.addPlantToDB(plantToAdd, database);
         if (success){
             mainPaneController.addPlantToUserLibrary(plantToAdd);
-            removePlantFromCurrentUserWishlist(plantToAdd, action);
+            removePlantFromCurrentUserWishlist(plantAdd, action);
         }
     }
 
@@ -1,5 +1,6 @@
 package se.myhappyplants.client.model;
 
+import javafx.animation.PauseTransition;
 import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.control.ContextMenu;
@@ -9,22 +10,39 @@ import javafx.scene.control.TextField;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import javafx.util.Duration;
+import se.myhappyplants.client.view.ServerConnection;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
 
-import java.io.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class to read from a file to get the user some suggestions when searching for a plant
+ * Matches from the local history are shown right away. When the user stops typing for a moment the server is
+ * asked for suggestions drawn from species names and what all users search for, and they are shown after them.
+ * The history is read once into a {@link SearchHistory}, so filtering does not slow down as it grows.
  * Created by: Christopher O'Driscoll
  * Updated by: Christopher O'Driscoll
  */
 public class AutocompleteSearchField extends TextField {
 
-    private ArrayList<String> searchHistory;
+    private static final Duration SUGGESTION_DELAY = Duration.millis(150);
+    private static final Path HISTORY_FILE = Paths.get("resources/searchHistory.txt");
+    private static final int MAX_HISTORY_ENTRIES = 20_000;
+    private static final int MAX_SUGGESTIONS = 10;
+
+    private SearchHistory searchHistory;
     private ContextMenu historyPopup;
+    private final PauseTransition suggestionDelay = new PauseTransition(SUGGESTION_DELAY);
+    private long latestSuggestionRequest;
+    private CompletableFuture<Message> suggestionRequest;
 
     /**
      * Constructor to start the class
@@ -42,21 +60,8 @@ public class AutocompleteSearchField extends TextField {
      * @throws IOException
      */
     public void populateSearchHistory() throws IOException {
-        searchHistory = new ArrayList<>();
-
-        File file = new File("resources/searchHistory.txt");
-        if (!file.exists()) {
-            file.createNewFile();
-        } else if (file.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader("resources/searchHistory.txt"));) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    searchHistory.add(line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        Files.createDirectories(HISTORY_FILE.toAbsolutePath().getParent());
+        searchHistory = new SearchHistory(HISTORY_FILE, MAX_HISTORY_ENTRIES);
     }
 
     /**
@@ -65,20 +70,14 @@ public class AutocompleteSearchField extends TextField {
     private void setListener() {
         textProperty().addListener((observable, oldValue, newValue) -> {
             String enteredText = getText();
+            latestSuggestionRequest++;
             if (enteredText == null || enteredText.isEmpty()) {
+                suggestionDelay.stop();
                 historyPopup.hide();
             } else {
-                List<String> filteredEntries = searchHistory.stream()
-                        .filter(e -> e.toLowerCase().contains(enteredText.toLowerCase()))
-                        .collect(Collectors.toList());
-                if (!filteredEntries.isEmpty()) {
-                    populatePopup(filteredEntries, enteredText);
-                    if (!historyPopup.isShowing()) {
-                        historyPopup.show(AutocompleteSearchField.this, Side.BOTTOM, 0, 0); //position of popup
-                    }
-                } else {
-                    historyPopup.hide();
-                }
+                showSuggestions(historyMatches(enteredText), enteredText);
+                suggestionDelay.setOnFinished(event -> requestServerSuggestions(enteredText));
+                suggestionDelay.playFromStart();
             }
         });
 
@@ -87,6 +86,48 @@ public class AutocompleteSearchField extends TextField {
         });
     }
 
+    private List<String> historyMatches(String enteredText) {
+        return searchHistory.find(enteredText, MAX_SUGGESTIONS);
+    }
+
+    private void showSuggestions(List<String> suggestions, String enteredText) {
+        if (!suggestions.isEmpty()) {
+            populatePopup(suggestions, enteredText);
+            if (!historyPopup.isShowing() && isFocused()) {
+                historyPopup.show(AutocompleteSearchField.this, Side.BOTTOM, 0, 0); //position of popup
+            }
+        } else {
+            historyPopup.hide();
+        }
+    }
+
+    /**
+     * Asks the server for suggestions in the background. A request for older text that is still on its way
+     * is cancelled, and the answer is thrown away if the user has typed something else since, so the popup
+     * never shows suggestions for old text.
+     *
+     * @param enteredText the text to get suggestions for
+     */
+    private void requestServerSuggestions(String enteredText) {
+        long request = latestSuggestionRequest;
+        if (suggestionRequest != null) {
+            suggestionRequest.cancel(false);
+        }
+        suggestionRequest = ServerConnection.getClientConnection().makeRequestAsync(new Message(MessageType.autocomplete, enteredText));
+        ClientExecutor.onFxThread(suggestionRequest, response -> {
+            if (request != latestSuggestionRequest || !response.isSuccess() || response.getSuggestions() == null) {
+                return;
+            }
+            List<String> suggestions = historyMatches(enteredText);
+            for (String suggestion : response.getSuggestions()) {
+                if (suggestions.stream().noneMatch(suggestion::equalsIgnoreCase)) {
+                    suggestions.add(suggestion);
+                }
+            }
+            showSuggestions(suggestions, enteredText);
+        }, error -> System.err.println("Could not get suggestions: " + error.getMessage()));
+    }
+
     /**
      * Method to populate the pop up
      * @param searchResult
@@ -95,8 +136,7 @@ public class AutocompleteSearchField extends TextField {
     private void populatePopup(List<String> searchResult, String enteredText) {
 
         List<CustomMenuItem> menuItems = new LinkedList<>();
-        int maxEntries = 10;
-        int count = Math.min(searchResult.size(), maxEntries);
+        int count = Math.min(searchResult.size(), MAX_SUGGESTIONS);
         for (int i = 0; i < count; i++) {
             final String result = searchResult.get(i);
             Label entryLabel = new Label();
@@ -122,6 +162,9 @@ public class AutocompleteSearchField extends TextField {
      */
     private Node buildTextFlow(String text, String filter) {
         int filterIndex = text.toLowerCase().indexOf(filter.toLowerCase());
+        if (filterIndex < 0) { // server suggestions match words, the typed text may differ in spacing
+            return new TextFlow(new Text(text));
+        }
         Text textBefore = new Text(text.substring(0, filterIndex));
         Text textAfter = new Text(text.substring(filterIndex + filter.length()));
         Text textFilter = new Text(text.substring(filterIndex, filterIndex + filter.length())); //instead of "filter" to keep all "case sensitive"
@@ -130,18 +173,9 @@ public class AutocompleteSearchField extends TextField {
     }
 
     /**
-     * Method to write to file new suggestions on what to search on
+     * Method to count the current search in the history, which appends it to the file
      */
     public void addToHistory() {
-        String searchText = getText();
-        if (!searchHistory.contains(searchText)) {
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter("resources/searchHistory.txt", true))) {
-                bw.write(searchText + "\n");
-                bw.flush();
-                populateSearchHistory();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        searchHistory.add(getText());
     }
 }
@@ -0,0 +1,144 @@
+package se.myhappyplants.client.model;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the client's background work, like requests to the server, on a few shared threads instead of a new
+ * thread per click. The number of threads and of waiting tasks are both limited, a task that doesn't fit is
+ * failed with a RejectedExecutionException instead of piling up. Results are handed out as CompletableFutures:
+ * a future that is cancelled before its task has started skips the task, and one that is cancelled later
+ * never reaches the callbacks given to {@link #onFxThread}.
+ */
+public class ClientExecutor {
+
+    /**
+     * Runs tasks on the JavaFX thread, for use with the async methods of CompletableFuture
+     */
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+    private static ClientExecutor instance;
+
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Constructor
+     *
+     * @param threads   max number of tasks run at once
+     * @param queueSize max number of tasks waiting for a thread
+     */
+    public ClientExecutor(int threads, int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "client-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Getter method to get the executor shared by the whole client
+     *
+     * @return the shared executor
+     */
+    public static synchronized ClientExecutor getInstance() {
+        if (instance == null) {
+            instance = new ClientExecutor(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Runs a task on a background thread
+     *
+     * @param task the task, an exception it throws fails the future
+     * @param <T>  type of the result
+     * @return the future result, cancel it to skip the task if it hasn't started
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            workers.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(task.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs a task on a background thread
+     *
+     * @param task the task
+     * @return a future that completes when the task is done
+     */
+    public CompletableFuture<Void> run(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    }
+
+    public int getQueued() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Hands the outcome of a future to the JavaFX thread. Nothing is called if the future was cancelled,
+     * since whoever cancelled it no longer wants the answer.
+     *
+     * @param future    the future
+     * @param onSuccess called with the result
+     * @param onFailure called with the cause if the future failed
+     * @param <T>       type of the result
+     */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (error == null) {
+                    onSuccess.accept(result);
+                } else {
+                    onFailure.accept(unwrap(error));
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the exception a task threw, without the CompletionException around it
+     */
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
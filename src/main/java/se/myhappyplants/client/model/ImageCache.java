@@ -0,0 +1,442 @@
+package se.myhappyplants.client.model;
+
+import javafx.scene.image.Image;
+import se.myhappyplants.client.view.ServerConnection;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache for plant pictures from the web.
+ * Decoded images are kept in memory, the least recently used are dropped when their pixels take up more than
+ * the given number of bytes. The downloaded files are stored in a directory under the user's home, so a picture
+ * is only downloaded once and survives a restart of the application. The files are named by the SHA-256 of the
+ * address, not of the picture, and the directory is trimmed to maxDiskBytes, dropping the files that were used
+ * longest ago first. Pictures that are not on the web, like the user's own files, are read as before since they
+ * may change.
+ * <p>
+ * Lists ask for thumbnails, which the server scales down to the size they are shown in. If the server can't
+ * make one, the original picture is decoded at that size instead, so a row never holds a full size picture.
+ * <p>
+ * Only the requests that leave the machine are limited: at most maxPerHost pictures are downloaded from the same
+ * server at once, so one slow server can't take every thread, and at most maxServerRequests thumbnails are asked
+ * from our server at once. Pictures found in memory or on disk never wait for those.
+ */
+public class ImageCache {
+
+    /**
+     * Width and height in pixels of the pictures in the plant lists
+     */
+    public static final int THUMBNAIL_SIZE = 70;
+
+    private static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_DISK_BYTES = 200L * 1024 * 1024;
+    private static final int DEFAULT_PER_HOST = 4;
+    private static final int DEFAULT_SERVER_REQUESTS = 4;
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static ImageCache instance;
+
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final int maxPerHost;
+    private final Map<String, Semaphore> downloadsPerHost = new ConcurrentHashMap<>();
+    private final Semaphore serverRequests;
+    private final LinkedHashMap<String, Image> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes = -1;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+
+    /**
+     * Constructor, the directory is created when the first picture is stored
+     *
+     * @param directory      directory for the downloaded files
+     * @param maxMemoryBytes max number of bytes of decoded pixels kept in memory
+     */
+    public ImageCache(Path directory, long maxMemoryBytes) {
+        this(directory, maxMemoryBytes, DEFAULT_DISK_BYTES);
+    }
+
+    /**
+     * Constructor, the directory is created when the first picture is stored
+     *
+     * @param directory      directory for the downloaded files
+     * @param maxMemoryBytes max number of bytes of decoded pixels kept in memory
+     * @param maxDiskBytes   max number of bytes of files kept in the directory
+     */
+    public ImageCache(Path directory, long maxMemoryBytes, long maxDiskBytes) {
+        this(directory, maxMemoryBytes, maxDiskBytes, DEFAULT_PER_HOST, DEFAULT_SERVER_REQUESTS);
+    }
+
+    /**
+     * Constructor, the directory is created when the first picture is stored
+     *
+     * @param directory         directory for the downloaded files
+     * @param maxMemoryBytes    max number of bytes of decoded pixels kept in memory
+     * @param maxDiskBytes      max number of bytes of files kept in the directory
+     * @param maxPerHost        max number of pictures downloaded at once from the same server
+     * @param maxServerRequests max number of thumbnails asked from our server at once
+     */
+    public ImageCache(Path directory, long maxMemoryBytes, long maxDiskBytes, int maxPerHost, int maxServerRequests) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxPerHost = maxPerHost;
+        this.serverRequests = new Semaphore(maxServerRequests);
+    }
+
+    /**
+     * Getter method to get the cache shared by all views, stored in ~/.myhappyplants/images unless
+     * -Dmyhappyplants.client.imageCacheDir says otherwise. -Dmyhappyplants.client.imageCacheMaxDiskBytes
+     * changes how much it may store.
+     *
+     * @return the shared cache
+     */
+    public static synchronized ImageCache getInstance() {
+        if (instance == null) {
+            String directory = System.getProperty("myhappyplants.client.imageCacheDir",
+                    Paths.get(System.getProperty("user.home"), ".myhappyplants", "images").toString());
+            instance = new ImageCache(Paths.get(directory), DEFAULT_MEMORY_BYTES,
+                    Long.getLong("myhappyplants.client.imageCacheMaxDiskBytes", DEFAULT_DISK_BYTES));
+        }
+        return instance;
+    }
+
+    /**
+     * Gets a decoded picture, from memory, from disk or from the web, in that order. Blocks while reading,
+     * so it should not be called on the JavaFX thread.
+     *
+     * @param url address of the picture
+     * @return the picture, or the default plant picture if it could not be loaded
+     */
+    public Image getImage(String url) {
+        if (url == null || url.isEmpty()) {
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        if (!isCacheable(url)) {
+            return new Image(url);
+        }
+        Image image = getFromMemory(url);
+        if (image != null) {
+            memoryHits.incrementAndGet();
+            return image;
+        }
+        try {
+            image = new Image(new ByteArrayInputStream(getImageBytes(url)));
+        } catch (IOException e) {
+            System.err.println("Could not load image " + url + ": " + e.getMessage());
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        if (image.isError()) {
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        putInMemory(url, image);
+        return image;
+    }
+
+    /**
+     * Gets a decoded picture scaled down to fit a square, from memory, from disk or from the server, in that
+     * order. Blocks while reading, so it should not be called on the JavaFX thread.
+     *
+     * @param url  address of the picture
+     * @param size max width and height in pixels
+     * @return the picture, or the default plant picture if it could not be loaded
+     */
+    public Image getThumbnail(String url, int size) {
+        if (url == null || url.isEmpty()) {
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        if (!isCacheable(url)) {
+            return new Image(url, size, size, true, true);
+        }
+        String key = url + "@" + size;
+        Image image = getFromMemory(key);
+        if (image != null) {
+            memoryHits.incrementAndGet();
+            return image;
+        }
+        try {
+            Path file = fileFor(key);
+            byte[] thumbnail = readFromDisk(file);
+            if (thumbnail == null) {
+                thumbnail = requestThumbnail(url, size);
+                if (thumbnail != null) {
+                    writeToDisk(file, thumbnail);
+                }
+            }
+            image = thumbnail != null
+                    ? new Image(new ByteArrayInputStream(thumbnail))
+                    : new Image(new ByteArrayInputStream(getImageBytes(url)), size, size, true, true);
+        } catch (IOException e) {
+            System.err.println("Could not load image " + url + ": " + e.getMessage());
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        if (image.isError()) {
+            return ImageLibrary.getDefaultPlantImage();
+        }
+        putInMemory(key, image);
+        return image;
+    }
+
+    /**
+     * Gets the file of a picture from disk, downloading and storing it first if needed
+     *
+     * @param url address of the picture
+     * @return the bytes of the file
+     * @throws IOException if it is not stored and could not be downloaded
+     */
+    public byte[] getImageBytes(String url) throws IOException {
+        Path file = fileFor(url);
+        byte[] bytes = readFromDisk(file);
+        if (bytes != null) {
+            return bytes;
+        }
+        bytes = download(url);
+        downloads.incrementAndGet();
+        writeToDisk(file, bytes);
+        return bytes;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getDownloads() {
+        return downloads.get();
+    }
+
+    public synchronized int getMemorySize() {
+        return memory.size();
+    }
+
+    public synchronized long getDiskBytes() {
+        if (diskBytes < 0) {
+            diskBytes = storedFiles().stream().mapToLong(file -> file.size).sum();
+        }
+        return diskBytes;
+    }
+
+    /**
+     * Files are named by the SHA-256 of the address, so any address gives a safe file name
+     */
+    public Path fileFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest(url.getBytes(StandardCharsets.UTF_8))) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is missing from the JVM", e);
+        }
+    }
+
+    private static boolean isCacheable(String url) {
+        return url.startsWith("http://") || url.startsWith("https://");
+    }
+
+    private synchronized Image getFromMemory(String url) {
+        return memory.get(url);
+    }
+
+    private synchronized void putInMemory(String url, Image image) {
+        Image previous = memory.put(url, image);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(image);
+        Iterator<Map.Entry<String, Image>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && memory.size() > 1) {
+            memoryBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Decoded pictures take four bytes per pixel
+     */
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    /**
+     * Marks the file as used so it is trimmed last
+     */
+    private byte[] readFromDisk(Path file) throws IOException {
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the thumbnail made by the server, or null if it could not make one
+     */
+    private byte[] requestThumbnail(String url, int size) throws IOException {
+        acquire(serverRequests);
+        try {
+            Message response = ServerConnection.getClientConnection().makeRequest(new Message(MessageType.getThumbnail, url, size));
+            return response != null && response.isSuccess() ? response.getImageData() : null;
+        } finally {
+            serverRequests.release();
+        }
+    }
+
+    private byte[] download(String url) throws IOException {
+        Semaphore hostSlots = downloadsPerHost.computeIfAbsent(hostOf(url), host -> new Semaphore(maxPerHost));
+        acquire(hostSlots);
+        try {
+            URLConnection connection = URI.create(url).toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid image address " + url, e);
+        } finally {
+            hostSlots.release();
+        }
+    }
+
+    private static void acquire(Semaphore slots) throws IOException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to load an image");
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and moves it in place, so a crash never leaves half a picture behind
+     */
+    private void writeToDisk(Path file, byte[] bytes) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, "image", ".tmp");
+            Files.write(temporaryFile, bytes);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not store image " + file + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    //nothing more to do
+                }
+            }
+            return;
+        }
+        addDiskBytes(bytes.length);
+    }
+
+    /**
+     * Trims the directory to three quarters of its limit when it is full, so it isn't trimmed on every write
+     */
+    private synchronized void addDiskBytes(long bytes) {
+        diskBytes = getDiskBytes() + bytes;
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        List<StoredFile> files = storedFiles();
+        files.sort(Comparator.comparing(file -> file.lastUsed));
+        diskBytes = files.stream().mapToLong(file -> file.size).sum();
+        for (StoredFile file : files) {
+            if (diskBytes <= maxDiskBytes * 3 / 4) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file.path);
+                diskBytes -= file.size;
+            } catch (IOException e) {
+                System.err.println("Could not remove image " + file.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lists the stored pictures, the temporary files of writes in progress are left out
+     */
+    private List<StoredFile> storedFiles() {
+        List<StoredFile> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, path -> !path.getFileName().toString().endsWith(".tmp"))) {
+            for (Path path : stream) {
+                try {
+                    files.add(new StoredFile(path, Files.size(path), Files.getLastModifiedTime(path)));
+                } catch (NoSuchFileException e) {
+                    // removed while listing
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list images in " + directory + ": " + e.getMessage());
+        }
+        return files;
+    }
+
+    private static class StoredFile {
+        private final Path path;
+        private final long size;
+        private final FileTime lastUsed;
+
+        private StoredFile(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
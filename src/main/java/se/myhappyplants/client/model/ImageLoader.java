@@ -0,0 +1,167 @@
+package se.myhappyplants.client.model;
+
+import javafx.scene.image.Image;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads pictures for the lists on a few shared threads instead of one thread per list that loads them one by one.
+ * Waiting pictures are started in order of priority, a lower number first, so the rows the user can see are
+ * loaded before the rest. A request that is cancelled before it starts is never loaded, and one that is cancelled
+ * while loading never reaches its callback. How many pictures are fetched from one server at once is limited by
+ * the {@link ImageCache}, which knows if a picture comes from memory, disk, our server or the picture's own server.
+ */
+public class ImageLoader {
+
+    /**
+     * Priority of pictures in rows the user can see
+     */
+    public static final int VISIBLE = 0;
+
+    private static final int DEFAULT_THREADS = 6;
+    private static ImageLoader instance;
+
+    private final Function<String, Image> fetch;
+    private final int maxRunning;
+    private final ExecutorService workers;
+    private final TreeSet<Request> pending = new TreeSet<>(Comparator.comparingInt((Request request) -> request.priority)
+            .thenComparingLong(request -> request.sequence));
+    private int running;
+    private long sequence;
+
+    /**
+     * Constructor
+     *
+     * @param fetch   loads a picture from its address, called on the loader's threads
+     * @param threads max number of pictures loaded at once
+     */
+    public ImageLoader(Function<String, Image> fetch, int threads) {
+        this.fetch = fetch;
+        this.maxRunning = threads;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "image-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Getter method to get the loader shared by all views, which loads thumbnails through the {@link ImageCache}
+     *
+     * @return the shared loader
+     */
+    public static synchronized ImageLoader getInstance() {
+        if (instance == null) {
+            instance = new ImageLoader(url -> ImageCache.getInstance().getThumbnail(url, ImageCache.THUMBNAIL_SIZE),
+                    DEFAULT_THREADS);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a picture to be loaded
+     *
+     * @param url      address of the picture
+     * @param priority lower numbers are loaded first, {@link #VISIBLE} for rows the user can see
+     * @param onLoaded called on a loader thread with the picture, or null if it could not be loaded
+     * @return the request, to change its priority or cancel it
+     */
+    public synchronized Request load(String url, int priority, Consumer<Image> onLoaded) {
+        Request request = new Request(this, url, priority, sequence++, onLoaded);
+        pending.add(request);
+        dispatch();
+        return request;
+    }
+
+    /**
+     * Moves a waiting request in the queue, for example when its row has been scrolled into view
+     *
+     * @param request  the request
+     * @param priority its new priority
+     */
+    public synchronized void prioritize(Request request, int priority) {
+        if (request.priority != priority && pending.remove(request)) {
+            request.priority = priority;
+            pending.add(request);
+        }
+    }
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    private synchronized void cancel(Request request) {
+        request.cancelled = true;
+        pending.remove(request);
+    }
+
+    /**
+     * Starts waiting requests in order of priority while there are free threads
+     */
+    private void dispatch() {
+        while (running < maxRunning && !pending.isEmpty()) {
+            Request request = pending.pollFirst();
+            running++;
+            workers.execute(() -> run(request));
+        }
+    }
+
+    private void run(Request request) {
+        Image image = null;
+        try {
+            image = fetch.apply(request.url);
+        } catch (RuntimeException e) {
+            System.err.println("Could not load image " + request.url + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                running--;
+                dispatch();
+            }
+        }
+        if (!request.cancelled) {
+            request.onLoaded.accept(image);
+        }
+    }
+
+    /**
+     * A picture that has been asked for
+     */
+    public static class Request {
+        private final ImageLoader loader;
+        private final String url;
+        private final long sequence;
+        private final Consumer<Image> onLoaded;
+        private int priority;
+        private volatile boolean cancelled;
+
+        private Request(ImageLoader loader, String url, int priority, long sequence, Consumer<Image> onLoaded) {
+            this.loader = loader;
+            this.url = url;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.onLoaded = onLoaded;
+        }
+
+        /**
+         * Stops the picture from being loaded, or from reaching its callback if it is already loading
+         */
+        public void cancel() {
+            loader.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package se.myhappyplants.client.model;
+
+import se.myhappyplants.client.view.ServerConnection;
+import se.myhappyplants.shared.BatchOperation;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
+import se.myhappyplants.shared.Plant;
+import se.myhappyplants.shared.User;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Queue for changes to the plants in the user's library. A change is made to the plant at once so the view
+ * doesn't wait for the server, and is sent a moment later together with the changes made in the meantime.
+ * Changes to the same plant are merged, watering a plant three times sends one date, and a plant that is
+ * renamed twice is renamed once. The changes are sent in one batch message, which the server saves in one
+ * transaction, in the order the plants were first changed. Since the server finds plants by their nickname,
+ * all renames are sent before the other changes, and a rename that takes a name another plant is giving up
+ * waits until that plant has been renamed. Changes that can't reach the server are tried again a few times
+ * with growing pauses. A change sent again after its answer was lost gives the same result, the server counts
+ * a rename to the name the plant already has as applied. A change the server refuses, or that still can't be
+ * sent, is undone on the plant and reported.
+ * <p>
+ * All methods, and the callback, are run on the owner executor, the JavaFX thread in the application,
+ * so the plants are never changed from two threads. Only the requests themselves are sent in the background.
+ */
+public class LibraryMutationQueue {
+
+    /**
+     * Outcome of one change sent to the server
+     */
+    public enum Result {
+        APPLIED,
+        REFUSED,
+        UNREACHABLE
+    }
+
+    /**
+     * Sends changes to the server
+     */
+    public interface Sender {
+        /**
+         * @param user       the user who owns the plants
+         * @param operations the changes, in the order they must be applied
+         * @return one result per change
+         * @throws IOException if the server could not be reached at all
+         */
+        List<Result> send(User user, List<BatchOperation> operations) throws IOException;
+    }
+
+    private static final long FLUSH_DELAY_MILLIS = 500;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Sender sender;
+    private final Supplier<User> user;
+    private final Executor owner;
+    private final ClientExecutor background;
+    private final long flushDelayMillis;
+    private final long retryDelayMillis;
+    private final int maxAttempts;
+    private final Consumer<List<Plant>> onRolledBack;
+
+    private Map<Plant, Edit> pending = new IdentityHashMap<>();
+    private Map<Plant, Edit> inFlight = new IdentityHashMap<>();
+    private boolean flushScheduled;
+    private long editsCreated;
+    private CompletableFuture<Void> settled = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates the queue used by the application, which sends changes for the logged in user and runs on
+     * the JavaFX thread
+     *
+     * @param onRolledBack called with the plants whose changes were undone
+     */
+    public LibraryMutationQueue(Consumer<List<Plant>> onRolledBack) {
+        this(LibraryMutationQueue::sendAsBatch, () -> LoggedInUser.getInstance().getUser(), ClientExecutor.FX_THREAD,
+                ClientExecutor.getInstance(), FLUSH_DELAY_MILLIS, RETRY_DELAY_MILLIS, MAX_ATTEMPTS, onRolledBack);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sender           sends the changes
+     * @param user             the user who owns the plants, asked when a plant is first changed
+     * @param owner            runs the queue's own work, the thread the plants may be changed on
+     * @param background       runs the sender
+     * @param flushDelayMillis how long to wait for more changes before sending
+     * @param retryDelayMillis pause before the first retry, doubled for each retry after that
+     * @param maxAttempts      number of times a change is sent before it is given up
+     * @param onRolledBack     called with the plants whose changes were undone
+     */
+    public LibraryMutationQueue(Sender sender, Supplier<User> user, Executor owner, ClientExecutor background,
+                                long flushDelayMillis, long retryDelayMillis, int maxAttempts,
+                                Consumer<List<Plant>> onRolledBack) {
+        this.sender = sender;
+        this.user = user;
+        this.owner = owner;
+        this.background = background;
+        this.flushDelayMillis = flushDelayMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.onRolledBack = onRolledBack;
+    }
+
+    /**
+     * Sets the date the plant was last watered
+     *
+     * @param plant the plant
+     * @param date  the new date
+     * @return false if the date is in the future, then nothing is changed
+     */
+    public boolean water(Plant plant, LocalDate date) {
+        LocalDate previous = plant.getLastWatered().toLocalDate();
+        if (!plant.setLastWatered(date)) {
+            return false;
+        }
+        Edit edit = editFor(plant);
+        if (edit.lastWatered == null) {
+            edit.originalLastWatered = previous;
+        }
+        edit.lastWatered = date.equals(edit.originalLastWatered) ? null : date;
+        changed(plant, edit);
+        return true;
+    }
+
+    /**
+     * Changes the nickname of the plant
+     *
+     * @param plant       the plant
+     * @param newNickname the new nickname
+     */
+    public void rename(Plant plant, String newNickname) {
+        Edit edit = editFor(plant);
+        if (edit.nickname == null) {
+            edit.originalNickname = plant.getNickname();
+        }
+        plant.setNickname(newNickname);
+        edit.nickname = newNickname.equals(edit.originalNickname) ? null : newNickname;
+        changed(plant, edit);
+    }
+
+    /**
+     * Changes how often the plant should be watered
+     *
+     * @param plant             the plant
+     * @param wateringFrequency the new number of days between waterings
+     */
+    public void changeWateringFrequency(Plant plant, int wateringFrequency) {
+        Edit edit = editFor(plant);
+        if (edit.wateringFrequency == null) {
+            edit.originalWateringFrequency = plant.getUsers_watering_frequency();
+        }
+        plant.setUsers_watering_frequency(wateringFrequency);
+        edit.wateringFrequency = wateringFrequency == edit.originalWateringFrequency ? null : wateringFrequency;
+        changed(plant, edit);
+    }
+
+    /**
+     * Marks or unmarks the plant as a favorite
+     *
+     * @param plant    the plant
+     * @param favorite true to make the plant a favorite
+     */
+    public void favorite(Plant plant, boolean favorite) {
+        Edit edit = editFor(plant);
+        if (edit.favorite == null) {
+            edit.originalFavorite = plant.getIsFavorite();
+        }
+        plant.setIsFavorite(favorite);
+        edit.favorite = favorite == edit.originalFavorite ? null : favorite;
+        changed(plant, edit);
+    }
+
+    /**
+     * Sends the waiting changes now instead of after the delay
+     *
+     * @return a future that completes when every change made so far has been applied or undone
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        owner.execute(() -> {
+            if (!pending.isEmpty() && inFlight.isEmpty()) {
+                send(1);
+            }
+            settled.whenComplete((result, error) -> done.complete(null));
+        });
+        return done;
+    }
+
+    /**
+     * @return the number of plants with changes that are not yet on the server
+     */
+    public int getUnsaved() {
+        return pending.size() + inFlight.size();
+    }
+
+    private Edit editFor(Plant plant) {
+        return pending.computeIfAbsent(plant, key -> new Edit(plant, user.get(), editsCreated++));
+    }
+
+    /**
+     * Forgets an edit that no longer changes anything and makes sure the rest will be sent
+     */
+    private void changed(Plant plant, Edit edit) {
+        if (edit.isEmpty()) {
+            pending.remove(plant);
+            settleIfIdle();
+            return;
+        }
+        if (settled.isDone()) {
+            settled = new CompletableFuture<>();
+        }
+        if (!flushScheduled && inFlight.isEmpty()) {
+            flushScheduled = true;
+            CompletableFuture.delayedExecutor(flushDelayMillis, TimeUnit.MILLISECONDS, owner).execute(() -> {
+                flushScheduled = false;
+                if (!pending.isEmpty() && inFlight.isEmpty()) {
+                    send(1);
+                }
+            });
+        }
+    }
+
+    private void settleIfIdle() {
+        if (pending.isEmpty() && inFlight.isEmpty()) {
+            settled.complete(null);
+        }
+    }
+
+    /**
+     * Moves the waiting edits in flight and sends them, only one batch is in flight at a time so the server
+     * gets the changes of a plant in the order they were made
+     */
+    private void send(int attempt) {
+        if (attempt == 1) {
+            inFlight = pending;
+            pending = new IdentityHashMap<>();
+        }
+        List<Operation> operations = orderedOperations(new ArrayList<>(inFlight.values()));
+        background.submit(() -> sendPerUser(operations)).whenComplete((results, error) -> owner.execute(() -> {
+            if (error != null) {
+                error.printStackTrace();
+                handleResults(operations, null, attempt);
+            } else {
+                handleResults(operations, results, attempt);
+            }
+        }));
+    }
+
+    /**
+     * Sends the changes as one batch per user, changes of different users are only possible around a logout.
+     * Once the server can't be reached, the changes after that are not sent.
+     */
+    private List<Result> sendPerUser(List<Operation> operations) {
+        List<Result> results = new ArrayList<>();
+        int start = 0;
+        while (start < operations.size()) {
+            User batchUser = operations.get(start).edit.user;
+            List<BatchOperation> batch = new ArrayList<>();
+            int end = start;
+            while (end < operations.size() && operations.get(end).edit.user == batchUser) {
+                batch.add(operations.get(end).change);
+                end++;
+            }
+            List<Result> batchResults = null;
+            if (results.isEmpty() || results.get(results.size() - 1) != Result.UNREACHABLE) {
+                try {
+                    batchResults = sender.send(batchUser, batch);
+                    if (batchResults == null || batchResults.size() != batch.size()) {
+                        System.err.println("Could not save library changes: wrong number of results");
+                        batchResults = null;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not save library changes: " + e.getMessage());
+                }
+            }
+            results.addAll(batchResults != null ? batchResults : Collections.nCopies(batch.size(), Result.UNREACHABLE));
+            start = end;
+        }
+        return results;
+    }
+
+    private void handleResults(List<Operation> operations, List<Result> results, int attempt) {
+        List<Plant> rolledBack = new ArrayList<>();
+        boolean retry = false;
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            Result result = results == null ? Result.UNREACHABLE : results.get(i);
+            if (result == Result.APPLIED) {
+                operation.applied();
+            } else if (result == Result.UNREACHABLE && attempt < maxAttempts) {
+                retry = true;
+            } else {
+                rollBack(operation);
+                if (!rolledBack.contains(operation.edit.plant)) {
+                    rolledBack.add(operation.edit.plant);
+                }
+            }
+        }
+        inFlight.values().removeIf(Edit::isEmpty);
+        if (!rolledBack.isEmpty()) {
+            onRolledBack.accept(rolledBack);
+        }
+        if (retry) {
+            long delay = retryDelayMillis << (attempt - 1);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, owner).execute(() -> send(attempt + 1));
+            return;
+        }
+        inFlight = new IdentityHashMap<>();
+        if (pending.isEmpty()) {
+            settleIfIdle();
+        } else {
+            send(1);
+        }
+    }
+
+    /**
+     * Puts the renames first, each one after the renames that free the name it takes, and then the other
+     * changes in the order the plants were first changed. Without that, renaming B from "Y" to "W" and then
+     * A from "X" to "Y" could reach the server the other way around, and the rename of B would then match
+     * both plants. Renames that swap names can't be ordered, they are sent in the order they were made.
+     */
+    private static List<Operation> orderedOperations(List<Edit> edits) {
+        edits.sort((first, second) -> Long.compare(first.created, second.created));
+        List<Edit> renames = new ArrayList<>();
+        for (Edit edit : edits) {
+            if (edit.nickname != null) {
+                renames.add(edit);
+            }
+        }
+        List<Operation> operations = new ArrayList<>();
+        while (!renames.isEmpty()) {
+            Edit next = renames.get(0);
+            for (Edit rename : renames) {
+                if (!isNameTakenByOther(rename, renames)) {
+                    next = rename;
+                    break;
+                }
+            }
+            renames.remove(next);
+            next.addRename(operations);
+        }
+        for (Edit edit : edits) {
+            edit.addChanges(operations);
+        }
+        return operations;
+    }
+
+    private static boolean isNameTakenByOther(Edit rename, List<Edit> renames) {
+        for (Edit other : renames) {
+            if (other != rename && rename.nickname.equals(other.originalNickname)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Undoes a change on the plant. If the plant has been changed again since, the newer edit now has to
+     * start from what the server still has.
+     */
+    private void rollBack(Operation operation) {
+        Edit edit = operation.edit;
+        Edit newer = pending.get(edit.plant);
+        switch (operation.field) {
+            case NICKNAME -> {
+                if (newer == null || newer.nickname == null) {
+                    edit.plant.setNickname(edit.originalNickname);
+                }
+                if (newer != null) {
+                    newer.originalNickname = edit.originalNickname;
+                }
+                edit.nickname = null;
+            }
+            case LAST_WATERED -> {
+                if (newer == null || newer.lastWatered == null) {
+                    edit.plant.setLastWatered(edit.originalLastWatered);
+                }
+                if (newer != null) {
+                    newer.originalLastWatered = edit.originalLastWatered;
+                }
+                edit.lastWatered = null;
+            }
+            case WATERING_FREQUENCY -> {
+                if (newer == null || newer.wateringFrequency == null) {
+                    edit.plant.setUsers_watering_frequency(edit.originalWateringFrequency);
+                }
+                if (newer != null) {
+                    newer.originalWateringFrequency = edit.originalWateringFrequency;
+                }
+                edit.wateringFrequency = null;
+            }
+            case FAVORITE -> {
+                if (newer == null || newer.favorite == null) {
+                    edit.plant.setIsFavorite(edit.originalFavorite);
+                }
+                if (newer != null) {
+                    newer.originalFavorite = edit.originalFavorite;
+                }
+                edit.favorite = null;
+            }
+        }
+    }
+
+    /**
+     * Sends the changes as one batch message on the current connection, which the server applies in order
+     * in one transaction and answers with a result per change
+     */
+    private static List<Result> sendAsBatch(User user, List<BatchOperation> operations) throws IOException {
+        Message response = ServerConnection.getClientConnection().makeRequest(new Message(MessageType.batch, user, operations));
+        if (response == null) {
+            throw new IOException("No response from the server");
+        }
+        boolean[] applied = response.getBatchResults();
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (applied == null || applied.length != operations.size()) {
+                results.add(Result.REFUSED);
+            } else {
+                results.add(applied[i] ? Result.APPLIED : Result.REFUSED);
+            }
+        }
+        return results;
+    }
+
+    private enum Field {
+        NICKNAME,
+        LAST_WATERED,
+        WATERING_FREQUENCY,
+        FAVORITE
+    }
+
+    /**
+     * The changes to one plant that are not on the server yet. A field that is null is not changed, the
+     * original values are what the server has, which is what the plant is reset to if a change is undone.
+     * The user is kept so changes made just before logging out are still sent for the right user.
+     */
+    private static class Edit {
+        private final Plant plant;
+        private final User user;
+        private final long created;
+        private String originalNickname;
+        private String nickname;
+        private LocalDate originalLastWatered;
+        private LocalDate lastWatered;
+        private int originalWateringFrequency;
+        private Integer wateringFrequency;
+        private boolean originalFavorite;
+        private Boolean favorite;
+
+        private Edit(Plant plant, User user, long created) {
+            this.plant = plant;
+            this.user = user;
+            this.created = created;
+            this.originalNickname = plant.getNickname();
+        }
+
+        private boolean isEmpty() {
+            return nickname == null && lastWatered == null && wateringFrequency == null && favorite == null;
+        }
+
+        private void addRename(List<Operation> operations) {
+            if (nickname != null) {
+                operations.add(new Operation(this, Field.NICKNAME, BatchOperation.rename(originalNickname, nickname)));
+            }
+        }
+
+        /**
+         * The other changes come after the renames, so they find the plant by the name it will have by then
+         */
+        private void addChanges(List<Operation> operations) {
+            String name = nickname != null ? nickname : originalNickname;
+            if (lastWatered != null) {
+                operations.add(new Operation(this, Field.LAST_WATERED, BatchOperation.water(name, lastWatered)));
+            }
+            if (wateringFrequency != null) {
+                operations.add(new Operation(this, Field.WATERING_FREQUENCY,
+                        BatchOperation.wateringFrequency(name, wateringFrequency)));
+            }
+            if (favorite != null) {
+                operations.add(new Operation(this, Field.FAVORITE, BatchOperation.favorite(name, favorite)));
+            }
+        }
+    }
+
+    /**
+     * One change sent to the server
+     */
+    private static class Operation {
+        private final Edit edit;
+        private final Field field;
+        private final BatchOperation change;
+
+        private Operation(Edit edit, Field field, BatchOperation change) {
+            this.edit = edit;
+            this.field = field;
+            this.change = change;
+        }
+
+        /**
+         * The server has the change, so it is the new starting point
+         */
+        private void applied() {
+            switch (field) {
+                case NICKNAME -> {
+                    edit.originalNickname = edit.nickname;
+                    edit.nickname = null;
+                }
+                case LAST_WATERED -> {
+                    edit.originalLastWatered = edit.lastWatered;
+                    edit.lastWatered = null;
+                }
+                case WATERING_FREQUENCY -> {
+                    edit.originalWateringFrequency = edit.wateringFrequency;
+                    edit.wateringFrequency = null;
+                }
+                case FAVORITE -> {
+                    edit.originalFavorite = edit.favorite;
+                    edit.favorite = null;
+                }
+            }
+        }
+    }
+}
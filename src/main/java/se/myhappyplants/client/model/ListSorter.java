@@ -2,20 +2,18 @@ package se.myhappyplants.client.model;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import se.myhappyplants.client.view.PlantPane;
+import se.myhappyplants.shared.Plant;
 import se.myhappyplants.shared.SortingOption;
 
 import java.util.Comparator;
 
 /**
- * Class that sorts lists of plant panes according to different options
+ * Class that sorts lists of plants according to different options
  * Created by: Christopher O'Driscoll
  * Updated by: Christopher O'Driscoll
  */
 public class ListSorter {
 
-    private static ObservableList<PlantPane> listToBeSorted;
-
     /**
      * Creates a list of sorting options for search results
      *
@@ -49,16 +47,16 @@ public class ListSorter {
      *
      * @param sortOption
      * @param plantList
-     * @return ObservableList<PlantPane>
+     * @return ObservableList<Plant>
      */
-    public static ObservableList<PlantPane> sort(SortingOption sortOption, ObservableList<PlantPane> plantList) {
+    public static ObservableList<Plant> sort(SortingOption sortOption, ObservableList<Plant> plantList) {
         System.out.println("Sorting by: " + sortOption);
         switch (sortOption) {
-            case NICKNAME -> plantList.sort(Comparator.comparing(pane -> pane.getPlant().getNickname(), String.CASE_INSENSITIVE_ORDER));
-            case COMMON_NAME -> plantList.sort(Comparator.comparing(pane -> pane.getPlant().getCommonName(), String.CASE_INSENSITIVE_ORDER));
-            case SCIENTIFIC_NAME -> plantList.sort(Comparator.comparing(pane -> pane.getPlant().getScientificName(), String.CASE_INSENSITIVE_ORDER));
-            case WATER_NEED -> plantList.sort(Comparator.comparingDouble(pane -> pane.getPlant().getProgress()));
-            case FAVORITES -> plantList.sort(Comparator.comparing(pane -> !((PlantPane) pane).getPlant().getIsFavorite()).thenComparing(pane -> ((PlantPane) pane).getPlant().getNickname(), String.CASE_INSENSITIVE_ORDER));
+            case NICKNAME -> plantList.sort(Comparator.comparing(Plant::getNickname, String.CASE_INSENSITIVE_ORDER));
+            case COMMON_NAME -> plantList.sort(Comparator.comparing(Plant::getCommonName, String.CASE_INSENSITIVE_ORDER));
+            case SCIENTIFIC_NAME -> plantList.sort(Comparator.comparing(Plant::getScientificName, String.CASE_INSENSITIVE_ORDER));
+            case WATER_NEED -> plantList.sort(Comparator.comparingDouble(Plant::getProgress));
+            case FAVORITES -> plantList.sort(Comparator.comparing((Plant plant) -> !plant.getIsFavorite()).thenComparing(Plant::getNickname, String.CASE_INSENSITIVE_ORDER));
             default -> {} //no sorting
         }
         return plantList;
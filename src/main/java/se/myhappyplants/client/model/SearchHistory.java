@@ -0,0 +1,299 @@
+package se.myhappyplants.client.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The user's search history, counted and indexed in memory so suggestions can be found on every keystroke
+ * without going through the whole history.
+ * <p>
+ * Every part of one to three letters of a search points to the searches that contain it, and keeps the most
+ * used of them sorted, so typing one to three letters only reads a short ready list. Longer text is looked up
+ * through its rarest three-letter part.
+ * <p>
+ * The file is read once. New searches are appended as one line each, and the file is rewritten with one
+ * "count TAB search" line per search when it has grown to twice the number of searches. Old files with one
+ * search per line are read as searches used once. At most maxEntries searches are kept, the least used and
+ * oldest are forgotten first.
+ */
+public class SearchHistory {
+
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt((Entry entry) -> entry.count).reversed()
+            .thenComparing(Comparator.comparingLong((Entry entry) -> entry.lastUsed).reversed());
+    private static final Comparator<Entry> EVICTION_ORDER = Comparator.comparingInt((Entry entry) -> entry.count)
+            .thenComparingLong(entry -> entry.lastUsed);
+
+    private final Path file;
+    private final int maxEntries;
+    private final int suggestionsPerGram;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Gram> grams = new HashMap<>();
+    private final TreeSet<Entry> evictionOrder = new TreeSet<>(EVICTION_ORDER);
+    private long clock;
+    private int logLines;
+
+    /**
+     * Constructor, reads the history file if it exists
+     *
+     * @param file       the history file
+     * @param maxEntries max number of searches to keep
+     */
+    public SearchHistory(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.suggestionsPerGram = 10;
+        load();
+    }
+
+    /**
+     * Finds searches that contain the text, the most used first
+     *
+     * @param text  what the user has typed
+     * @param limit max number of searches, at most 10 for text of up to three letters
+     * @return matching searches
+     */
+    public synchronized List<String> find(String text, int limit) {
+        List<String> matches = new ArrayList<>();
+        String key = text.toLowerCase(Locale.ROOT);
+        if (key.isEmpty()) {
+            return matches;
+        }
+        if (key.length() <= 3) {
+            Gram gram = grams.get(key);
+            if (gram != null) {
+                for (int i = 0; i < gram.top.size() && i < limit; i++) {
+                    matches.add(gram.top.get(i).text);
+                }
+            }
+            return matches;
+        }
+        Gram rarest = null;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            Gram gram = grams.get(key.substring(i, i + 3));
+            if (gram == null) {
+                return matches;
+            }
+            if (rarest == null || gram.entries.size() < rarest.entries.size()) {
+                rarest = gram;
+            }
+        }
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : rarest.entries) {
+            if (entry.key.contains(key)) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(RANKING);
+        for (int i = 0; i < candidates.size() && i < limit; i++) {
+            matches.add(candidates.get(i).text);
+        }
+        return matches;
+    }
+
+    /**
+     * Counts a search and appends it to the file
+     *
+     * @param text the search
+     */
+    public synchronized void add(String text) {
+        String search = clean(text);
+        if (search.isEmpty()) {
+            return;
+        }
+        count(search, 1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(search);
+            writer.newLine();
+            logLines++;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (logLines > 2 * entries.size() + 100) {
+            compact();
+        }
+    }
+
+    public synchronized boolean contains(String text) {
+        return entries.containsKey(clean(text).toLowerCase(Locale.ROOT));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Rewrites the file with one line per search and its count
+     */
+    public synchronized void compact() {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Entry> oldestFirst = new ArrayList<>(entries.values());
+        oldestFirst.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            for (Entry entry : oldestFirst) {
+                writer.write(entry.count + "\t" + entry.text);
+                writer.newLine();
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logLines = entries.size();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void load() {
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                logLines++;
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    try {
+                        count(clean(line.substring(tab + 1)), Integer.parseInt(line.substring(0, tab)));
+                        continue;
+                    }
+                    catch (NumberFormatException e) {
+                        // not a compacted line, read it as a search
+                    }
+                }
+                count(clean(line), 1);
+            }
+        }
+        catch (NoSuchFileException e) {
+            // no history yet, the file is created by the first search
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void count(String search, int times) {
+        if (search.isEmpty()) {
+            return;
+        }
+        String key = search.toLowerCase(Locale.ROOT);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                evict(evictionOrder.first());
+            }
+            entry = new Entry(key, search);
+            entries.put(key, entry);
+        }
+        else {
+            evictionOrder.remove(entry);
+        }
+        entry.count += times;
+        entry.lastUsed = ++clock;
+        evictionOrder.add(entry);
+        for (String part : grams(key)) {
+            Gram gram = grams.computeIfAbsent(part, k -> new Gram());
+            gram.entries.add(entry);
+            gram.rank(entry, suggestionsPerGram);
+        }
+    }
+
+    private void evict(Entry entry) {
+        entries.remove(entry.key);
+        evictionOrder.remove(entry);
+        for (String part : grams(entry.key)) {
+            Gram gram = grams.get(part);
+            gram.entries.remove(entry);
+            if (gram.entries.isEmpty()) {
+                grams.remove(part);
+            }
+            else if (gram.top.remove(entry)) {
+                gram.rebuildTop(suggestionsPerGram);
+            }
+        }
+    }
+
+    /**
+     * Every part of one, two and three letters of the search
+     */
+    private static Set<String> grams(String key) {
+        Set<String> parts = new LinkedHashSet<>();
+        for (int length = 1; length <= 3; length++) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                parts.add(key.substring(i, i + length));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Line breaks and tabs would break the file format
+     */
+    private static String clean(String text) {
+        return text == null ? "" : text.replaceAll("[\\t\\r\\n]+", " ").trim();
+    }
+
+    private static class Entry {
+        private final String key;
+        private final String text;
+        private int count;
+        private long lastUsed;
+
+        private Entry(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The searches containing one part, with the most used of them kept sorted
+     */
+    private static class Gram {
+        private final Set<Entry> entries = new HashSet<>();
+        private final List<Entry> top = new ArrayList<>(2);
+
+        private void rank(Entry entry, int size) {
+            if (!top.contains(entry)) {
+                if (top.size() >= size && RANKING.compare(entry, top.get(top.size() - 1)) >= 0) {
+                    return;
+                }
+                top.add(entry);
+            }
+            top.sort(RANKING);
+            if (top.size() > size) {
+                top.remove(top.size() - 1);
+            }
+        }
+
+        private void rebuildTop(int size) {
+            top.clear();
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(RANKING);
+            top.addAll(sorted.subList(0, Math.min(size, sorted.size())));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package se.myhappyplants.client.view;
 
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
@@ -12,7 +13,9 @@ import javafx.scene.layout.*;
 import javafx.util.Duration;
 import se.myhappyplants.client.controller.MyPlantsTabPaneController;
 import se.myhappyplants.client.model.BoxTitle;
+import se.myhappyplants.client.model.ClientExecutor;
 import se.myhappyplants.client.model.ImageLibrary;
+import se.myhappyplants.client.model.ImageLoader;
 import se.myhappyplants.client.model.PictureRandomizerClient;
 import se.myhappyplants.client.util.DialogUtils;
 import se.myhappyplants.shared.PlantDetails;
@@ -53,6 +56,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
 
     public boolean extended;
     private boolean gotInfoOnPlant;
+    private ImageLoader.Request imageRequest;
 
     /**
      * Creates a simple pane with loading image
@@ -86,8 +90,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         this.myPlantsTabPaneController = myPlantsTabPaneController;
         this.plant = plant;
         this.image = new ImageView();
-        Image img = new Image(plant.getImageURL());
-        initImages(img);
+        initImages(ImageLibrary.getLoadingImage());
         initNicknameLabel(plant);
         initLastWateredLabel(plant);
         initProgressBar(plant);
@@ -102,6 +105,57 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         initFavoriteButton();
         initImgFavoriteSign(plant);
         initListView();
+        loadImage();
+        if (myPlantsTabPaneController.isExpanded(plant)) {
+            showExpanded();
+        }
+    }
+
+    /**
+     * Shows another plant in the pane, used when the row is reused for another plant or the plant has changed.
+     * The pane is opened or closed like the user left that plant.
+     *
+     * @param plant the plant to show
+     */
+    @Override
+    public void setPlant(Plant plant) {
+        boolean otherPlant = plant != this.plant;
+        this.plant = plant;
+        nickname.setText(plant.getNickname());
+        lastWateredLabel.setText("Last watered: " + plant.getLastWatered().toString());
+        daysUntilWaterlbl.setText(plant.getDaysUntilWater());
+        progressBar.setProgress(plant.getProgress());
+        setColorProgressBar(plant.getProgress());
+        imgFavoriteSign.setImage(plant.getIsFavorite() ? ImageLibrary.getFullHeart() : ImageLibrary.getEmptyHeart());
+        favoriteButton.setGraphic(imgFavoriteSign);
+        if (otherPlant) {
+            datePicker.setValue(null);
+            gotInfoOnPlant = false;
+            loadImage();
+        }
+        if (myPlantsTabPaneController.isExpanded(plant)) {
+            showExpanded();
+        } else {
+            showCollapsed();
+        }
+    }
+
+    /**
+     * Shows the loading image and asks the shared image loader for the plant's image. A request for the
+     * previous plant of the pane is cancelled.
+     */
+    private void loadImage() {
+        if (imageRequest != null) {
+            imageRequest.cancel();
+        }
+        image.setImage(ImageLibrary.getLoadingImage());
+        Plant requestedPlant = plant;
+        imageRequest = ImageLoader.getInstance().load(plant.getImageURL(), ImageLoader.VISIBLE, img ->
+                Platform.runLater(() -> {
+                    if (plant == requestedPlant) {
+                        image.setImage(img == null ? ImageLibrary.getDefaultPlantImage() : img);
+                    }
+                }));
     }
 
 
@@ -159,8 +213,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
 
 
     public void updateImage() {
-        Image img = new Image(plant.getImageURL());
-        image.setImage(img);
+        loadImage();
     }
 
     /**
@@ -247,7 +300,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         waterButton.setOnAction(action -> {
             progressBar.setProgress(100);
             setColorProgressBar(100);
-            myPlantsTabPaneController.changeLastWateredInDB(plant, java.time.LocalDate.now());
+            myPlantsTabPaneController.changeLastWateredInDB(this.plant, java.time.LocalDate.now());
             setColorProgressBar(100);
         });
     }
@@ -264,7 +317,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         updateWateringFrequencyButton.setLayoutY(55.0);
         updateWateringFrequencyButton.setMnemonicParsing(false);
         updateWateringFrequencyButton.setOnAction(onPress -> {
-            updateWateringFrequency(plant);
+            updateWateringFrequency(this.plant);
         });
     }
 
@@ -292,25 +345,75 @@ public class LibraryPlantPane extends Pane implements PlantPane {
             System.out.println("Not extended");
             if (!gotInfoOnPlant) {
                 System.out.println("Not got info on plant");
-                PlantDetails plantDetails = myPlantsTabPaneController.getPlantDetails(plant);
-                ObservableList<String> plantInfo = FXCollections.observableArrayList();
-                plantInfo.add("Last watered: " + plant.getLastWatered());
-                plantInfo.add("Current watering frequency: every " + plant.getUsers_watering_frequency() + " days");
-                plantInfo.add("Scientific name: " + plantDetails.getScientificName());
-                plantInfo.add("Family: " + plantDetails.getFamilyName());
-                plantInfo.add("Light: " + plantDetails.getSunlight());
-                plantInfo.add("Water: " + plantDetails.getRecommended_watering_frequency());
-                plantInfo.add("Description: " + plantDetails.getDescription());
-                listViewMoreInfo.setItems(plantInfo);
-                System.out.println("Got info on plant + " + plant.getNickname() + "scientific: " + plant.getScientificName() + "family: " + plantDetails.getFamilyName() + "light: " + plantDetails.getSunlight() + "water: " + plantDetails.getRecommended_watering_frequency() + "last watered: " + plant.getLastWatered());
-                gotInfoOnPlant = true; // TODO: each plant should only be fetched once
+                requestPlantDetails();
             }
+            myPlantsTabPaneController.setExpanded(plant, true);
             expand();
         } else {
+            myPlantsTabPaneController.setExpanded(plant, false);
             collapse();
         }
     }
 
+    /**
+     * Method to fill the list with the extended information about the plant
+     *
+     * @param plantDetails details of the plant from the server
+     */
+    private void showPlantDetails(PlantDetails plantDetails) {
+        ObservableList<String> plantInfo = FXCollections.observableArrayList();
+        plantInfo.add("Last watered: " + plant.getLastWatered());
+        plantInfo.add("Current watering frequency: every " + plant.getUsers_watering_frequency() + " days");
+        plantInfo.add("Scientific name: " + plantDetails.getScientificName());
+        plantInfo.add("Family: " + plantDetails.getFamilyName());
+        plantInfo.add("Light: " + plantDetails.getSunlight());
+        plantInfo.add("Water: " + plantDetails.getRecommended_watering_frequency());
+        plantInfo.add("Description: " + plantDetails.getDescription());
+        listViewMoreInfo.setItems(plantInfo);
+        gotInfoOnPlant = true;
+    }
+
+    /**
+     * Fetches the details of the plant in the background and shows them if the pane still shows that plant
+     */
+    private void requestPlantDetails() {
+        listViewMoreInfo.getItems().clear();
+        Plant plantToShow = plant;
+        ClientExecutor.onFxThread(myPlantsTabPaneController.getPlantDetailsAsync(plantToShow), plantDetails -> {
+            if (plant == plantToShow && plantDetails != null) {
+                showPlantDetails(plantDetails);
+            }
+        }, error -> System.err.println("Could not get details of " + plantToShow.getNickname() + ": " + error.getMessage()));
+    }
+
+    /**
+     * Opens the pane at once without animation, used when a row is shown for a plant the user has opened.
+     * Details the controller hasn't fetched yet are fetched in the background so scrolling doesn't wait.
+     */
+    private void showExpanded() {
+        if (!gotInfoOnPlant) {
+            requestPlantDetails();
+        }
+        if (!extended) {
+            this.getChildren().addAll(listViewMoreInfo, changeNicknameButton, changePictureButton, deleteButton, datePicker, changeOKWaterButton);
+            extended = true;
+        }
+        infoButton.setDisable(false);
+        this.setPrefHeight(292.0);
+    }
+
+    /**
+     * Closes the pane at once without animation
+     */
+    private void showCollapsed() {
+        if (extended) {
+            this.getChildren().removeAll(listViewMoreInfo, changeNicknameButton, changePictureButton, deleteButton, datePicker, changeOKWaterButton, lastWateredLabel);
+            extended = false;
+        }
+        infoButton.setDisable(false);
+        this.setPrefHeight(92.0);
+    }
+
     /**
      * Method to initiate the change nickname-button
      *
@@ -322,7 +425,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         changeNicknameButton.setLayoutY(250.0);
         changeNicknameButton.setMnemonicParsing(false);
         changeNicknameButton.setOnAction(onPress -> {
-            changeNickname(plant);
+            changeNickname(this.plant);
         });
     }
 
@@ -337,7 +440,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         changeOKWaterButton.setLayoutY(250.0);
         changeOKWaterButton.setMnemonicParsing(false);
         changeOKWaterButton.setOnAction(onPress -> {
-            changeDate(plant);
+            changeDate(this.plant);
             datePicker.setPromptText("Change last watered");
         });
     }
@@ -377,7 +480,7 @@ public class LibraryPlantPane extends Pane implements PlantPane {
         deleteButton.setLayoutY(250.0);
         deleteButton.setMnemonicParsing(false);
         deleteButton.setOnAction(onPress -> {
-            removePlant(plant);
+            removePlant(this.plant);
         });
     }
 
@@ -525,10 +628,9 @@ public class LibraryPlantPane extends Pane implements PlantPane {
      */
     private void changeDate(Plant plant) {
         LocalDate date = datePicker.getValue();
-        if (plant.setLastWatered(date)) {
+        if (myPlantsTabPaneController.changeLastWateredInDB(plant, date)) {
             progressBar.setProgress(plant.getProgress());
             setColorProgressBar(plant.getProgress());
-            myPlantsTabPaneController.changeLastWateredInDB(plant, date);
         } else {
             MessageBox.display(BoxTitle.Error, "Can't water a plant in the future");
         }
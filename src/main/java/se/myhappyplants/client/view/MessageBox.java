@@ -1,6 +1,7 @@
 package se.myhappyplants.client.view;
 
 import javafx.animation.FadeTransition;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -61,6 +62,20 @@ public class MessageBox {
         window.showAndWait();
     }
 
+    /**
+     * Displays the message box from any thread, it is shown on the JavaFX thread when it gets to it.
+     * Without a running JavaFX application, like in tests, the message is written to System.err instead.
+     *
+     * @param boxTitle the title of the box
+     * @param message  the message of the box
+     */
+    public static void displayLater(BoxTitle boxTitle, String message) {
+        try {
+            Platform.runLater(() -> display(boxTitle, message));
+        } catch (IllegalStateException e) {
+            System.err.println(boxTitle + ": " + message);
+        }
+    }
 
     /**
      * Displays a yes/no input box
@@ -0,0 +1,223 @@
+package se.myhappyplants.client.view;
+
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageCodec;
+import se.myhappyplants.shared.MessageCodecs;
+import se.myhappyplants.shared.MessageFrames;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One long-lived connection to the server that is shared by all client threads.
+ * Every request gets an id and a reader thread hands each response to the thread waiting for that id,
+ * so several requests can be in flight on the same socket. A new connection is opened when the old one is lost.
+ */
+public class MultiplexedConnection {
+
+    private final String ipAddress;
+    private final int port;
+    private final boolean framedProtocol;
+    private final MessageCodec codec;
+    private final long requestTimeoutMillis;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Object connectLock = new Object();
+    private Link link;
+
+    /**
+     * Constructor, the connection is opened when the first request is made
+     *
+     * @param ipAddress            address of the server
+     * @param port                 port of the server
+     * @param framedProtocol       true to send length-prefixed frames (NioServer), false for an object stream
+     * @param codec                codec to ask for with a handshake, null for no handshake
+     * @param requestTimeoutMillis how long to wait for a response
+     */
+    public MultiplexedConnection(String ipAddress, int port, boolean framedProtocol, MessageCodec codec, long requestTimeoutMillis) {
+        this.ipAddress = ipAddress;
+        this.port = port;
+        this.framedProtocol = framedProtocol;
+        this.codec = codec;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    /**
+     * Sends a request and waits for its response. If the request can't be sent it is sent once more on a new connection.
+     * A request that was sent is never sent again, since the server may already have carried it out.
+     *
+     * @param request instance of class Message with a certain request
+     * @return instance of Message class with a certain response
+     * @throws IOException if the request could not be sent or no response arrived
+     */
+    public Message request(Message request) throws IOException {
+        request.setRequestId(nextRequestId.incrementAndGet());
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        Link sentOn;
+        try {
+            sentOn = send(request, response);
+        }
+        catch (IOException e) {
+            sentOn = send(request, response);
+        }
+        try {
+            return response.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Connection lost while waiting for response", e.getCause());
+        }
+        catch (TimeoutException e) {
+            throw new IOException("No response within " + requestTimeoutMillis + " ms", e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response", e);
+        }
+        finally {
+            sentOn.pendingResponses.remove(request.getRequestId());
+        }
+    }
+
+    /**
+     * Closes the current connection, the next request opens a new one
+     */
+    public void close() {
+        synchronized (connectLock) {
+            if (link != null) {
+                link.close(new IOException("Connection closed"));
+                link = null;
+            }
+        }
+    }
+
+    private Link send(Message request, CompletableFuture<Message> response) throws IOException {
+        Link current = currentLink();
+        current.pendingResponses.put(request.getRequestId(), response);
+        try {
+            current.write(request);
+            return current;
+        }
+        catch (IOException e) {
+            current.pendingResponses.remove(request.getRequestId());
+            current.close(e);
+            throw e;
+        }
+    }
+
+    private Link currentLink() throws IOException {
+        synchronized (connectLock) {
+            if (link == null || link.closed) {
+                Socket socket = new Socket(ipAddress, port);
+                try {
+                    link = new Link(socket);
+                }
+                catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+            }
+            return link;
+        }
+    }
+
+    /**
+     * One socket with its streams, reader thread and the requests waiting for a response on it
+     */
+    private class Link implements Runnable {
+        private final Socket socket;
+        private final ObjectOutputStream oos;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final MessageCodec frameCodec;
+        private final Map<Long, CompletableFuture<Message>> pendingResponses = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        private Link(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            if (framedProtocol || codec != null) {
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                frameCodec = codec != null ? MessageFrames.requestCodec(out, in, codec) : MessageCodecs.JAVA_SERIALIZATION;
+                oos = null;
+            }
+            else {
+                oos = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                oos.flush();
+                out = null;
+                in = null;
+                frameCodec = null;
+            }
+            Thread reader = new Thread(this, "server-connection-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private synchronized void write(Message request) throws IOException {
+            if (frameCodec != null) {
+                MessageFrames.writeFrame(out, request, frameCodec);
+            }
+            else {
+                oos.writeObject(request);
+                oos.flush();
+                oos.reset();
+            }
+        }
+
+        /**
+         * Reads responses until the connection is lost and completes the matching requests
+         */
+        @Override
+        public void run() {
+            try {
+                if (frameCodec != null) {
+                    while (!closed) {
+                        complete(MessageFrames.readFrame(in, frameCodec));
+                    }
+                }
+                else {
+                    ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+                    while (!closed) {
+                        complete((Message) ois.readObject());
+                    }
+                }
+            }
+            catch (IOException | ClassNotFoundException e) {
+                close(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+
+        private void complete(Message response) {
+            CompletableFuture<Message> pendingResponse = pendingResponses.remove(response.getRequestId());
+            if (pendingResponse != null) {
+                pendingResponse.complete(response);
+            }
+        }
+
+        private void close(IOException cause) {
+            closed = true;
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                //the connection is thrown away anyway
+            }
+            for (CompletableFuture<Message> pendingResponse : pendingResponses.values()) {
+                pendingResponse.completeExceptionally(cause);
+            }
+            pendingResponses.clear();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package se.myhappyplants.client.view;
+
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import se.myhappyplants.shared.Plant;
+
+import java.util.function.Function;
+
+/**
+ * List row that shows a plant in a plant pane. The ListView only creates rows for the plants on screen and
+ * moves them to other plants when the user scrolls, so a list of hundreds of plants only holds a screenful
+ * of panes. The pane is created when the row first gets a plant and is reused after that.
+ *
+ * @param <T> type of the pane
+ */
+public class PlantListCell<T extends Node & PlantPane> extends ListCell<Plant> {
+
+    private final Function<Plant, T> paneFactory;
+    private T pane;
+
+    /**
+     * Constructor
+     *
+     * @param paneFactory creates the pane for the first plant the row shows
+     */
+    public PlantListCell(Function<Plant, T> paneFactory) {
+        this.paneFactory = paneFactory;
+    }
+
+    @Override
+    protected void updateItem(Plant plant, boolean empty) {
+        super.updateItem(plant, empty);
+        setText(null);
+        if (empty || plant == null) {
+            setGraphic(null);
+            return;
+        }
+        if (pane == null) {
+            pane = paneFactory.apply(plant);
+        } else {
+            pane.setPlant(plant);
+        }
+        setGraphic(pane);
+    }
+}
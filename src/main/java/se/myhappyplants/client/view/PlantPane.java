@@ -10,4 +10,11 @@ import se.myhappyplants.shared.Plant;
 public interface PlantPane {
 
     Plant getPlant();
+
+    /**
+     * Shows another plant in the pane, used when a list row is reused for another plant
+     *
+     * @param plant the plant to show
+     */
+    void setPlant(Plant plant);
 }
@@ -1,12 +1,19 @@
 
 package se.myhappyplants.client.view;
 
+import se.myhappyplants.client.model.ClientExecutor;
 import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageCodec;
+import se.myhappyplants.shared.MessageCodecs;
+import se.myhappyplants.shared.MessageFrames;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class that opens a connection to the server, to send request and receive response objects.
@@ -18,6 +25,10 @@ public class ServerConnection {
     private static ServerConnection connection;
     private String ipAddress = "localhost";
     private int port = 2555;
+    private boolean framedProtocol = Boolean.getBoolean("myhappyplants.client.framed");
+    private boolean persistentConnection = Boolean.getBoolean("myhappyplants.client.persistent");
+    private MessageCodec codec = MessageCodecs.fromName(System.getProperty("myhappyplants.client.codec"));
+    private MultiplexedConnection multiplexedConnection;
 
     public static ServerConnection getClientConnection() {
         if(connection==null) {
@@ -33,8 +44,51 @@ public class ServerConnection {
      * Set the port for the server connection.
      * @param port the port number to set
      */
-    public void setPort(int port) {
+    public synchronized void setPort(int port) {
         this.port = port;
+        closePersistentConnection();
+    }
+
+    /**
+     * Choose if requests should be sent as length-prefixed frames, which is
+     * what the NioServer expects, instead of a plain object stream.
+     * @param framedProtocol true to use frames
+     */
+    public synchronized void setFramedProtocol(boolean framedProtocol) {
+        this.framedProtocol = framedProtocol;
+        closePersistentConnection();
+    }
+
+    /**
+     * Choose a codec to ask the server for with a handshake, for example MessageCodecs.BINARY.
+     * Messages are then sent as frames, which both Server and NioServer understand.
+     * @param codec the codec, or null to send a plain object stream without handshake
+     */
+    public synchronized void setCodec(MessageCodec codec) {
+        this.codec = codec;
+        closePersistentConnection();
+    }
+
+    /**
+     * Choose if all requests should share one long-lived connection instead of
+     * opening a new socket for every request.
+     * @param persistentConnection true to keep one connection open
+     */
+    public synchronized void setPersistentConnection(boolean persistentConnection) {
+        this.persistentConnection = persistentConnection;
+        if (!persistentConnection) {
+            closePersistentConnection();
+        }
+    }
+
+    /**
+     * Closes the long-lived connection, if there is one
+     */
+    public synchronized void closePersistentConnection() {
+        if (multiplexedConnection != null) {
+            multiplexedConnection.close();
+            multiplexedConnection = null;
+        }
     }
 
     /**
@@ -45,9 +99,21 @@ public class ServerConnection {
      */
     public Message makeRequest(Message request) {
 
+        MultiplexedConnection shared = getMultiplexedConnection();
+        if (shared != null) {
+            try {
+                return shared.request(request);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        if (framedProtocol || codec != null) {
+            return makeFramedRequest(request);
+        }
         Message response = null;
-        try {
-            Socket socket = new Socket(ipAddress, port);
+        try (Socket socket = new Socket(ipAddress, port)) {
             ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
             ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
             oos.writeObject(request);
@@ -59,4 +125,53 @@ public class ServerConnection {
         }
         return response;
     }
+
+    /**
+     * Sends a request on the client's shared background threads instead of the calling thread.
+     * Cancelling the future before the request has been sent means it is never sent.
+     *
+     * @param request instance of class Message with a certain request
+     * @return the future response, failed with an IOException if the server could not be reached
+     */
+    public CompletableFuture<Message> makeRequestAsync(Message request) {
+        return ClientExecutor.getInstance().submit(() -> {
+            Message response = makeRequest(request);
+            if (response == null) {
+                throw new IOException("No response from the server to " + request.getMessageType());
+            }
+            return response;
+        });
+    }
+
+    private synchronized MultiplexedConnection getMultiplexedConnection() {
+        if (persistentConnection && multiplexedConnection == null) {
+            multiplexedConnection = new MultiplexedConnection(ipAddress, port, framedProtocol, codec, 60_000);
+        }
+        return persistentConnection ? multiplexedConnection : null;
+    }
+
+    /**
+     * Sends a request as one frame and waits for the response frame.
+     * Starts with a handshake if a codec is chosen.
+     *
+     * @param request instance of class Message with a certain request
+     * @return instance of Message class with a certain response
+     */
+    private Message makeFramedRequest(Message request) {
+        Message response = null;
+        try (Socket socket = new Socket(ipAddress, port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            MessageCodec frameCodec = codec != null
+                    ? MessageFrames.requestCodec(out, in, codec)
+                    : MessageCodecs.JAVA_SERIALIZATION;
+            MessageFrames.writeFrame(out, request, frameCodec);
+            response = MessageFrames.readFrame(in, frameCodec);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        return response;
+    }
 }
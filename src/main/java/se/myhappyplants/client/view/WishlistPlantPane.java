@@ -2,6 +2,7 @@ package se.myhappyplants.client.view;
 
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.Event;
@@ -16,6 +17,7 @@ import javafx.util.Duration;
 import se.myhappyplants.client.controller.WishlistTabPaneController;
 
 import se.myhappyplants.client.model.ImageLibrary;
+import se.myhappyplants.client.model.ImageLoader;
 import se.myhappyplants.shared.Plant;
 import se.myhappyplants.shared.PlantDetails;
 
@@ -41,6 +43,7 @@ public class WishlistPlantPane extends Pane implements PlantPane {
     private ImageView imgViewWishlistSign;
     private boolean gotInfoOnPlant;
     private boolean extended;
+    private ImageLoader.Request imageRequest;
 
 
     public WishlistPlantPane() {
@@ -69,6 +72,7 @@ public class WishlistPlantPane extends Pane implements PlantPane {
         initImgViewWishlistSign();
         initListView();
         initEventHandlerForInfo();
+        loadImage();
     }
 
     /**
@@ -214,12 +218,56 @@ public class WishlistPlantPane extends Pane implements PlantPane {
     }
 
 
+    /**
+     * Shows another plant in the pane, the info about the old plant is closed
+     *
+     * @param plant the plant to show
+     */
+    @Override
+    public void setPlant(Plant plant) {
+        if (plant == this.plant) {
+            return;
+        }
+        this.plant = plant;
+        commonName.setText(plant.getCommonName());
+        scientificName.setText(plant.getScientificName());
+        if (extended) {
+            listView.getItems().clear();
+            this.getChildren().remove(listView);
+            this.setPrefHeight(USE_COMPUTED_SIZE);
+            extended = false;
+            gotInfoOnPlant = false;
+        }
+        infoButton.setDisable(false);
+        commonName.setDisable(false);
+        loadImage();
+    }
+
+    /**
+     * Shows the loading image and asks the shared image loader for the plant's image. A request for the
+     * previous plant of the pane is cancelled.
+     */
+    private void loadImage() {
+        if (imageRequest != null) {
+            imageRequest.cancel();
+        }
+        image.setImage(ImageLibrary.getLoadingImage());
+        Plant requestedPlant = plant;
+        imageRequest = ImageLoader.getInstance().load(plant.getImageURL(), ImageLoader.VISIBLE, img ->
+                Platform.runLater(() -> {
+                    if (plant == requestedPlant) {
+                        updateImage(img);
+                    }
+                }));
+    }
+
     /**
      * Method to update the image
+     *
+     * @param img the loaded image, or null to show the default picture
      */
-    public void updateImage() {
-        Image img = new Image(plant.getImageURL());
-        image.setImage(img);
+    public void updateImage(Image img) {
+        image.setImage(img == null ? ImageLibrary.getDefaultPlantImage() : img);
     }
 
     /**
@@ -227,6 +275,7 @@ public class WishlistPlantPane extends Pane implements PlantPane {
      *
      * @return
      */
+    @Override
     public Plant getPlant() {
         return plant;
     }
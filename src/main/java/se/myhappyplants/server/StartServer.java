@@ -13,16 +13,32 @@ import java.sql.SQLException;
  */
 public class StartServer {
     public static void main(String[] args) throws UnknownHostException, SQLException {
-        IDatabaseConnection databaseConnection = new DatabaseConnection("grp3myhappyplants");
+        // every request borrows its own connection from the pool and returns it when the response is done
+        IDatabaseConnection databaseConnection = new PooledDatabaseConnection("grp3myhappyplants",
+                Integer.getInteger("myhappyplants.db.minConnections", 2),
+                Integer.getInteger("myhappyplants.db.maxConnections", 10));
 
-        IQueryExecutor queryExecutor = new QueryExecutor(databaseConnection);
+        // pooled connections are only used by one thread at a time, so their prepared statements can be cached
+        IQueryExecutor queryExecutor = new QueryExecutor(databaseConnection, Integer.getInteger("myhappyplants.db.statementCacheSize", 32));
 
         UserRepository userRepository = new UserRepository(queryExecutor);
         PlantApiService plantApiService = new PlantApiService();
         UserPlantRepository userPlantRepository = new UserPlantRepository(queryExecutor);
 
-        ResponseController responseController = new ResponseController(userRepository,userPlantRepository, plantApiService);
+        ResponseController responseController = new ResponseController(userRepository,userPlantRepository, plantApiService, databaseConnection);
 
-        new Server(2555, responseController);
+        // -Dmyhappyplants.server.executor=virtual runs every request on its own virtual thread
+        ExecutionMode executionMode = ExecutionMode.fromString(System.getProperty("myhappyplants.server.executor"));
+        int poolSize = Integer.getInteger("myhappyplants.server.poolSize", 5);
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            responseController.setMaxConcurrentDatabaseRequests(Integer.getInteger("myhappyplants.server.maxDatabaseRequests", 10));
+        }
+
+        // -Dmyhappyplants.server.mode=nio starts the non-blocking server, clients then need framed requests
+        if ("nio".equalsIgnoreCase(System.getProperty("myhappyplants.server.mode"))) {
+            new NioServer(2555, responseController, executionMode, poolSize);
+        } else {
+            new Server(2555, responseController, executionMode, poolSize);
+        }
     }
 }
@@ -1,7 +1,9 @@
 package se.myhappyplants.server.controller;
 
+import se.myhappyplants.server.model.IAsyncResponseHandler;
 import se.myhappyplants.server.model.IResponseHandler;
 import se.myhappyplants.server.model.ResponseContext;
+import se.myhappyplants.server.services.IDatabaseConnection;
 import se.myhappyplants.server.services.PlantApiService;
 import se.myhappyplants.server.services.UserPlantRepository;
 import se.myhappyplants.server.services.UserRepository;
@@ -9,6 +11,8 @@ import se.myhappyplants.shared.Message;
 import se.myhappyplants.shared.MessageType;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * Class that handles the logic from the Server
@@ -18,6 +22,8 @@ import java.io.IOException;
 
 public class ResponseController {
     private ResponseContext responseContext;
+    private Semaphore databasePermits;
+    private IDatabaseConnection databaseConnection;
 
     /**
      * Constructor that initializes the responseContext
@@ -28,6 +34,29 @@ public class ResponseController {
     public ResponseController(UserRepository userRepository, UserPlantRepository userPlantRepository, PlantApiService plantApiService){
         responseContext = new ResponseContext(userRepository, userPlantRepository, plantApiService);
     }
+
+    /**
+     * Constructor that also releases the request's database connection when a response is done,
+     * needed when the connection comes from a pool
+     * @param userRepository
+     * @param userPlantRepository
+     * @param plantApiService
+     * @param databaseConnection connection used by the repositories
+     */
+    public ResponseController(UserRepository userRepository, UserPlantRepository userPlantRepository, PlantApiService plantApiService, IDatabaseConnection databaseConnection){
+        this(userRepository, userPlantRepository, plantApiService);
+        this.databaseConnection = databaseConnection;
+    }
+
+    /**
+     * Limits how many requests may use the database at the same time. Needed when requests
+     * run on virtual threads, since there is no longer a small thread pool that limits it.
+     * @param maxConcurrentRequests max number of database requests at once, 0 or less means no limit
+     */
+    public void setMaxConcurrentDatabaseRequests(int maxConcurrentRequests) {
+        databasePermits = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests, true) : null;
+    }
+
     /**
      * Gets a response depending on the type of requests received
      * @param request request object received from client
@@ -39,7 +68,59 @@ public class ResponseController {
         MessageType messageType = request.getMessageType();
 
         IResponseHandler responseHandler = responseContext.getResponseHandler(messageType);
-        response = responseHandler.getResponse(request);
+        Semaphore permits = responseHandler.usesDatabase() ? databasePermits : null;
+        if (permits != null) {
+            permits.acquire();
+        }
+        try {
+            response = responseHandler.getResponse(request);
+        } finally {
+            if (databaseConnection != null) {
+                databaseConnection.releaseConnection();
+            }
+            if (permits != null) {
+                permits.release();
+            }
+        }
+        if (response != null) {
+            response.setRequestId(request.getRequestId());
+        }
         return response;
     }
+
+    /**
+     * Gets a response without blocking the calling thread if the handler waits on something outside the server.
+     * Other requests are handled right away like in getResponse.
+     * A handler that fails gives an unsuccessful response, so the client is never left without an answer.
+     * @param request request object received from client
+     * @return completes with the response to be sent back to client
+     */
+    public CompletableFuture<Message> getResponseAsync(Message request) {
+        IResponseHandler responseHandler = responseContext.getResponseHandler(request.getMessageType());
+        CompletableFuture<Message> response;
+        try {
+            if (responseHandler instanceof IAsyncResponseHandler asyncResponseHandler && !responseHandler.usesDatabase()) {
+                response = asyncResponseHandler.getResponseAsync(request);
+            } else {
+                response = CompletableFuture.completedFuture(getResponse(request));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = CompletableFuture.failedFuture(e);
+        } catch (IOException | RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                })
+                .thenApply(message -> {
+                    if (message == null) {
+                        message = new Message(false);
+                    }
+                    message.setRequestId(request.getRequestId());
+                    return message;
+                });
+    }
 }
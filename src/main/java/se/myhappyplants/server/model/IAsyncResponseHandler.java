@@ -0,0 +1,20 @@
+package se.myhappyplants.server.model;
+
+import se.myhappyplants.shared.Message;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for ResponseHandlers that wait on something outside the server, like the plant API.
+ * They return a future instead of blocking, so the worker thread is free while the answer is on its way.
+ */
+public interface IAsyncResponseHandler extends IResponseHandler {
+
+    /**
+     * Starts handling a request
+     *
+     * @param request request object received from client
+     * @return completes with the response to be sent back to client
+     */
+    CompletableFuture<Message> getResponseAsync(Message request);
+}
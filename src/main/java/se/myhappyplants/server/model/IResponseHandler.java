@@ -9,5 +9,15 @@ import se.myhappyplants.shared.Message;
 public interface IResponseHandler {
 
     Message getResponse(Message request);
+
+    /**
+     * Tells if the handler queries the database, used to limit
+     * how many requests may use the database at the same time
+     *
+     * @return true if the handler uses the database
+     */
+    default boolean usesDatabase() {
+        return true;
+    }
 }
 
@@ -2,6 +2,7 @@ package se.myhappyplants.server.model;
 
 import se.myhappyplants.server.model.ResponseHandlers.*;
 import se.myhappyplants.server.services.PlantApiService;
+import se.myhappyplants.server.services.ThumbnailService;
 import se.myhappyplants.server.services.UserPlantRepository;
 import se.myhappyplants.server.services.UserRepository;
 import se.myhappyplants.shared.MessageType;
@@ -19,12 +20,19 @@ public class ResponseContext {
     private UserRepository userRepository;
     private UserPlantRepository userPlantRepository;
     private PlantApiService plantApiService;
+    private ThumbnailService thumbnailService;
 
     public ResponseContext(UserRepository userRepository, UserPlantRepository userPlantRepository, PlantApiService plantApiService) {
+        this(userRepository, userPlantRepository, plantApiService, new ThumbnailService());
+    }
+
+    public ResponseContext(UserRepository userRepository, UserPlantRepository userPlantRepository, PlantApiService plantApiService,
+                           ThumbnailService thumbnailService) {
 
         this.userRepository = userRepository;
         this.userPlantRepository = userPlantRepository;
         this.plantApiService = plantApiService;
+        this.thumbnailService = thumbnailService;
         createResponders();
     }
 
@@ -51,6 +59,9 @@ public class ResponseContext {
         responders.put(MessageType.removePlantWishlist, new DeletePlantFromWishlist(userPlantRepository));
         responders.put(MessageType.search, new Search(plantApiService));
         responders.put(MessageType.updateIsFavorite, new UpdateFavorite(userPlantRepository));
+        responders.put(MessageType.autocomplete, new Autocomplete(plantApiService));
+        responders.put(MessageType.getThumbnail, new GetThumbnail(thumbnailService));
+        responders.put(MessageType.batch, new Batch(userPlantRepository));
     }
 
     public IResponseHandler getResponseHandler(MessageType messageType) {
@@ -0,0 +1,33 @@
+package se.myhappyplants.server.model.ResponseHandlers;
+
+import se.myhappyplants.server.model.IResponseHandler;
+import se.myhappyplants.server.services.PlantApiService;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
+
+import java.util.List;
+
+/**
+ * Class that suggests searches for what the user has typed so far
+ */
+public class Autocomplete implements IResponseHandler {
+    private static final int DEFAULT_LIMIT = 10;
+
+    private PlantApiService plantApiService;
+
+    public Autocomplete(PlantApiService plantApiService) {
+        this.plantApiService = plantApiService;
+    }
+
+    @Override
+    public Message getResponse(Message request) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), DEFAULT_LIMIT) : DEFAULT_LIMIT;
+        List<String> suggestions = plantApiService.getSuggestions(request.getMessageText(), limit);
+        return new Message(MessageType.autocomplete, suggestions, true);
+    }
+
+    @Override
+    public boolean usesDatabase() {
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package se.myhappyplants.server.model.ResponseHandlers;
+
+import se.myhappyplants.server.model.IResponseHandler;
+import se.myhappyplants.server.services.UserPlantRepository;
+import se.myhappyplants.shared.BatchOperation;
+import se.myhappyplants.shared.Message;
+
+import java.util.List;
+
+/**
+ * Class that handles several changes to a user's plants sent in one message
+ */
+public class Batch implements IResponseHandler {
+
+    private static final int MAX_OPERATIONS = 500;
+
+    private UserPlantRepository userPlantRepository;
+
+    public Batch(UserPlantRepository userPlantRepository) {
+        this.userPlantRepository = userPlantRepository;
+    }
+
+    @Override
+    public Message getResponse(Message request) {
+        List<BatchOperation> operations = request.getBatchOperations();
+        if (request.getUser() == null || operations == null || operations.size() > MAX_OPERATIONS) {
+            return new Message(false);
+        }
+        boolean[] results = userPlantRepository.applyBatch(request.getUser(), operations);
+        boolean success = true;
+        for (boolean result : results) {
+            success &= result;
+        }
+        return new Message(results, success);
+    }
+}
@@ -1,17 +1,18 @@
 package se.myhappyplants.server.model.ResponseHandlers;
 
-import se.myhappyplants.server.model.IResponseHandler;
+import se.myhappyplants.server.model.IAsyncResponseHandler;
 import se.myhappyplants.server.services.PlantApiService;
 import se.myhappyplants.shared.Message;
 import se.myhappyplants.shared.Plant;
 import se.myhappyplants.shared.PlantDetails;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class that gets the plant details
  */
-public class GetPlantDetails implements IResponseHandler {
+public class GetPlantDetails implements IAsyncResponseHandler {
     private PlantApiService plantApiService;
 
     public GetPlantDetails(PlantApiService plantApiService) {
@@ -31,4 +32,15 @@ public class GetPlantDetails implements IResponseHandler {
         }
         return response;
     }
+
+    @Override
+    public CompletableFuture<Message> getResponseAsync(Message request) {
+        return plantApiService.getPlantDetailsAsync(request.getPlant())
+                .thenApply(plantDetails -> new Message(plantDetails, true));
+    }
+
+    @Override
+    public boolean usesDatabase() {
+        return false;
+    }
 }
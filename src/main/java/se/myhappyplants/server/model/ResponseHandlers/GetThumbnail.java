@@ -0,0 +1,43 @@
+package se.myhappyplants.server.model.ResponseHandlers;
+
+import se.myhappyplants.server.model.IAsyncResponseHandler;
+import se.myhappyplants.server.services.ThumbnailService;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class that gets a plant picture scaled down to the size it is shown in
+ */
+public class GetThumbnail implements IAsyncResponseHandler {
+    private ThumbnailService thumbnailService;
+
+    public GetThumbnail(ThumbnailService thumbnailService) {
+        this.thumbnailService = thumbnailService;
+    }
+
+    @Override
+    public Message getResponse(Message request) {
+        Message response;
+        try {
+            byte[] thumbnail = thumbnailService.getThumbnail(request.getMessageText(), request.getImageSize());
+            response = new Message(MessageType.getThumbnail, thumbnail, true);
+        } catch (Exception e) {
+            response = new Message(false);
+            e.printStackTrace();
+        }
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<Message> getResponseAsync(Message request) {
+        return thumbnailService.getThumbnailAsync(request.getMessageText(), request.getImageSize())
+                .thenApply(thumbnail -> new Message(MessageType.getThumbnail, thumbnail, true));
+    }
+
+    @Override
+    public boolean usesDatabase() {
+        return false;
+    }
+}
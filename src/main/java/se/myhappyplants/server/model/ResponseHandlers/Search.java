@@ -1,6 +1,6 @@
 package se.myhappyplants.server.model.ResponseHandlers;
 
-import se.myhappyplants.server.model.IResponseHandler;
+import se.myhappyplants.server.model.IAsyncResponseHandler;
 import se.myhappyplants.server.services.PlantApiService;
 import se.myhappyplants.shared.Message;
 import se.myhappyplants.shared.Plant;
@@ -9,11 +9,14 @@ import se.myhappyplants.shared.SortingOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class that handles the request of a search
+ * A request with a limit gets one page of the sorted results and the total number of results,
+ * the whole result stays in the search cache so the next page does not ask the API again.
  */
-public class Search implements IResponseHandler {
+public class Search implements IAsyncResponseHandler {
     private PlantApiService plantApiService;
 
     public Search(PlantApiService plantApiService) {
@@ -28,11 +31,39 @@ public class Search implements IResponseHandler {
         try {
             Optional<List<Plant>> plantList = plantApiService.getPlants(searchText, sortingOption);
             List<Plant> plants = plantList.orElse(new ArrayList<>());
-            response = new Message(plants, true);
+            response = page(plants, request);
         } catch (Exception e) {
             response = new Message(false);
             e.printStackTrace();
         }
         return response;
     }
+
+    @Override
+    public CompletableFuture<Message> getResponseAsync(Message request) {
+        return plantApiService.getPlantsAsync(request.getMessageText(), request.getSortingOption())
+                .thenApply(plantList -> page(plantList.orElse(new ArrayList<>()), request));
+    }
+
+    /**
+     * Picks the page the request asked for, requests without a limit get all results.
+     * The search is counted for the suggestions when its first page is asked for, unless it is only sorted again.
+     */
+    private Message page(List<Plant> plants, Message request) {
+        if (request.getOffset() == 0 && !request.isSortOnly()) {
+            plantApiService.recordSearch(request.getMessageText());
+        }
+        if (request.getLimit() <= 0) {
+            return new Message(plants, true);
+        }
+        int totalResults = plants.size();
+        int from = Math.min(Math.max(0, request.getOffset()), totalResults);
+        int to = Math.min(totalResults, from + request.getLimit());
+        return new Message(new ArrayList<>(plants.subList(from, to)), from, totalResults, true);
+    }
+
+    @Override
+    public boolean usesDatabase() {
+        return false;
+    }
 }
@@ -0,0 +1,18 @@
+package se.myhappyplants.server.services;
+
+/**
+ * Priority lanes for requests to the plant API
+ */
+public enum ApiPriority {
+
+    /**
+     * A user is waiting for the answer, like a search. Goes first and may use the whole daily budget
+     */
+    INTERACTIVE,
+
+    /**
+     * Nobody is waiting, like fetching details ahead of time. Only runs when no interactive request is
+     * queued and never uses the part of the daily budget that is reserved for interactive requests
+     */
+    BACKGROUND
+}
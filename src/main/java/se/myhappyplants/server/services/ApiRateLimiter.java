@@ -0,0 +1,201 @@
+package se.myhappyplants.server.services;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps requests to the plant API within its limits. A token bucket spreads requests out over time and a
+ * daily budget stops them before the API quota is used up. Requests that have to wait for a token are queued
+ * in priority lanes, interactive requests are always let through before background requests.
+ * The budget is counted per UTC day.
+ */
+public class ApiRateLimiter {
+
+    private final double requestsPerSecond;
+    private final double burst;
+    private final long dailyBudget;
+    private final long interactiveReserve;
+    private final LongSupplier clock;
+    private final Queue<CompletableFuture<Boolean>> interactiveQueue = new ArrayDeque<>();
+    private final Queue<CompletableFuture<Boolean>> backgroundQueue = new ArrayDeque<>();
+    private final ScheduledExecutorService scheduler;
+
+    private double tokens;
+    private long lastRefillMillis;
+    private LocalDate day;
+    private long usedToday;
+    private long rejected;
+    private boolean drainScheduled;
+
+    /**
+     * Constructor
+     *
+     * @param requestsPerSecond  how many requests may be sent per second on average
+     * @param burst              how many requests may be sent at once after a quiet period
+     * @param dailyBudget        max number of requests per day
+     * @param interactiveReserve part of the daily budget, between 0 and 1, that background requests may not use
+     */
+    public ApiRateLimiter(double requestsPerSecond, int burst, long dailyBudget, double interactiveReserve) {
+        this(requestsPerSecond, burst, dailyBudget, interactiveReserve, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with a clock, used by tests
+     *
+     * @param clock returns the current time in milliseconds since the epoch
+     */
+    public ApiRateLimiter(double requestsPerSecond, int burst, long dailyBudget, double interactiveReserve, LongSupplier clock) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.dailyBudget = dailyBudget;
+        this.interactiveReserve = Math.round(dailyBudget * interactiveReserve);
+        this.clock = clock;
+        this.tokens = this.burst;
+        this.lastRefillMillis = clock.getAsLong();
+        this.day = today();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "api-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Asks for permission to send one request. Completes with true when the request may be sent, which
+     * may be later if there are no tokens left, or with false right away if the daily budget is used up.
+     * A caller that stops waiting can cancel the future, it is then dropped from the queue without using a token.
+     *
+     * @param priority lane of the request
+     * @return completes with true if the request may be sent
+     */
+    public CompletableFuture<Boolean> acquire(ApiPriority priority) {
+        CompletableFuture<Boolean> permit = new CompletableFuture<>();
+        List<Runnable> completions = new ArrayList<>();
+        synchronized (this) {
+            resetBudgetIfNewDay();
+            if (!budgetAllows(priority)) {
+                rejected++;
+                return CompletableFuture.completedFuture(false);
+            }
+            (priority == ApiPriority.INTERACTIVE ? interactiveQueue : backgroundQueue).add(permit);
+            drain(completions);
+        }
+        completions.forEach(Runnable::run);
+        return permit;
+    }
+
+    /**
+     * @return requests left today, for interactive requests
+     */
+    public synchronized long getRemainingDailyBudget() {
+        resetBudgetIfNewDay();
+        return Math.max(0, dailyBudget - usedToday);
+    }
+
+    /**
+     * @return requests sent today
+     */
+    public synchronized long getUsedToday() {
+        resetBudgetIfNewDay();
+        return usedToday;
+    }
+
+    /**
+     * @return requests that were refused since the budget was used up
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return requests waiting for a token
+     */
+    public synchronized int getQueued() {
+        return interactiveQueue.size() + backgroundQueue.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("used today: %d, remaining: %d, rejected: %d, queued: %d",
+                usedToday, Math.max(0, dailyBudget - usedToday), rejected, getQueued());
+    }
+
+    /**
+     * Hands out tokens to queued requests, interactive first. The futures are completed after the lock is
+     * released, so the code that sends the request never runs while holding the lock.
+     */
+    private void drain(List<Runnable> completions) {
+        refill();
+        while (tokens >= 1) {
+            CompletableFuture<Boolean> permit = interactiveQueue.poll();
+            ApiPriority priority = ApiPriority.INTERACTIVE;
+            if (permit == null) {
+                permit = backgroundQueue.poll();
+                priority = ApiPriority.BACKGROUND;
+            }
+            if (permit == null) {
+                break;
+            }
+            if (permit.isDone()) {
+                continue;
+            }
+            CompletableFuture<Boolean> granted = permit;
+            if (!budgetAllows(priority)) {
+                rejected++;
+                completions.add(() -> granted.complete(false));
+                continue;
+            }
+            tokens--;
+            usedToday++;
+            completions.add(() -> granted.complete(true));
+        }
+        if (!drainScheduled && getQueued() > 0) {
+            drainScheduled = true;
+            long waitMillis = (long) Math.ceil((1 - tokens) * 1000 / requestsPerSecond);
+            scheduler.schedule(this::scheduledDrain, Math.max(1, waitMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledDrain() {
+        List<Runnable> completions = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            resetBudgetIfNewDay();
+            drain(completions);
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefillMillis) * requestsPerSecond / 1000);
+        lastRefillMillis = now;
+    }
+
+    private boolean budgetAllows(ApiPriority priority) {
+        long limit = priority == ApiPriority.INTERACTIVE ? dailyBudget : dailyBudget - interactiveReserve;
+        return usedToday < limit;
+    }
+
+    private void resetBudgetIfNewDay() {
+        LocalDate today = today();
+        if (!today.equals(day)) {
+            day = today;
+            usedToday = 0;
+        }
+    }
+
+    private LocalDate today() {
+        return Instant.ofEpochMilli(clock.getAsLong()).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
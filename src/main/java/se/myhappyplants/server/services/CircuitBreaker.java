@@ -0,0 +1,116 @@
+package se.myhappyplants.server.services;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a service that keeps failing, so callers get an answer right away instead of waiting for
+ * timeouts. After a number of failures in a row the circuit opens and calls are refused. When it has been open
+ * for a while one trial call is let through (half-open), and the circuit closes again if that call succeeds.
+ * Only opening the circuit is logged, the current state is shown by toString.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejected;
+
+    /**
+     * Constructor
+     *
+     * @param name             name of the service, used in log messages
+     * @param failureThreshold failures in a row that open the circuit
+     * @param openDuration     how long the circuit stays open before a trial call is let through
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a clock, used by tests
+     *
+     * @param clock returns the current time in nanoseconds
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Asks if a call may be made. A call that is allowed must be followed by recordSuccess,
+     * recordFailure or cancel.
+     *
+     * @return true if the call may be made
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        boolean allowed = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> !trialInFlight;
+        };
+        if (!allowed) {
+            rejected++;
+        }
+        else if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+        return allowed;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                System.err.println("Circuit " + name + " is open after " + consecutiveFailures + " failures");
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Tells that an allowed call was not made after all, so it is neither a success nor a failure
+     */
+    public synchronized void cancel() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return calls refused since the circuit was open
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": " + state + ", failures in a row: " + consecutiveFailures + ", rejected: " + rejected;
+    }
+}
@@ -2,40 +2,202 @@ package se.myhappyplants.server.services;
 
 import se.myhappyplants.server.controller.ResponseController;
 import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageCodec;
+import se.myhappyplants.shared.MessageFrames;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Runnable task class containing a task that needs to executed from client
+ * Reads requests from one connection until the client closes it. When an executor is given every
+ * request is handled on it, so a slow request does not hold up the others on the same connection,
+ * and responses are written in the order they are done, tagged with the request id. Requests that wait on the
+ * plant API give their worker back while waiting and the response is written when the API has answered.
+ * A client that starts with a codec handshake (see MessageFrames) gets frames in the agreed codec,
+ * other clients get a plain object stream as before.
  * Created by: Frida Jacobsson 2021-05-21
  */
 public class ClientHandlerTask implements Runnable {
 
     private Socket socket;
-    private ObjectInputStream ois;
-    private ObjectOutputStream oos;
     private ResponseController responseController;
+    private ExecutorService executor;
 
-    public ClientHandlerTask(Socket socket, ResponseController responseController) throws IOException {
+    public ClientHandlerTask(Socket socket, ResponseController responseController) {
+        this(socket, responseController, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param socket             connection to the client
+     * @param responseController to handle db requests
+     * @param executor           runs the requests, null handles them one at a time on the reading thread
+     */
+    public ClientHandlerTask(Socket socket, ResponseController responseController, ExecutorService executor) {
         this.socket = socket;
         this.responseController = responseController;
-        this.ois = new ObjectInputStream(socket.getInputStream());
-        this.oos = new ObjectOutputStream(socket.getOutputStream());
+        this.executor = executor;
     }
 
+    /**
+     * Opens the streams on the handler thread, since reading the stream header
+     * blocks until the client has sent it
+     */
     @Override
     public void run() {
+        List<CompletableFuture<Void>> pendingResponses = new ArrayList<>();
+        try (Socket socket = this.socket) {
+            BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+            MessageCodec codec = MessageFrames.acceptCodec(in, socket.getOutputStream());
+            MessageStream stream = codec != null
+                    ? new FramedStream(in, socket, codec)
+                    : new ObjectStream(in, socket);
+            while (true) {
+                Message request;
+                try {
+                    request = stream.read();
+                }
+                catch (EOFException e) {
+                    break;
+                }
+                if (executor == null) {
+                    respond(request, stream);
+                }
+                else {
+                    pendingResponses.removeIf(CompletableFuture::isDone);
+                    pendingResponses.add(respondAsync(request, stream));
+                }
+            }
+            awaitResponses(pendingResponses);
+        }
+        catch (IOException | ClassNotFoundException e) {
+            if (!socket.isClosed()) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void respond(Message request, MessageStream stream) {
         try {
-            Message request = (Message) ois.readObject();
             Message response = responseController.getResponse(request);
+            stream.write(response);
+        }
+        catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Handles the request on the executor and writes the response when it is done, which for
+     * requests to the plant API is after the worker has been handed back
+     */
+    private CompletableFuture<Void> respondAsync(Message request, MessageStream stream) {
+        return CompletableFuture.supplyAsync(() -> responseController.getResponseAsync(request), executor)
+                .thenCompose(response -> response)
+                .thenAccept(response -> {
+                    try {
+                        stream.write(response);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
+    }
+
+    /**
+     * Lets requests that are still running write their responses before the connection is closed
+     */
+    private void awaitResponses(List<CompletableFuture<Void>> pendingResponses) {
+        for (CompletableFuture<Void> pendingResponse : pendingResponses) {
+            try {
+                pendingResponse.get();
+            }
+            catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads requests from and writes responses to one connection
+     */
+    private interface MessageStream {
+        Message read() throws IOException, ClassNotFoundException;
+
+        void write(Message response) throws IOException;
+    }
+
+    /**
+     * Java serialization over an object stream, what clients without a handshake use
+     */
+    private static class ObjectStream implements MessageStream {
+        private final ObjectInputStream ois;
+        private final ObjectOutputStream oos;
+
+        private ObjectStream(BufferedInputStream in, Socket socket) throws IOException {
+            ois = new ObjectInputStream(in);
+            oos = new ObjectOutputStream(socket.getOutputStream());
+        }
+
+        @Override
+        public Message read() throws IOException, ClassNotFoundException {
+            return (Message) ois.readObject();
+        }
+
+        @Override
+        public synchronized void write(Message response) throws IOException {
             oos.writeObject(response);
             oos.flush();
+            // forget written objects, otherwise plants that changed would be sent as references to their old state
+            oos.reset();
         }
-        catch (IOException | ClassNotFoundException | InterruptedException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Length-prefixed frames in the codec agreed on in the handshake
+     */
+    private static class FramedStream implements MessageStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final MessageCodec codec;
+
+        private FramedStream(BufferedInputStream in, Socket socket, MessageCodec codec) throws IOException {
+            this.in = new DataInputStream(in);
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.codec = codec;
+        }
+
+        @Override
+        public Message read() throws IOException {
+            return MessageFrames.readFrame(in, codec);
+        }
+
+        @Override
+        public synchronized void write(Message response) throws IOException {
+            MessageFrames.writeFrame(out, response, codec);
         }
     }
 }
@@ -21,18 +21,32 @@ public class DatabaseConnection implements IDatabaseConnection {
     }
 
     private java.sql.Connection createConnection() throws SQLException, UnknownHostException {
+        this.conn = openConnection(databaseName);
+        return conn;
+    }
+
+    /**
+     * Opens a new physical connection to the given database
+     * @param databaseName name of the database
+     * @return the new connection
+     * @throws SQLException if the connection could not be opened, also when the host name can't be resolved
+     */
+    static java.sql.Connection openConnection(String databaseName) throws SQLException {
         String dbServerIp = PasswordsAndKeys.dbServerIp;
         String dbServerPort = PasswordsAndKeys.dbServerPort;
         String dbUser = PasswordsAndKeys.dbUsername;
         String dbPassword = PasswordsAndKeys.dbPassword;
 
-        if (InetAddress.getLocalHost().getHostName().equals(PasswordsAndKeys.dbHostName)) {
-            dbServerIp = "localhost";
+        try {
+            if (InetAddress.getLocalHost().getHostName().equals(PasswordsAndKeys.dbHostName)) {
+                dbServerIp = "localhost";
+            }
+        } catch (UnknownHostException e) {
+            throw new SQLException("Unknown host exception: " + e.getMessage(), e);
         }
 
         String dbURL = String.format("jdbc:postgresql://%s:%s/%s", dbServerIp, dbServerPort, databaseName);
-        this.conn = DriverManager.getConnection(dbURL, dbUser, dbPassword);
-        return conn;
+        return DriverManager.getConnection(dbURL, dbUser, dbPassword);
     }
 
     @Override
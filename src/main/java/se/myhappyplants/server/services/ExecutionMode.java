@@ -0,0 +1,46 @@
+package se.myhappyplants.server.services;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The different ways the server can run client requests
+ */
+public enum ExecutionMode {
+
+    /**
+     * A fixed number of platform threads, a blocked request occupies one of them
+     */
+    FIXED_POOL,
+
+    /**
+     * A new virtual thread for every request, blocking I/O only parks the virtual thread
+     */
+    VIRTUAL_THREADS;
+
+    /**
+     * Creates the executor that requests are run on
+     *
+     * @param poolSize number of threads, only used by FIXED_POOL
+     * @return a new executor
+     */
+    public ExecutorService createExecutor(int poolSize) {
+        return switch (this) {
+            case FIXED_POOL -> Executors.newFixedThreadPool(poolSize);
+            case VIRTUAL_THREADS -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-handler-", 0).factory());
+        };
+    }
+
+    /**
+     * Parses a mode from configuration, falls back to FIXED_POOL
+     *
+     * @param value "virtual" or "fixed"
+     * @return the matching mode
+     */
+    public static ExecutionMode fromString(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("virtual")) {
+            return VIRTUAL_THREADS;
+        }
+        return FIXED_POOL;
+    }
+}
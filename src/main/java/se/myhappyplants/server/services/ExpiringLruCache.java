@@ -0,0 +1,137 @@
+package se.myhappyplants.server.services;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe cache with a max number of entries and a time to live.
+ * When the cache is full the least recently used entry is evicted. Expired entries are not returned by get(),
+ * but are kept until they are evicted so getStale() can still return them, for example when the source is down.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Constructor for a cache where entries never expire, they are only evicted when the cache is full
+     *
+     * @param maxEntries max number of entries
+     */
+    public ExpiringLruCache(int maxEntries) {
+        this(maxEntries, null, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries max number of entries
+     * @param ttl        how long an entry is fresh
+     */
+    public ExpiringLruCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a clock, used by tests
+     *
+     * @param maxEntries max number of entries
+     * @param ttl        how long an entry is fresh, null if entries never expire
+     * @param clock      returns the current time in nanoseconds
+     */
+    public ExpiringLruCache(int maxEntries, Duration ttl, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl == null ? Long.MAX_VALUE : ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param key key to look up
+     * @return the value if it is cached and fresh, otherwise null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() - entry.storedAt > ttlNanos) {
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Returns a value even if it has expired, does not count as a lookup in the statistics
+     *
+     * @param key key to look up
+     * @return the value if it is cached, otherwise null
+     */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Stores a value, replacing any earlier value for the key
+     *
+     * @param key   key
+     * @param value value, must not be null
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong()));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, expirations, entries.size());
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long storedAt;
+
+        private Entry(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
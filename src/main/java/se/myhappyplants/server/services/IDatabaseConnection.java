@@ -11,4 +11,11 @@ public interface IDatabaseConnection {
     Connection getConnection();
 
     void closeConnection();
+
+    /**
+     * Called when the current request is done with its connection.
+     * Implementations that share one connection have nothing to release.
+     */
+    default void releaseConnection() {
+    }
 }
@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 /**
  * Interface for defining query executor methods
@@ -13,8 +14,46 @@ public interface IQueryExecutor {
 
     void executeUpdate(String query, PreparedStatementSetter setter) throws SQLException;
 
+    /**
+     * Runs a query and returns the open ResultSet. Closing the ResultSet also releases its statement.
+     * Prefer query(), which closes everything itself.
+     */
     ResultSet executeQuery(String query, PreparedStatementSetter setter) throws SQLException;
 
+    /**
+     * Runs a query and maps every row to an object. The statement and ResultSet are closed before returning.
+     *
+     * @param query     SQL text
+     * @param setter    sets the parameters of the query, may be null
+     * @param rowMapper maps the current row of the ResultSet
+     * @return the mapped rows in the order they were returned
+     */
+    default <T> List<T> query(String query, PreparedStatementSetter setter, RowMapper<T> rowMapper) throws SQLException {
+        return query(query, setter, rowMapper, 0);
+    }
+
+    /**
+     * Runs a query and maps every row to an object, fetching the rows from the database in batches.
+     * PostgreSQL only uses the fetch size inside a transaction, otherwise all rows are fetched at once.
+     *
+     * @param query     SQL text
+     * @param setter    sets the parameters of the query, may be null
+     * @param rowMapper maps the current row of the ResultSet
+     * @param fetchSize number of rows to fetch per round trip, 0 lets the driver decide
+     * @return the mapped rows in the order they were returned
+     */
+    <T> List<T> query(String query, PreparedStatementSetter setter, RowMapper<T> rowMapper, int fetchSize) throws SQLException;
+
+    /**
+     * Runs the same statement once per setter, sent to the database in one round trip with addBatch/executeBatch.
+     * Run it inside a transaction to make the whole batch succeed or fail together.
+     *
+     * @param query   SQL text
+     * @param setters sets the parameters of each run of the statement
+     * @return the update count of each run, in the order of the setters
+     */
+    int[] executeBatch(String query, List<PreparedStatementSetter> setters) throws SQLException;
+
     void beginTransaction() throws SQLException;
 
     void endTransaction() throws SQLException;
@@ -26,4 +65,10 @@ public interface IQueryExecutor {
     interface PreparedStatementSetter {
         void setValues(PreparedStatement ps) throws SQLException;
     }
+
+    // https://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/jdbc/core/RowMapper.html
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T mapRow(ResultSet resultSet) throws SQLException;
+    }
 }
@@ -0,0 +1,307 @@
+package se.myhappyplants.server.services;
+
+import se.myhappyplants.server.controller.ResponseController;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageCodec;
+import se.myhappyplants.shared.MessageCodecs;
+import se.myhappyplants.shared.MessageFrames;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Non-blocking alternative to Server.
+ * A single selector thread accepts connections and reads length-prefixed frames (see MessageFrames).
+ * Only when a complete request has arrived is it handed to a worker, so idle or slow
+ * connections do not occupy any worker threads.
+ * Frames are Java serialized unless the client starts with a codec handshake.
+ */
+public class NioServer implements Runnable {
+
+    private final Thread serverThread = new Thread(this, "nio-server");
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean serverRunning;
+    private ResponseController responseController;
+    private ExecutorService executor;
+
+    /**
+     * Constructor opens a port and starts the selector thread
+     *
+     * @param port               port to be used
+     * @param responseController to handle db requests
+     */
+    public NioServer(int port, ResponseController responseController) {
+        this(port, responseController, ExecutionMode.FIXED_POOL, 5);
+    }
+
+    /**
+     * Constructor that also chooses how complete requests are executed
+     *
+     * @param port               port to be used
+     * @param responseController to handle db requests
+     * @param executionMode      fixed thread pool or one virtual thread per request
+     * @param poolSize           number of threads when a fixed pool is used
+     */
+    public NioServer(int port, ResponseController responseController, ExecutionMode executionMode, int poolSize) {
+        this.responseController = responseController;
+        this.executor = executionMode.createExecutor(poolSize);
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            serverRunning = true;
+            serverThread.start();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Selector loop that handles accepts, reads and writes for all connections
+     */
+    @Override
+    public void run() {
+        System.out.println("NIO server running");
+        while (serverRunning) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+            }
+            catch (IOException e) {
+                if (serverRunning) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        closeAll();
+        executor.shutdown();
+        System.out.println("NIO server stopped");
+    }
+
+    private void handleKey(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+            }
+            else {
+                ClientConnection connection = (ClientConnection) key.attachment();
+                if (key.isReadable()) {
+                    connection.read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.write();
+                }
+            }
+        }
+        catch (IOException e) {
+            closeKey(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new ClientConnection(key, channel));
+    }
+
+    /**
+     * Hands a complete request to a worker and queues the response on the selector thread
+     *
+     * @param connection connection the request arrived on
+     * @param payload    the complete frame
+     */
+    private void dispatch(ClientConnection connection, byte[] payload) {
+        executor.submit(() -> {
+            Message request;
+            try {
+                request = connection.codec.decode(payload);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                runOnSelector(() -> closeKey(connection.key));
+                return;
+            }
+            // requests to the plant API complete later on another thread, the worker is free in the meantime
+            responseController.getResponseAsync(request).whenComplete((response, failure) -> {
+                try {
+                    if (failure != null) {
+                        throw new IOException(failure);
+                    }
+                    byte[] responsePayload = connection.codec.encode(response);
+                    runOnSelector(() -> connection.enqueue(responsePayload));
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                    runOnSelector(() -> closeKey(connection.key));
+                }
+            });
+        });
+    }
+
+    private void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void closeKey(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (IOException e) {
+            //nothing more to do with a connection that is already broken
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            closeKey(key);
+        }
+        try {
+            selector.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the server
+     */
+    public void shutdown() {
+        serverRunning = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (executor != null && !executor.isShutdown()) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Read and write state for one client connection. Only touched by the selector thread.
+     */
+    private class ClientConnection {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(MessageFrames.HEADER_SIZE);
+        private ByteBuffer body;
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private volatile MessageCodec codec = MessageCodecs.JAVA_SERIALIZATION;
+        private boolean firstHeader = true;
+
+        private ClientConnection(SelectionKey key, SocketChannel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        /**
+         * Reads as much as is available and dispatches every frame that is completed
+         */
+        private void read() throws IOException {
+            while (true) {
+                if (body == null) {
+                    if (channel.read(header) < 0) {
+                        throw new IOException("Connection closed by client");
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    header.flip();
+                    if (firstHeader) {
+                        firstHeader = false;
+                        byte[] head = new byte[MessageFrames.HANDSHAKE_SIZE];
+                        header.get(head);
+                        header.clear();
+                        if (MessageFrames.isHandshake(head)) {
+                            codec = MessageFrames.agreeOnCodec(head);
+                            enqueueRaw(ByteBuffer.wrap(MessageFrames.handshake(codec)));
+                            continue;
+                        }
+                        header.put(head).flip();
+                    }
+                    int length = header.getInt();
+                    header.clear();
+                    MessageFrames.checkFrameLength(length);
+                    body = ByteBuffer.allocate(length);
+                }
+                if (channel.read(body) < 0) {
+                    throw new IOException("Connection closed by client");
+                }
+                if (body.hasRemaining()) {
+                    return;
+                }
+                byte[] payload = body.array();
+                body = null;
+                dispatch(this, payload);
+            }
+        }
+
+        /**
+         * Queues a response frame and registers interest in writing it
+         */
+        private void enqueue(byte[] payload) {
+            if (!key.isValid()) {
+                return;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(MessageFrames.HEADER_SIZE + payload.length);
+            frame.putInt(payload.length).put(payload).flip();
+            enqueueRaw(frame);
+        }
+
+        /**
+         * Queues bytes that are already in wire format, like the handshake answer
+         */
+        private void enqueueRaw(ByteBuffer bytes) {
+            writeQueue.add(bytes);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Writes queued frames until the socket buffer is full or the queue is empty
+         */
+        private void write() throws IOException {
+            ByteBuffer frame;
+            while ((frame = writeQueue.peek()) != null) {
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+}
@@ -13,11 +13,19 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Service class responsible for fetching plant data from the Perenual API.
@@ -26,11 +34,91 @@ public class PlantApiService {
     private final String BASE_URL = "https://perenual.com/api/species-list";
     private final String API_KEY = PasswordsAndKeys.APIToken;
     private final HttpClient httpClient;
+    private final ExpiringLruCache<String, List<Plant>> searchCache;
+    private final PlantDetailsCache detailsCache;
+    private final SingleFlight<String, JSONObject> apiRequests = new SingleFlight<>();
+    private final ApiRateLimiter rateLimiter;
+    private final SpeciesCatalog speciesCatalog;
+    private final PrefixIndex suggestions = new PrefixIndex(10, 100_000);
+    private final ApiEndpoint searchEndpoint = new ApiEndpoint("species-list",
+            Duration.ofMillis(Long.getLong("myhappyplants.api.searchTimeoutMillis", 5000)));
+    private final ApiEndpoint detailsEndpoint = new ApiEndpoint("species-details",
+            Duration.ofMillis(Long.getLong("myhappyplants.api.detailsTimeoutMillis", 3000)));
 
     public PlantApiService() {
-        this.httpClient = HttpClient.newHttpClient();
+        this(500, Duration.ofMinutes(10));
     }
 
+    /**
+     * Constructor that sizes the search cache, plant details are stored in the directory
+     * given by -Dmyhappyplants.server.cacheDir, by default .myhappyplants in the home directory
+     *
+     * @param searchCacheSize max number of search results to keep
+     * @param searchCacheTtl  how long a search result is reused before the API is asked again
+     */
+    public PlantApiService(int searchCacheSize, Duration searchCacheTtl) {
+        this(searchCacheSize, searchCacheTtl, new PlantDetailsCache(defaultCacheDirectory().resolve("plant-details"), 2000));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param searchCacheSize max number of search results to keep
+     * @param searchCacheTtl  how long a search result is reused before the API is asked again
+     * @param detailsCache    cache for plant details
+     */
+    public PlantApiService(int searchCacheSize, Duration searchCacheTtl, PlantDetailsCache detailsCache) {
+        this(searchCacheSize, searchCacheTtl, detailsCache, defaultRateLimiter(),
+                new SpeciesCatalog(defaultCacheDirectory().resolve("species-catalog.json"), searchCacheTtl));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param searchCacheSize max number of search results to keep
+     * @param searchCacheTtl  how long a search result is reused before the API is asked again
+     * @param detailsCache    cache for plant details
+     * @param rateLimiter     keeps requests to the API within its quota
+     * @param speciesCatalog  local copy of the species the API has returned
+     */
+    public PlantApiService(int searchCacheSize, Duration searchCacheTtl, PlantDetailsCache detailsCache, ApiRateLimiter rateLimiter,
+                           SpeciesCatalog speciesCatalog) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(3))
+                .build();
+        this.searchCache = new ExpiringLruCache<>(searchCacheSize, searchCacheTtl);
+        this.detailsCache = detailsCache;
+        this.rateLimiter = rateLimiter;
+        this.speciesCatalog = speciesCatalog;
+        for (Plant plant : speciesCatalog.getAllSpecies()) {
+            addNameSuggestions(plant);
+        }
+    }
+
+    /**
+     * The free Perenual plan allows 100 requests per day, -Dmyhappyplants.api.dailyBudget raises it for paid plans.
+     * A fifth of the budget is kept for interactive requests.
+     */
+    private static ApiRateLimiter defaultRateLimiter() {
+        return new ApiRateLimiter(
+                Double.parseDouble(System.getProperty("myhappyplants.api.requestsPerSecond", "2")),
+                Integer.getInteger("myhappyplants.api.burst", 5),
+                Long.getLong("myhappyplants.api.dailyBudget", 100),
+                0.2);
+    }
+
+    static Path defaultCacheDirectory() {
+        String cacheDirectory = System.getProperty("myhappyplants.server.cacheDir");
+        return cacheDirectory != null ? Path.of(cacheDirectory) : Path.of(System.getProperty("user.home"), ".myhappyplants");
+    }
+
+    /**
+     * Gets details of a plant, from the details cache if they have been fetched before.
+     * Only details the API actually returned are cached, a failed request is tried again next time.
+     *
+     * @param plant plant to get details for
+     * @return the details, "Unknown" values if they could not be fetched
+     */
     public PlantDetails getPlantDetails(Plant plant) {
         System.out.println("Inside getPlantDetails with plant: " + plant);
         int plantId = Integer.parseInt(plant.getPlantId());
@@ -39,37 +127,192 @@ public class PlantApiService {
             System.out.println("Plant ID is above 3000, setting default values and not fetching details from API");
             return new PlantDetails("Unknown", "Unknown", "Unknown", List.of("Unknown"), "Unknown");
         }
+        PlantDetails cachedDetails = detailsCache.get(plant.getPlantId());
+        if (cachedDetails != null) {
+            return cachedDetails;
+        }
         try {
             String query = String.format("https://perenual.com/api/species/details/%s?key=%s", plant.getPlantId(), API_KEY);
-            JSONObject jsonResponse = fetchJsonResponse(query);
-            return parsePlantDetailsFromJson(jsonResponse);
+            JSONObject jsonResponse = fetchJsonResponse(query, detailsEndpoint, ApiPriority.INTERACTIVE);
+            PlantDetails plantDetails = parsePlantDetailsFromJson(jsonResponse);
+            detailsCache.put(plant.getPlantId(), plantDetails);
+            return plantDetails;
         } catch (Exception e) {
             System.err.println("Failed to fetch plant details: " + e.getMessage());
             return new PlantDetails("Unknown", "Unknown", "Unknown", List.of("Unknown"), "Unknown");
         }
     }
 
-    public Optional<List<Plant>> getPlants(String plantSearch, SortingOption sortingOption) {
-        if (sortingOption == null) {
-            sortingOption = SortingOption.COMMON_NAME;
+    /**
+     * Gets details of a plant like getPlantDetails, but without blocking the calling thread while the API is asked
+     *
+     * @param plant plant to get details for
+     * @return completes with the details, "Unknown" values if they could not be fetched
+     */
+    public CompletableFuture<PlantDetails> getPlantDetailsAsync(Plant plant) {
+        return getPlantDetailsAsync(plant, ApiPriority.INTERACTIVE);
+    }
+
+    /**
+     * Gets details of a plant without blocking, in the given priority lane. Background requests are meant
+     * for fetching details nobody is waiting for yet and are refused before the daily budget runs out.
+     *
+     * @param plant    plant to get details for
+     * @param priority lane of the request to the API
+     * @return completes with the details, "Unknown" values if they could not be fetched
+     */
+    public CompletableFuture<PlantDetails> getPlantDetailsAsync(Plant plant, ApiPriority priority) {
+        int plantId = Integer.parseInt(plant.getPlantId());
+        if (plantId > 3000) { // Plants with ID above 3000 require premium from the API to get detailed information
+            return CompletableFuture.completedFuture(new PlantDetails("Unknown", "Unknown", "Unknown", List.of("Unknown"), "Unknown"));
+        }
+        PlantDetails cachedDetails = detailsCache.get(plant.getPlantId());
+        if (cachedDetails != null) {
+            return CompletableFuture.completedFuture(cachedDetails);
         }
+        String query = String.format("https://perenual.com/api/species/details/%s?key=%s", plant.getPlantId(), API_KEY);
+        return fetchJsonResponseAsync(query, detailsEndpoint, priority)
+                .thenApply(jsonResponse -> {
+                    PlantDetails plantDetails = parsePlantDetailsFromJson(jsonResponse);
+                    detailsCache.put(plant.getPlantId(), plantDetails);
+                    return plantDetails;
+                })
+                .exceptionally(e -> {
+                    System.err.println("Failed to fetch plant details: " + e.getMessage());
+                    return new PlantDetails("Unknown", "Unknown", "Unknown", List.of("Unknown"), "Unknown");
+                });
+    }
 
-        System.out.println("Fetching plants from API, search: " + plantSearch + ", sorting: " + sortingOption);
-        try {
-            String query = buildQueryUrl(plantSearch);
-            JSONObject jsonResponse = fetchJsonResponse(query);
-            List<Plant> plants = parsePlantsFromJson(jsonResponse);
+    /**
+     * Searches for plants. Results are cached per normalized search text in the order the API returned them,
+     * and sorted after the lookup so every sorting option shares one cache entry.
+     * A search the species catalog has a complete result for is answered without the API.
+     * An expired result is returned right away while a fresh one is fetched in the background
+     * (stale-while-revalidate). If the API can't be asked, because the daily budget is used up, the API fails
+     * or its circuit is open, the matching species in the catalog are returned rather than nothing.
+     * A search that finds nothing returns the species with the closest names in the catalog.
+     *
+     * @param plantSearch   text to search for
+     * @param sortingOption how to sort the result, common name if null
+     * @return the plants found, empty if none were found or the API failed
+     */
+    public Optional<List<Plant>> getPlants(String plantSearch, SortingOption sortingOption) {
+        return getPlantsAsync(plantSearch, sortingOption).join();
+    }
 
-            switch (sortingOption) {
-                case COMMON_NAME -> plants.sort(Comparator.comparing(Plant::getCommonName, String.CASE_INSENSITIVE_ORDER));
-                case SCIENTIFIC_NAME -> plants.sort(Comparator.comparing(Plant::getScientificName, String.CASE_INSENSITIVE_ORDER));
+    /**
+     * Searches for plants like getPlants, but without blocking the calling thread while the API is asked
+     *
+     * @param plantSearch   text to search for
+     * @param sortingOption how to sort the result, common name if null
+     * @return completes with the plants found, empty if none were found or the API failed
+     */
+    public CompletableFuture<Optional<List<Plant>>> getPlantsAsync(String plantSearch, SortingOption sortingOption) {
+        SortingOption sorting = sortingOption != null ? sortingOption : SortingOption.COMMON_NAME;
+        String cacheKey = normalizeSearch(plantSearch);
+        List<Plant> cachedPlants = searchCache.get(cacheKey);
+        if (cachedPlants != null) {
+            return CompletableFuture.completedFuture(withFuzzyFallback(cacheKey, cachedPlants, sorting));
+        }
+        List<Plant> completeResult = speciesCatalog.getCompleteResult(cacheKey);
+        if (completeResult != null) {
+            return CompletableFuture.completedFuture(withFuzzyFallback(cacheKey, completeResult, sorting));
+        }
+        List<Plant> stalePlants = revalidateInBackground(cacheKey, plantSearch);
+        if (stalePlants != null) {
+            return CompletableFuture.completedFuture(withFuzzyFallback(cacheKey, stalePlants, sorting));
+        }
+        return fetchPlantsAsync(cacheKey, plantSearch, ApiPriority.INTERACTIVE)
+                .thenApply(plants -> withFuzzyFallback(cacheKey, plants, sorting))
+                .exceptionally(e -> {
+                    System.err.println("Failed to fetch plants: " + e.getMessage());
+                    return withFuzzyFallback(cacheKey, speciesCatalog.search(cacheKey), sorting);
+                });
+    }
+
+    /**
+     * A search that found nothing, often because of a typo, gets the closest species in the catalog instead,
+     * so the user does not have to search again
+     */
+    private Optional<List<Plant>> withFuzzyFallback(String cacheKey, List<Plant> plants, SortingOption sortingOption) {
+        if (plants.isEmpty()) {
+            plants = speciesCatalog.fuzzySearch(cacheKey, SpeciesCatalog.API_PAGE_SIZE);
+            if (!plants.isEmpty()) {
+                System.out.println("No plants found for " + cacheKey + ", returning " + plants.size() + " close matches");
             }
+        }
+        return sortedCopy(plants, sortingOption);
+    }
 
-            return plants.isEmpty() ? Optional.empty() : Optional.of(plants);
-        } catch (Exception e) {
-            System.err.println("Failed to fetch plants: " + e.getMessage());
-            return Optional.empty();
+    /**
+     * Starts a background refresh if an expired result is cached for the search
+     *
+     * @return the expired result, null if nothing is cached
+     */
+    private List<Plant> revalidateInBackground(String cacheKey, String plantSearch) {
+        List<Plant> stalePlants = searchCache.getStale(cacheKey);
+        if (stalePlants != null) {
+            fetchPlantsAsync(cacheKey, plantSearch, ApiPriority.BACKGROUND)
+                    .exceptionally(e -> {
+                        System.err.println("Failed to refresh search " + cacheKey + ": " + e.getMessage());
+                        return null;
+                    });
         }
+        return stalePlants;
+    }
+
+    private CompletableFuture<List<Plant>> fetchPlantsAsync(String cacheKey, String plantSearch, ApiPriority priority) {
+        return fetchJsonResponseAsync(buildQueryUrl(plantSearch), searchEndpoint, priority)
+                .thenApply(jsonResponse -> {
+                    List<Plant> plants = List.copyOf(parsePlantsFromJson(jsonResponse));
+                    searchCache.put(cacheKey, plants);
+                    speciesCatalog.addSearchResult(cacheKey, plants);
+                    for (Plant plant : plants) {
+                        addNameSuggestions(plant);
+                    }
+                    return plants;
+                });
+    }
+
+    private static Optional<List<Plant>> sortedCopy(List<Plant> cachedPlants, SortingOption sortingOption) {
+        List<Plant> plants = copyPlants(cachedPlants);
+        switch (sortingOption) {
+            case COMMON_NAME -> plants.sort(Comparator.comparing(Plant::getCommonName, String.CASE_INSENSITIVE_ORDER));
+            case SCIENTIFIC_NAME -> plants.sort(Comparator.comparing(Plant::getScientificName, String.CASE_INSENSITIVE_ORDER));
+        }
+        return plants.isEmpty() ? Optional.empty() : Optional.of(plants);
+    }
+
+    /**
+     * @return statistics of the search cache
+     */
+    public CacheStats getSearchCacheStats() {
+        return searchCache.getStats();
+    }
+
+    /**
+     * @return statistics of the in-memory part of the details cache
+     */
+    public CacheStats getDetailsCacheStats() {
+        return detailsCache.getMemoryStats();
+    }
+
+    /**
+     * Makes searches that only differ in case or white space share one cache entry
+     */
+    private static String normalizeSearch(String plantSearch) {
+        return plantSearch.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Copies the cached plants, so the plants sent to one client are never shared with another request
+     */
+    private static List<Plant> copyPlants(List<Plant> plants) {
+        List<Plant> copies = new ArrayList<>(plants.size());
+        for (Plant plant : plants) {
+            copies.add(new Plant(plant.getPlantId(), plant.getCommonName(), plant.getScientificName(), plant.getImageURL()));
+        }
+        return copies;
     }
 
     private String buildQueryUrl(String plantSearch) {
@@ -79,18 +322,162 @@ public class PlantApiService {
                 URLEncoder.encode(plantSearch, StandardCharsets.UTF_8));
     }
 
-    private JSONObject fetchJsonResponse(String query) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder()
+    /**
+     * Suggests searches that start with what the user has typed, drawn from the species names in the catalog
+     * and what all users have searched for, the most searched first
+     *
+     * @param prefix what the user has typed so far
+     * @param limit  max number of suggestions
+     * @return the suggestions
+     */
+    public List<String> getSuggestions(String prefix, int limit) {
+        return suggestions.suggest(prefix, limit);
+    }
+
+    /**
+     * Counts a search made by a user, so popular searches are suggested first. Only searches that found
+     * plants are counted, so typos are not suggested to others.
+     *
+     * @param plantSearch text that was searched for
+     */
+    public void recordSearch(String plantSearch) {
+        String cacheKey = normalizeSearch(plantSearch);
+        List<Plant> plants = searchCache.getStale(cacheKey);
+        if ((plants != null && !plants.isEmpty()) || !speciesCatalog.search(cacheKey).isEmpty()) {
+            suggestions.add(cacheKey, 1);
+        }
+    }
+
+    private void addNameSuggestions(Plant plant) {
+        if (plant.getCommonName() != null) {
+            suggestions.addIfAbsent(plant.getCommonName());
+        }
+        if (plant.getScientificName() != null) {
+            suggestions.addIfAbsent(plant.getScientificName());
+        }
+    }
+
+    /**
+     * @return requests to the API that are left today
+     */
+    public long getRemainingApiBudget() {
+        return rateLimiter.getRemainingDailyBudget();
+    }
+
+    /**
+     * @return state of the circuit breakers of the search and details endpoints
+     */
+    public String getCircuitBreakerStates() {
+        return searchEndpoint.circuitBreaker + "; " + detailsEndpoint.circuitBreaker;
+    }
+
+    /**
+     * @return the local copy of the species the API has returned
+     */
+    public SpeciesCatalog getSpeciesCatalog() {
+        return speciesCatalog;
+    }
+
+    /**
+     * @return the limiter, for its statistics
+     */
+    public ApiRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return number of API requests that were saved since an identical request was already running
+     */
+    public long getCoalescedRequests() {
+        return apiRequests.getSharedCalls();
+    }
+
+    /**
+     * Fetches a response from the API and waits for it.
+     * The JSONObject may be shared between threads and must only be read.
+     */
+    private JSONObject fetchJsonResponse(String query, ApiEndpoint endpoint, ApiPriority priority) throws Exception {
+        try {
+            return fetchJsonResponseAsync(query, endpoint, priority).get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches a response from the API without blocking, the future completes on a thread of the HttpClient.
+     * Callers that ask for the same URL at the same time share one request, so many clients opening the same
+     * plant only cost one API call. The request fails right away if the endpoint's circuit is open, then waits
+     * for the rate limiter and fails if the daily budget is used up. The endpoint's timeout covers the wait for
+     * the rate limiter as well as the call, a request that is not answered in time is not sent and counts as a
+     * failure, so a half-open circuit doesn't wait for its trial call behind the queue.
+     */
+    private CompletableFuture<JSONObject> fetchJsonResponseAsync(String query, ApiEndpoint endpoint, ApiPriority priority) {
+        return apiRequests.executeAsync(query, () -> {
+            CircuitBreaker circuitBreaker = endpoint.circuitBreaker;
+            if (!circuitBreaker.allowRequest()) {
+                return CompletableFuture.failedFuture(new IOException("Circuit is open, " + circuitBreaker));
+            }
+            AtomicBoolean budgetUsedUp = new AtomicBoolean();
+            CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+            response.orTimeout(endpoint.timeout.toMillis(), TimeUnit.MILLISECONDS);
+            CompletableFuture<Boolean> permit = rateLimiter.acquire(priority);
+            response.whenComplete((result, failure) -> permit.cancel(false));
+            permit.whenComplete((granted, error) -> {
+                if (response.isDone()) {
+                    return;
+                }
+                if (error != null) {
+                    response.completeExceptionally(error);
+                }
+                else if (!granted) {
+                    budgetUsedUp.set(true);
+                    response.completeExceptionally(new IOException("Daily API budget is used up, " + rateLimiter));
+                }
+                else {
+                    httpClient.sendAsync(buildRequest(query, endpoint.timeout), HttpResponse.BodyHandlers.ofString())
+                            .whenComplete((result, failure) -> {
+                                if (failure != null) {
+                                    response.completeExceptionally(failure);
+                                }
+                                else {
+                                    response.complete(result);
+                                }
+                            });
+                }
+            });
+            return response
+                    .whenComplete((result, failure) -> {
+                        if (budgetUsedUp.get()) {
+                            circuitBreaker.cancel();
+                        }
+                        else if (failure != null || result.statusCode() >= 500 || result.statusCode() == 429) {
+                            circuitBreaker.recordFailure();
+                        }
+                        else {
+                            circuitBreaker.recordSuccess();
+                        }
+                    })
+                    .thenApply(result -> toJson(result));
+        });
+    }
+
+    private static HttpRequest buildRequest(String query, Duration timeout) {
+        return HttpRequest.newBuilder()
                 .uri(URI.create(query))
                 .header("Accept", "application/json")
+                .timeout(timeout)
                 .GET()
                 .build();
+    }
 
-        HttpResponse<String> response = httpClient.send(request,
-                HttpResponse.BodyHandlers.ofString());
-
+    private static JSONObject toJson(HttpResponse<String> response) {
         if (response.statusCode() != 200) {
-            throw new IOException("HTTP error code: " + response.statusCode());
+            throw new UncheckedIOException(new IOException("HTTP error code: " + response.statusCode()));
         }
         return new JSONObject(response.body());
     }
@@ -139,4 +526,18 @@ public class PlantApiService {
     private String getJsonString(JSONObject json, String key) {
         return json.has(key) && !json.isNull(key) ? json.getString(key) : "";
     }
-}
\ No newline at end of file
+
+    /**
+     * One endpoint of the API with its own timeout and circuit breaker, so a failing details
+     * endpoint does not stop searches
+     */
+    private static class ApiEndpoint {
+        private final Duration timeout;
+        private final CircuitBreaker circuitBreaker;
+
+        private ApiEndpoint(String name, Duration timeout) {
+            this.timeout = timeout;
+            this.circuitBreaker = new CircuitBreaker(name, 5, Duration.ofSeconds(30));
+        }
+    }
+}
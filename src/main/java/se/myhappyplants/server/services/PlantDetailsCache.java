@@ -0,0 +1,159 @@
+package se.myhappyplants.server.services;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import se.myhappyplants.shared.PlantDetails;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache for plant details keyed by plant id.
+ * Recently used details are kept in memory, and all details are stored as one JSON file per plant in a
+ * directory, so they survive a restart of the server. Species details practically never change, so
+ * entries never expire.
+ */
+public class PlantDetailsCache {
+
+    private final Path directory;
+    private final ExpiringLruCache<String, PlantDetails> memory;
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong diskMisses = new AtomicLong();
+
+    /**
+     * Constructor, the directory is created when the first details are stored
+     *
+     * @param directory     directory for the JSON files
+     * @param memoryEntries max number of details kept in memory
+     */
+    public PlantDetailsCache(Path directory, int memoryEntries) {
+        this.directory = directory;
+        this.memory = new ExpiringLruCache<>(memoryEntries);
+    }
+
+    /**
+     * Looks up details, first in memory and then on disk
+     *
+     * @param plantId id of the plant
+     * @return the details, or null if they have not been stored
+     */
+    public PlantDetails get(String plantId) {
+        PlantDetails plantDetails = memory.get(plantId);
+        if (plantDetails != null) {
+            return plantDetails;
+        }
+        plantDetails = readFromDisk(plantId);
+        if (plantDetails == null) {
+            diskMisses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        memory.put(plantId, plantDetails);
+        return plantDetails;
+    }
+
+    /**
+     * Stores details in memory and on disk
+     *
+     * @param plantId      id of the plant
+     * @param plantDetails details to store
+     */
+    public void put(String plantId, PlantDetails plantDetails) {
+        memory.put(plantId, plantDetails);
+        writeToDisk(plantId, plantDetails);
+    }
+
+    public CacheStats getMemoryStats() {
+        return memory.getStats();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getDiskMisses() {
+        return diskMisses.get();
+    }
+
+    /**
+     * Only numeric ids are stored on disk, so an id can never point outside the directory
+     */
+    private Path fileFor(String plantId) {
+        if (plantId == null || !plantId.matches("\\d{1,10}")) {
+            return null;
+        }
+        return directory.resolve(plantId + ".json");
+    }
+
+    private PlantDetails readFromDisk(String plantId) {
+        Path file = fileFor(plantId);
+        if (file == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            List<String> sunlight = null;
+            JSONArray sunlightJson = json.optJSONArray("sunlight");
+            if (sunlightJson != null) {
+                sunlight = new ArrayList<>();
+                for (int i = 0; i < sunlightJson.length(); i++) {
+                    sunlight.add(sunlightJson.optString(i));
+                }
+            }
+            return new PlantDetails(json.optString("familyName", null), json.optString("description", null),
+                    json.optString("recommendedWateringFrequency", null), sunlight, json.optString("scientificName", null));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JSONException e) {
+            System.err.println("Could not read cached plant details " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and moves it in place, so a crash never leaves half a file behind
+     */
+    private void writeToDisk(String plantId, PlantDetails plantDetails) {
+        Path file = fileFor(plantId);
+        if (file == null) {
+            return;
+        }
+        JSONObject json = new JSONObject();
+        json.put("familyName", plantDetails.getFamilyName());
+        json.put("scientificName", plantDetails.getScientificName());
+        json.put("description", plantDetails.getDescription());
+        json.put("recommendedWateringFrequency", plantDetails.getRecommended_watering_frequency());
+        if (plantDetails.getSunlight() != null) {
+            json.put("sunlight", new JSONArray(plantDetails.getSunlight()));
+        }
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, plantId, ".tmp");
+            Files.writeString(temporaryFile, json.toString(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not store plant details " + file + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    //nothing more to do
+                }
+            }
+        }
+    }
+}
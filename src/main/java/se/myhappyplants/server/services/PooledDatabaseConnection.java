@@ -0,0 +1,343 @@
+package se.myhappyplants.server.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of database connections where every thread gets a connection of its own.
+ * A connection is borrowed the first time a thread calls getConnection() and stays bound to
+ * that thread until releaseConnection() is called at the end of the request, so transactions
+ * started by one request never affect another.
+ * <p>
+ * The pool keeps between minSize and maxSize connections, validates idle connections before
+ * handing them out, closes connections that have been idle too long and logs connections
+ * that have been borrowed for longer than the leak threshold, with the thread that borrowed them and when.
+ * Where in the code a connection was borrowed is only logged with -Dmyhappyplants.db.leakStackTraces=true,
+ * since recording it costs a stack trace on every borrow.
+ */
+public class PooledDatabaseConnection implements IDatabaseConnection {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory connectionFactory;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final boolean recordBorrowStacks = Boolean.getBoolean("myhappyplants.db.leakStackTraces");
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<PooledConnection> threadConnection = new ThreadLocal<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool against the given database with default timeouts
+     *
+     * @param databaseName name of the database
+     * @param minSize      number of connections to keep open when idle
+     * @param maxSize      max number of connections open at the same time
+     */
+    public PooledDatabaseConnection(String databaseName, int minSize, int maxSize) {
+        this(() -> DatabaseConnection.openConnection(databaseName), minSize, maxSize, 5_000, 300_000, 60_000);
+    }
+
+    /**
+     * Creates a pool
+     *
+     * @param connectionFactory   creates new physical connections
+     * @param minSize             number of connections to keep open when idle
+     * @param maxSize             max number of connections open at the same time
+     * @param borrowTimeoutMillis how long a thread waits for a free connection before giving up
+     * @param idleTimeoutMillis   how long a connection may be idle before it is closed, if more than minSize are open
+     * @param leakThresholdMillis how long a connection may be borrowed before it is reported as a possible leak, 0 disables it
+     */
+    public PooledDatabaseConnection(ConnectionFactory connectionFactory, int minSize, int maxSize,
+                                    long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size, min: " + minSize + " max: " + maxSize);
+        }
+        this.connectionFactory = connectionFactory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1_000, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the connection bound to the calling thread, borrowing one from the pool if needed
+     *
+     * @return a connection, or null if none could be borrowed in time
+     */
+    @Override
+    public Connection getConnection() {
+        PooledConnection current = threadConnection.get();
+        if (current != null) {
+            return current.connection;
+        }
+        if (closed) {
+            System.err.println("Connection pool is closed");
+            return null;
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection, "
+                        + borrowedConnections.size() + " of " + maxSize + " in use");
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        PooledConnection pooledConnection = takeValidIdleConnection();
+        if (pooledConnection == null) {
+            try {
+                pooledConnection = createConnection();
+            } catch (SQLException e) {
+                permits.release();
+                System.err.println("SQL exception: " + e.getMessage());
+                e.printStackTrace();
+                return null;
+            }
+        }
+        pooledConnection.markBorrowed(leakThresholdMillis > 0 && recordBorrowStacks);
+        borrowedConnections.add(pooledConnection);
+        threadConnection.set(pooledConnection);
+        return pooledConnection.connection;
+    }
+
+    /**
+     * Returns the calling thread's connection to the pool. Any transaction that is still open is rolled back.
+     */
+    @Override
+    public void releaseConnection() {
+        PooledConnection pooledConnection = threadConnection.get();
+        if (pooledConnection == null) {
+            return;
+        }
+        threadConnection.remove();
+        borrowedConnections.remove(pooledConnection);
+        try {
+            if (!pooledConnection.connection.getAutoCommit()) {
+                pooledConnection.connection.rollback();
+                pooledConnection.connection.setAutoCommit(true);
+            }
+            if (closed) {
+                discard(pooledConnection);
+            } else {
+                pooledConnection.lastUsed = System.currentTimeMillis();
+                synchronized (idleConnections) {
+                    idleConnections.addFirst(pooledConnection);
+                }
+            }
+        } catch (SQLException e) {
+            discard(pooledConnection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the calling thread's connection instead of returning it, used when the connection is broken
+     */
+    @Override
+    public void closeConnection() {
+        PooledConnection pooledConnection = threadConnection.get();
+        if (pooledConnection == null) {
+            return;
+        }
+        threadConnection.remove();
+        borrowedConnections.remove(pooledConnection);
+        discard(pooledConnection);
+        permits.release();
+    }
+
+    /**
+     * Closes all idle connections and stops the pool. Borrowed connections are closed when they are released.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idleConnections) {
+            for (PooledConnection pooledConnection : idleConnections) {
+                discard(pooledConnection);
+            }
+            idleConnections.clear();
+        }
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getBorrowedConnections() {
+        return borrowedConnections.size();
+    }
+
+    public int getIdleConnections() {
+        synchronized (idleConnections) {
+            return idleConnections.size();
+        }
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        while (true) {
+            PooledConnection pooledConnection;
+            synchronized (idleConnections) {
+                pooledConnection = idleConnections.pollFirst();
+            }
+            if (pooledConnection == null) {
+                return null;
+            }
+            if (isValid(pooledConnection)) {
+                return pooledConnection;
+            }
+            discard(pooledConnection);
+        }
+    }
+
+    private boolean isValid(PooledConnection pooledConnection) {
+        try {
+            return pooledConnection.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection connection = connectionFactory.create();
+        if (connection == null) {
+            throw new SQLException("Connection factory returned no connection");
+        }
+        totalConnections.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        totalConnections.decrementAndGet();
+        try {
+            pooledConnection.connection.close();
+        } catch (SQLException sqlException) {
+            //do nothing when this occurs, the connection is thrown away anyway
+        }
+    }
+
+    /**
+     * Evicts connections that have been idle too long, tops the pool up to minSize and reports leaks
+     */
+    private void housekeeping() {
+        try {
+            evictIdleConnections();
+            fillToMinSize();
+            reportLeaks();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        synchronized (idleConnections) {
+            Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+            while (oldestFirst.hasNext() && totalConnections.get() > minSize) {
+                PooledConnection pooledConnection = oldestFirst.next();
+                if (now - pooledConnection.lastUsed < idleTimeoutMillis) {
+                    break;
+                }
+                oldestFirst.remove();
+                discard(pooledConnection);
+            }
+        }
+    }
+
+    private void fillToMinSize() {
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooledConnection = createConnection();
+                synchronized (idleConnections) {
+                    idleConnections.addLast(pooledConnection);
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not open idle database connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void reportLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooledConnection : borrowedConnections) {
+            if (!pooledConnection.leakReported && now - pooledConnection.borrowedAt > leakThresholdMillis) {
+                pooledConnection.leakReported = true;
+                System.err.println("Possible connection leak, connection borrowed by thread " + pooledConnection.borrowedBy
+                        + " at " + Instant.ofEpochMilli(pooledConnection.borrowedAt)
+                        + " and held for " + (now - pooledConnection.borrowedAt) + " ms");
+                if (pooledConnection.borrowedFrom != null) {
+                    pooledConnection.borrowedFrom.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates new physical connections for the pool
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * A physical connection together with the bookkeeping the pool needs
+     */
+    private static class PooledConnection {
+        private final Connection connection;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile String borrowedBy;
+        private volatile Throwable borrowedFrom;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private void markBorrowed(boolean recordStackTrace) {
+            borrowedAt = System.currentTimeMillis();
+            Thread thread = Thread.currentThread();
+            // virtual threads have no name
+            borrowedBy = thread.getName().isEmpty() ? thread.toString() : thread.getName();
+            borrowedFrom = recordStackTrace ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package se.myhappyplants.server.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trie of suggestions ranked by weight, used for autocomplete. Every node keeps its best suggestions
+ * already sorted, so a lookup only walks down the letters of the prefix and copies a short list.
+ * A suggestion can be found from the start of any of its words, "deli" finds "Monstera deliciosa".
+ * Weights only grow, so a node only has to look at the suggestion whose weight just changed.
+ */
+public class PrefixIndex {
+
+    private static final Comparator<Term> RANKING = Comparator.comparingLong((Term term) -> term.weight).reversed()
+            .thenComparing(term -> term.key);
+
+    private final int suggestionsPerNode;
+    private final int maxTerms;
+    private final Node root = new Node();
+    private final Map<String, Term> terms = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param suggestionsPerNode max number of suggestions a lookup can return
+     * @param maxTerms           max number of suggestions kept, new ones are ignored when it is reached
+     */
+    public PrefixIndex(int suggestionsPerNode, int maxTerms) {
+        this.suggestionsPerNode = suggestionsPerNode;
+        this.maxTerms = maxTerms;
+    }
+
+    /**
+     * Adds a suggestion with weight 1 unless it is already known
+     *
+     * @param text the suggestion as it should be shown
+     */
+    public synchronized void addIfAbsent(String text) {
+        String key = normalize(text);
+        if (!key.isEmpty() && !terms.containsKey(key)) {
+            add(text, 1);
+        }
+    }
+
+    /**
+     * Adds weight to a suggestion, adding it if it is new
+     *
+     * @param text   the suggestion as it should be shown
+     * @param weight weight to add, like the number of times it was searched for
+     */
+    public synchronized void add(String text, long weight) {
+        String key = normalize(text);
+        if (key.isEmpty()) {
+            return;
+        }
+        Term term = terms.get(key);
+        if (term == null) {
+            if (terms.size() >= maxTerms) {
+                return;
+            }
+            term = new Term(key, text.trim().replaceAll("\\s+", " "));
+            terms.put(key, term);
+        }
+        term.weight += weight;
+        for (int start = 0; start < key.length(); start++) {
+            if (start == 0 || key.charAt(start - 1) == ' ') {
+                addPath(key.substring(start), term);
+            }
+        }
+    }
+
+    /**
+     * Finds the suggestions that have a word starting with the prefix
+     *
+     * @param prefix what the user has typed so far
+     * @param limit  max number of suggestions
+     * @return suggestions, the heaviest first
+     */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return suggestions;
+        }
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node != null) {
+            for (int i = 0; i < node.top.size() && i < limit; i++) {
+                suggestions.add(node.top.get(i).text);
+            }
+        }
+        return suggestions;
+    }
+
+    public synchronized int size() {
+        return terms.size();
+    }
+
+    private void addPath(String path, Term term) {
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.children.computeIfAbsent(path.charAt(i), character -> new Node());
+            rank(node, term);
+        }
+    }
+
+    /**
+     * Puts the term in the node's list of best suggestions if it belongs there
+     */
+    private void rank(Node node, Term term) {
+        List<Term> top = node.top;
+        if (!top.contains(term)) {
+            if (top.size() >= suggestionsPerNode && RANKING.compare(term, top.get(top.size() - 1)) >= 0) {
+                return;
+            }
+            top.add(term);
+        }
+        top.sort(RANKING);
+        if (top.size() > suggestionsPerNode) {
+            top.remove(top.size() - 1);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static class Term {
+        private final String key;
+        private final String text;
+        private long weight;
+
+        private Term(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Term> top = new ArrayList<>(2);
+    }
+}
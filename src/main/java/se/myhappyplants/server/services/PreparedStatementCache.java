@@ -0,0 +1,97 @@
+package se.myhappyplants.server.services;
+
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least recently used cache of prepared statements for one connection, keyed by the SQL text.
+ * Statements are prepared on the server the first time they are executed, so a cached
+ * statement is parsed and planned once instead of on every call.
+ * Not thread safe, a cache must only be used by the thread that currently owns the connection.
+ */
+public class PreparedStatementCache {
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Constructor
+     *
+     * @param connection connection the statements belong to
+     * @param maxSize    max number of statements to keep, the least recently used one is closed when it is exceeded
+     * @param hits       counter incremented when a cached statement is reused, may be shared between caches
+     * @param misses     counter incremented when a statement has to be prepared, may be shared between caches
+     */
+    public PreparedStatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement for the query with its parameters cleared, or prepares a new one
+     *
+     * @param query SQL text
+     * @return a statement that must not be closed by the caller
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement getStatement(String query) throws SQLException {
+        PreparedStatement statement = statements.get(query);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            hits.incrementAndGet();
+            return statement;
+        }
+        misses.incrementAndGet();
+        statement = connection.prepareStatement(query);
+        if (statement.isWrapperFor(PGStatement.class)) {
+            statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+        }
+        statements.put(query, statement);
+        return statement;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            //the statement is thrown away anyway
+        }
+    }
+}
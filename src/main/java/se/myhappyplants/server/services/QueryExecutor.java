@@ -1,9 +1,15 @@
 package se.myhappyplants.server.services;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class for handling querys to database
@@ -12,16 +18,36 @@ import java.sql.Statement;
 public class QueryExecutor implements IQueryExecutor {
 
     private IDatabaseConnection connection;
+    private final int statementCacheSize;
+    private final Map<Connection, PreparedStatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
 
     public QueryExecutor(IDatabaseConnection connection) {
+        this(connection, 0);
+    }
+
+    /**
+     * Constructor that caches prepared statements per connection.
+     * Only use the cache when every connection is used by one thread at a time, like with PooledDatabaseConnection.
+     *
+     * @param connection         the connection to run queries on
+     * @param statementCacheSize max number of cached statements per connection, 0 disables the cache
+     */
+    public QueryExecutor(IDatabaseConnection connection, int statementCacheSize) {
         this.connection = connection;
+        this.statementCacheSize = statementCacheSize;
     }
 
     @Override
     public void executeUpdate(String query, PreparedStatementSetter setter) throws SQLException {
         int retries = 0;
         while (retries < 3) {
-            try (PreparedStatement ps = this.connection.getConnection().prepareStatement(query)) {
+            Connection conn = null;
+            PreparedStatement ps = null;
+            try {
+                conn = getConnection();
+                ps = prepareStatement(conn, query);
                 if (setter != null) {
                     setter.setValues(ps);
                 }
@@ -29,20 +55,53 @@ public class QueryExecutor implements IQueryExecutor {
                 return;
             } catch (SQLException sqlException) {
                 System.err.println("SQLException on attempt " + (retries + 1) + ": " + sqlException.getMessage());
+                discardStatementCache(conn);
                 connection.closeConnection();
                 retries++;
+            } finally {
+                closeUncachedStatement(ps);
             }
         }
         throw new SQLException("Failed to execute update after 3 attempts");
     }
 
 
+    /**
+     * Not retried like the other methods, since a batch is run inside a transaction and running it again
+     * on a new connection would apply it outside that transaction. The caller rolls back instead.
+     */
+    @Override
+    public int[] executeBatch(String query, List<PreparedStatementSetter> setters) throws SQLException {
+        Connection conn = getConnection();
+        PreparedStatement ps = null;
+        try {
+            ps = prepareStatement(conn, query);
+            for (PreparedStatementSetter setter : setters) {
+                setter.setValues(ps);
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        } catch (SQLException sqlException) {
+            System.err.println("SQLException in batch: " + sqlException.getMessage());
+            discardStatementCache(conn);
+            throw sqlException;
+        } finally {
+            closeUncachedStatement(ps);
+        }
+    }
+
+
     @Override
     public ResultSet executeQuery(String query, PreparedStatementSetter setter) throws SQLException {
         int retries = 0;
         while (retries < 3) {
+            Connection conn = null;
             try {
-                PreparedStatement ps = connection.getConnection().prepareStatement(query);
+                conn = getConnection();
+                PreparedStatement ps = prepareStatement(conn, query);
+                if (statementCacheSize <= 0) {
+                    ps.closeOnCompletion();
+                }
 
                 if (setter != null) {
                     setter.setValues(ps);
@@ -51,8 +110,41 @@ public class QueryExecutor implements IQueryExecutor {
                 return ps.executeQuery();
             } catch (SQLException sqlException) {
                 System.err.println("SQLException on attempt " + (retries + 1) + ": " + sqlException.getMessage());
+                discardStatementCache(conn);
+                connection.closeConnection();
+                retries++;
+            }
+        }
+        throw new SQLException("Failed to execute query after 3 attempts");
+    }
+
+    @Override
+    public <T> List<T> query(String query, PreparedStatementSetter setter, RowMapper<T> rowMapper, int fetchSize) throws SQLException {
+        int retries = 0;
+        while (retries < 3) {
+            Connection conn = null;
+            PreparedStatement ps = null;
+            try {
+                conn = getConnection();
+                ps = prepareStatement(conn, query);
+                ps.setFetchSize(fetchSize);
+                if (setter != null) {
+                    setter.setValues(ps);
+                }
+                List<T> rows = new ArrayList<>();
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows.add(rowMapper.mapRow(resultSet));
+                    }
+                }
+                return rows;
+            } catch (SQLException sqlException) {
+                System.err.println("SQLException on attempt " + (retries + 1) + ": " + sqlException.getMessage());
+                discardStatementCache(conn);
                 connection.closeConnection();
                 retries++;
+            } finally {
+                closeUncachedStatement(ps);
             }
         }
         throw new SQLException("Failed to execute query after 3 attempts");
@@ -64,7 +156,7 @@ public class QueryExecutor implements IQueryExecutor {
         int retries = 0;
         while (retries < 3) {
             try {
-                connection.getConnection().setAutoCommit(false);
+                getConnection().setAutoCommit(false);
                 return;
             } catch (SQLException sqlException) {
                 connection.closeConnection();
@@ -77,14 +169,94 @@ public class QueryExecutor implements IQueryExecutor {
     @Override
     public void endTransaction() throws SQLException {
         try {
-            connection.getConnection().commit();
+            getConnection().commit();
         } finally {
-            connection.getConnection().setAutoCommit(true);
+            getConnection().setAutoCommit(true);
         }
     }
 
     @Override
     public void rollbackTransaction() throws SQLException {
-        connection.getConnection().rollback();
+        try {
+            getConnection().rollback();
+        } finally {
+            getConnection().setAutoCommit(true);
+        }
+    }
+
+    /**
+     * @return number of times a cached prepared statement was reused
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return number of times a statement had to be prepared because it was not cached
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * Gets the connection for the current request
+     * @return the connection
+     * @throws SQLException if no connection could be opened or borrowed
+     */
+    private Connection getConnection() throws SQLException {
+        Connection conn = connection.getConnection();
+        if (conn == null) {
+            throw new SQLException("No database connection available");
+        }
+        return conn;
+    }
+
+    /**
+     * Gets a cached statement for the query, or prepares a new one if the cache is disabled
+     */
+    private PreparedStatement prepareStatement(Connection conn, String query) throws SQLException {
+        if (statementCacheSize <= 0) {
+            return conn.prepareStatement(query);
+        }
+        PreparedStatementCache cache = statementCaches.get(conn);
+        if (cache == null) {
+            removeClosedConnections();
+            cache = new PreparedStatementCache(conn, statementCacheSize, statementCacheHits, statementCacheMisses);
+            statementCaches.put(conn, cache);
+        }
+        return cache.getStatement(query);
+    }
+
+    private void closeUncachedStatement(Statement statement) {
+        if (statement != null && statementCacheSize <= 0) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                //the statement is not used again
+            }
+        }
+    }
+
+    private void discardStatementCache(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        PreparedStatementCache cache = statementCaches.remove(conn);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Drops caches of connections that the pool has closed, so they can be garbage collected
+     */
+    private void removeClosedConnections() {
+        statementCaches.values().removeIf(cache -> {
+            try {
+                return cache.getConnection().isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        });
     }
 }
@@ -6,12 +6,12 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 
 /**
  * Server that listens for incoming connections
- * Handles each connection with a new thread
+ * Each connection is read on a virtual thread of its own, since clients may keep their connection open,
+ * and its requests are handled on the executor (a fixed pool or virtual threads)
  * <p>
  * Created by: Christopher O'Driscoll
  * Updated by: Frida Jacobsson 2021-05-21
@@ -23,6 +23,7 @@ public class Server implements Runnable {
     private boolean serverRunning;
     private ResponseController responseController;
     private ExecutorService executor;
+    private final Thread.Builder connectionThreads = Thread.ofVirtual().name("client-connection-", 0);
 
     /**
      * Constructor opens a port and starts a thread to listen for incoming connections/requests
@@ -31,9 +32,21 @@ public class Server implements Runnable {
      * @param responseController to handle db requests
      */
     public Server(int port, ResponseController responseController) {
-        this(port);
+        this(port, responseController, ExecutionMode.FIXED_POOL, 5);
+    }
+
+    /**
+     * Constructor that also chooses how requests are executed
+     *
+     * @param port               port to be used
+     * @param responseController to handle db requests
+     * @param executionMode      fixed thread pool or one virtual thread per request
+     * @param poolSize           number of threads when a fixed pool is used
+     */
+    public Server(int port, ResponseController responseController, ExecutionMode executionMode, int poolSize) {
         this.responseController = responseController;
-        executor = Executors.newFixedThreadPool(5);
+        this.executor = executionMode.createExecutor(poolSize);
+        startListening(port);
     }
 
     /**
@@ -42,6 +55,10 @@ public class Server implements Runnable {
      * @param port port to be used
      */
     public Server(int port) {
+        startListening(port);
+    }
+
+    private void startListening(int port) {
         try {
             serverSocket = new ServerSocket(port);
             serverRunning = true;
@@ -53,7 +70,7 @@ public class Server implements Runnable {
     }
 
     /**
-     * starts a new thread for each incoming connection from a client
+     * starts a new reader thread for each incoming connection from a client
      */
     @Override
     public void run() {
@@ -61,8 +78,8 @@ public class Server implements Runnable {
         while (serverRunning) {
             try {
                 Socket socket = serverSocket.accept();
-                ClientHandlerTask clientHandlerTask = new ClientHandlerTask(socket, responseController);
-                executor.submit(clientHandlerTask);
+                ClientHandlerTask clientHandlerTask = new ClientHandlerTask(socket, responseController, executor);
+                connectionThreads.start(clientHandlerTask);
             }
             catch (IOException e) {
                 if (serverRunning) {
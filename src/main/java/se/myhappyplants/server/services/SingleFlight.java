@@ -0,0 +1,121 @@
+package se.myhappyplants.server.services;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key. The first caller runs the call and every caller that
+ * asks for the same key while it is running waits for that result instead of making the call again.
+ * Results are not kept after the call is done, caching is left to the caller.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the result
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong sharedCalls = new AtomicLong();
+
+    /**
+     * Runs the call, or waits for the call already running for the same key
+     *
+     * @param key  identifies the call
+     * @param call makes the call, only run if no call for the key is running
+     * @return the result of the call
+     * @throws Exception what the call threw
+     */
+    public V execute(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            sharedCalls.incrementAndGet();
+            return await(running);
+        }
+        calls.incrementAndGet();
+        try {
+            V result = call.call();
+            future.complete(result);
+            return result;
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Starts the call, or joins the call already running for the same key, without waiting for it
+     *
+     * @param key  identifies the call
+     * @param call starts the call, only run if no call for the key is running
+     * @return completes with the result of the call
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            sharedCalls.incrementAndGet();
+            return running;
+        }
+        calls.incrementAndGet();
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        }
+        catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, failure) -> {
+            inFlight.remove(key, future);
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            }
+            else {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    private V await(CompletableFuture<V> running) throws Exception {
+        try {
+            return running.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of calls that were actually made
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return number of callers that got the result of a call made by another caller
+     */
+    public long getSharedCalls() {
+        return sharedCalls.get();
+    }
+
+    /**
+     * @return number of calls running right now
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
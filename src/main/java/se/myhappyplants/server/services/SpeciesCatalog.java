@@ -0,0 +1,562 @@
+package se.myhappyplants.server.services;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import se.myhappyplants.shared.Plant;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Local copy of the species the plant API has returned, so searches can be answered without asking the API.
+ * Every species gets a number and every three-letter sequence (trigram) of its names points to the numbers of
+ * the species containing it. A search intersects the lists of its trigrams and checks the few species left.
+ * <p>
+ * The catalog grows from the search results of the API as they arrive. A search whose API result was shorter
+ * than one page is remembered as complete together with the species the API returned, so the same search can be
+ * answered from the catalog alone. Only the same search is answered that way, the API also matches names the
+ * catalog doesn't have, so the catalog can't tell which species a longer search would return. A complete search
+ * expires like a cached search result, so species added to the API later are found once it is asked again.
+ * The catalog is stored in a JSON file so it survives a restart of the server. The file is written in the
+ * background a few seconds after a change, so a burst of searches causes one write.
+ * <p>
+ * Every word of the names is also kept in a BK-tree, so searches with typos like "monstra" can be matched
+ * to the closest names with fuzzySearch.
+ */
+public class SpeciesCatalog {
+
+    /**
+     * Number of species the API returns per page of a search
+     */
+    public static final int API_PAGE_SIZE = 30;
+
+    private static final Duration DEFAULT_COMPLETE_SEARCH_TTL = Duration.ofMinutes(10);
+    private static final long SAVE_DELAY_MILLIS = 5000;
+
+    private final Path file;
+    private final long completeSearchTtlMillis;
+    private final LongSupplier clock;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private ScheduledExecutorService saver;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Plant> species = new ArrayList<>();
+    private final List<String> searchTexts = new ArrayList<>();
+    private final Map<String, Integer> numbersByPlantId = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, CompleteSearch> completeSearches = new HashMap<>();
+    private final BkTree wordTree = new BkTree();
+    private final Map<String, Postings> wordPostings = new HashMap<>();
+
+    /**
+     * Constructor, loads the catalog from the file if it exists
+     *
+     * @param file where the catalog is stored, null to only keep it in memory
+     */
+    public SpeciesCatalog(Path file) {
+        this(file, DEFAULT_COMPLETE_SEARCH_TTL);
+    }
+
+    /**
+     * Constructor, loads the catalog from the file if it exists
+     *
+     * @param file              where the catalog is stored, null to only keep it in memory
+     * @param completeSearchTtl how long a complete search result is trusted before the API is asked again
+     */
+    public SpeciesCatalog(Path file, Duration completeSearchTtl) {
+        this(file, completeSearchTtl, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor, loads the catalog from the file if it exists
+     *
+     * @param file              where the catalog is stored, null to only keep it in memory
+     * @param completeSearchTtl how long a complete search result is trusted before the API is asked again
+     * @param clock             current time in milliseconds since 1970, stored in the file so it must be wall clock time
+     */
+    public SpeciesCatalog(Path file, Duration completeSearchTtl, LongSupplier clock) {
+        this.file = file;
+        this.completeSearchTtlMillis = completeSearchTtl.toMillis();
+        this.clock = clock;
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * Adds the species of a search result from the API, species already in the catalog are updated
+     *
+     * @param search normalized search text
+     * @param plants the plants the API returned
+     */
+    public void addSearchResult(String search, List<Plant> plants) {
+        boolean changed;
+        lock.writeLock().lock();
+        try {
+            changed = false;
+            for (Plant plant : plants) {
+                changed |= addSpecies(plant);
+            }
+            if (plants.size() < API_PAGE_SIZE) {
+                List<String> plantIds = new ArrayList<>();
+                for (Plant plant : plants) {
+                    if (plant.getPlantId() != null) {
+                        plantIds.add(plant.getPlantId());
+                    }
+                }
+                completeSearches.put(search, new CompleteSearch(clock.getAsLong(), plantIds));
+                changed = true;
+            }
+            else {
+                changed |= completeSearches.remove(search) != null;
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        if (changed && file != null) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Gets the species the API returned for a search that got a complete result
+     *
+     * @param search normalized search text
+     * @return the species in the order the API returned them, null if the search has no complete result
+     * that has not expired
+     */
+    public List<Plant> getCompleteResult(String search) {
+        long oldest = clock.getAsLong() - completeSearchTtlMillis;
+        lock.readLock().lock();
+        try {
+            CompleteSearch completeSearch = completeSearches.get(search);
+            if (completeSearch == null || completeSearch.completed <= oldest) {
+                return null;
+            }
+            List<Plant> plants = new ArrayList<>();
+            for (String plantId : completeSearch.plantIds) {
+                Integer number = numbersByPlantId.get(plantId);
+                if (number != null) {
+                    plants.add(species.get(number));
+                }
+            }
+            return plants;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the species whose common or scientific name contains the search text
+     *
+     * @param search normalized search text
+     * @return matching species in the order they were added
+     */
+    public List<Plant> search(String search) {
+        lock.readLock().lock();
+        try {
+            List<Plant> matches = new ArrayList<>();
+            for (int number : matchingNumbers(search)) {
+                matches.add(species.get(number));
+            }
+            return matches;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the species closest to a search that may contain typos. Every word of the search must match a word
+     * of the species' names, either as part of it or within a few letters. Words of up to three letters must
+     * be spelled right, up to five letters may have one typo and longer words two.
+     *
+     * @param search normalized search text
+     * @param limit  max number of species to return
+     * @return matching species, the closest first
+     */
+    public List<Plant> fuzzySearch(String search, int limit) {
+        List<String> searchWords = words(search);
+        if (searchWords.isEmpty()) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> distances = null;
+            for (String searchWord : searchWords) {
+                Map<Integer, Integer> wordDistances = new HashMap<>();
+                for (int number : matchingNumbers(searchWord)) {
+                    wordDistances.put(number, 0);
+                }
+                int maxDistance = searchWord.length() <= 3 ? 0 : searchWord.length() <= 5 ? 1 : 2;
+                for (BkTree.Match match : wordTree.search(searchWord, maxDistance)) {
+                    Postings list = wordPostings.get(match.getWord());
+                    for (int i = 0; i < list.size; i++) {
+                        int number = list.numbers[i];
+                        if (searchTexts.get(number).contains(match.getWord())) {
+                            wordDistances.merge(number, match.getDistance(), Math::min);
+                        }
+                    }
+                }
+                if (distances == null) {
+                    distances = wordDistances;
+                }
+                else {
+                    distances.keySet().retainAll(wordDistances.keySet());
+                    for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+                        entry.setValue(entry.getValue() + wordDistances.get(entry.getKey()));
+                    }
+                }
+                if (distances.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+            List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(distances.entrySet());
+            ranked.sort(Map.Entry.<Integer, Integer>comparingByValue()
+                    .thenComparing(entry -> searchTexts.get(entry.getKey())));
+            List<Plant> matches = new ArrayList<>();
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                matches.add(species.get(ranked.get(i).getKey()));
+            }
+            return matches;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return all species in the catalog
+     */
+    public List<Plant> getAllSpecies() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(species);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return species.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called with a lock held
+     */
+    private List<Integer> matchingNumbers(String search) {
+        List<Integer> numbers = new ArrayList<>();
+        if (search.length() < 3) {
+            for (int number = 0; number < species.size(); number++) {
+                if (searchTexts.get(number).contains(search)) {
+                    numbers.add(number);
+                }
+            }
+            return numbers;
+        }
+        for (int number : candidates(search)) {
+            if (searchTexts.get(number).contains(search)) {
+                numbers.add(number);
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Intersects the postings of every trigram in the search, starting with the shortest list
+     */
+    private int[] candidates(String search) {
+        Set<String> trigrams = trigrams(search);
+        List<Postings> lists = new ArrayList<>(trigrams.size());
+        for (String trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists.get(0).numbers, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = lists.get(i).intersect(result);
+        }
+        return result;
+    }
+
+    /**
+     * Must be called with the write lock held
+     *
+     * @return true if the catalog changed
+     */
+    private boolean addSpecies(Plant plant) {
+        if (plant.getPlantId() == null) {
+            return false;
+        }
+        Plant entry = new Plant(plant.getPlantId(), plant.getCommonName(), plant.getScientificName(), plant.getImageURL());
+        String searchText = searchText(entry);
+        Integer number = numbersByPlantId.get(entry.getPlantId());
+        if (number != null) {
+            Plant existing = species.get(number);
+            if (searchTexts.get(number).equals(searchText) && String.valueOf(existing.getImageURL()).equals(String.valueOf(entry.getImageURL()))) {
+                return false;
+            }
+            // postings of old names are left behind, search checks every candidate against its current names
+            species.set(number, entry);
+            searchTexts.set(number, searchText);
+        }
+        else {
+            number = species.size();
+            species.add(entry);
+            searchTexts.add(searchText);
+            numbersByPlantId.put(entry.getPlantId(), number);
+        }
+        for (String trigram : trigrams(searchText)) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(number);
+        }
+        for (String word : words(searchText)) {
+            wordTree.add(word);
+            wordPostings.computeIfAbsent(word, key -> new Postings()).add(number);
+        }
+        return true;
+    }
+
+    /**
+     * The names are separated by a line break, which a normalized search never contains,
+     * so a match can't start in one name and end in the other
+     */
+    private static String searchText(Plant plant) {
+        String commonName = plant.getCommonName() != null ? plant.getCommonName() : "";
+        String scientificName = plant.getScientificName() != null ? plant.getScientificName() : "";
+        return (commonName + "\n" + scientificName).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private void load() {
+        try {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            JSONArray speciesJson = json.getJSONArray("species");
+            lock.writeLock().lock();
+            try {
+                for (int i = 0; i < speciesJson.length(); i++) {
+                    JSONObject plantJson = speciesJson.getJSONObject(i);
+                    addSpecies(new Plant(plantJson.getString("id"), plantJson.optString("commonName", ""),
+                            plantJson.optString("scientificName", ""), plantJson.optString("imageURL", null)));
+                }
+                // older files have searches without the species found, those are left out as expired
+                JSONObject searchesJson = json.optJSONObject("completeSearches");
+                if (searchesJson != null) {
+                    for (String search : searchesJson.keySet()) {
+                        JSONObject searchJson = searchesJson.optJSONObject(search);
+                        if (searchJson != null) {
+                            List<String> plantIds = new ArrayList<>();
+                            JSONArray plantIdsJson = searchJson.getJSONArray("ids");
+                            for (int i = 0; i < plantIdsJson.length(); i++) {
+                                plantIds.add(plantIdsJson.getString(i));
+                            }
+                            completeSearches.put(search, new CompleteSearch(searchJson.getLong("completed"), plantIds));
+                        }
+                    }
+                }
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("Loaded " + species.size() + " species into the catalog");
+        }
+        catch (NoSuchFileException e) {
+            // no catalog yet, it is created when the first search result arrives
+        }
+        catch (IOException | JSONException e) {
+            System.err.println("Could not load species catalog " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes changes that are waiting for the background save to the file now, for example before shutting down
+     */
+    public void flush() {
+        if (file != null && saveScheduled.getAndSet(false)) {
+            save();
+        }
+    }
+
+    /**
+     * Saves the catalog a while from now, changes made before then are saved together
+     */
+    private void scheduleSave() {
+        if (!saveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            if (saver == null) {
+                saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "species-catalog-saver");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        saver.schedule(this::flush, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the whole catalog to a temporary file and moves it in place. Expired complete searches are dropped.
+     */
+    private synchronized void save() {
+        JSONObject json = new JSONObject();
+        long oldest = clock.getAsLong() - completeSearchTtlMillis;
+        lock.writeLock().lock();
+        try {
+            completeSearches.values().removeIf(completeSearch -> completeSearch.completed <= oldest);
+            JSONArray speciesJson = new JSONArray();
+            for (Plant plant : species) {
+                JSONObject plantJson = new JSONObject();
+                plantJson.put("id", plant.getPlantId());
+                plantJson.put("commonName", plant.getCommonName());
+                plantJson.put("scientificName", plant.getScientificName());
+                plantJson.put("imageURL", plant.getImageURL());
+                speciesJson.put(plantJson);
+            }
+            json.put("species", speciesJson);
+            JSONObject searchesJson = new JSONObject();
+            for (Map.Entry<String, CompleteSearch> entry : completeSearches.entrySet()) {
+                JSONObject searchJson = new JSONObject();
+                searchJson.put("completed", entry.getValue().completed);
+                searchJson.put("ids", new JSONArray(entry.getValue().plantIds));
+                searchesJson.put(entry.getKey(), searchJson);
+            }
+            json.put("completeSearches", searchesJson);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        Path temporaryFile = null;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), "species-catalog", ".tmp");
+            Files.writeString(temporaryFile, json.toString(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Could not store species catalog " + file + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                }
+                catch (IOException ignored) {
+                    //nothing more to do
+                }
+            }
+        }
+    }
+
+    /**
+     * A search the API gave a complete result for, with the ids of the species in the order they were returned
+     */
+    private static class CompleteSearch {
+        private final long completed;
+        private final List<String> plantIds;
+
+        private CompleteSearch(long completed, List<String> plantIds) {
+            this.completed = completed;
+            this.plantIds = plantIds;
+        }
+    }
+
+    /**
+     * Sorted list of species numbers, kept in a growing int array to stay compact
+     */
+    private static class Postings {
+        private int[] numbers = new int[4];
+        private int size;
+
+        private void add(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            System.arraycopy(numbers, index, numbers, index + 1, size - index);
+            numbers[index] = number;
+            size++;
+        }
+
+        private int[] intersect(int[] sorted) {
+            int[] result = new int[Math.min(sorted.length, size)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < sorted.length && j < size) {
+                if (sorted[i] == numbers[j]) {
+                    result[count++] = sorted[i];
+                    i++;
+                    j++;
+                }
+                else if (sorted[i] < numbers[j]) {
+                    i++;
+                }
+                else {
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package se.myhappyplants.server.services;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Scales plant pictures down to the size the client shows them in, so the clients don't download and decode
+ * pictures that are many times bigger than their list rows.
+ * A picture is downloaded and scaled once per size, and the result is kept in a directory that is trimmed to
+ * maxDiskBytes, dropping the thumbnails that were used longest ago first. Only pictures from the allowed hosts
+ * are fetched, so the server can't be used to reach other addresses.
+ */
+public class ThumbnailService {
+
+    public static final int MIN_SIZE = 16;
+    public static final int MAX_SIZE = 512;
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Set<String> allowedHosts;
+    private final Function<String, CompletableFuture<byte[]>> download;
+    private final SingleFlight<String, byte[]> thumbnails = new SingleFlight<>();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+    private long diskBytes = -1;
+
+    /**
+     * Constructor that stores 100 MB of thumbnails in the thumbnails directory of -Dmyhappyplants.server.cacheDir
+     * and fetches pictures from the hosts in -Dmyhappyplants.thumbnail.hosts, by default perenual.com
+     */
+    public ThumbnailService() {
+        this(PlantApiService.defaultCacheDirectory().resolve("thumbnails"),
+                Long.getLong("myhappyplants.thumbnail.maxDiskBytes", 100L * 1024 * 1024),
+                Arrays.stream(System.getProperty("myhappyplants.thumbnail.hosts", "perenual.com").split(","))
+                        .map(String::trim)
+                        .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Constructor that downloads pictures over HTTP
+     *
+     * @param directory    directory for the thumbnails
+     * @param maxDiskBytes max number of bytes of thumbnails kept in the directory
+     * @param allowedHosts hosts pictures may be fetched from, subdomains included
+     */
+    public ThumbnailService(Path directory, long maxDiskBytes, Set<String> allowedHosts) {
+        this(directory, maxDiskBytes, allowedHosts, httpDownload());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory    directory for the thumbnails
+     * @param maxDiskBytes max number of bytes of thumbnails kept in the directory
+     * @param allowedHosts hosts pictures may be fetched from, subdomains included
+     * @param download     fetches the original picture from its address
+     */
+    public ThumbnailService(Path directory, long maxDiskBytes, Set<String> allowedHosts,
+                            Function<String, CompletableFuture<byte[]>> download) {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.allowedHosts = allowedHosts;
+        this.download = download;
+    }
+
+    /**
+     * Gets a thumbnail, from disk or by downloading and scaling the picture. Callers asking for the same
+     * thumbnail while it is being made share the download.
+     *
+     * @param url  address of the picture
+     * @param size max width and height in pixels, kept within MIN_SIZE and MAX_SIZE
+     * @return completes with the thumbnail as a JPEG, or a PNG if the picture is transparent
+     */
+    public CompletableFuture<byte[]> getThumbnailAsync(String url, int size) {
+        if (!isAllowed(url)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Pictures are not fetched from " + url));
+        }
+        int thumbnailSize = Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+        Path file = fileFor(url, thumbnailSize);
+        byte[] stored = readFromDisk(file);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            return CompletableFuture.completedFuture(stored);
+        }
+        return thumbnails.executeAsync(file.getFileName().toString(), () -> {
+            downloads.incrementAndGet();
+            return download.apply(url).thenApplyAsync(original -> {
+                try {
+                    byte[] thumbnail = scale(original, thumbnailSize);
+                    writeToDisk(file, thumbnail);
+                    return thumbnail;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        });
+    }
+
+    /**
+     * Gets a thumbnail and waits for it
+     *
+     * @param url  address of the picture
+     * @param size max width and height in pixels
+     * @return the thumbnail
+     */
+    public byte[] getThumbnail(String url, int size) {
+        return getThumbnailAsync(url, size).join();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getDownloads() {
+        return downloads.get();
+    }
+
+    public synchronized long getDiskBytes() {
+        if (diskBytes < 0) {
+            diskBytes = storedFiles().stream().mapToLong(file -> file.size).sum();
+        }
+        return diskBytes;
+    }
+
+    /**
+     * Scales a picture down so it fits in a square of the given size, keeping its proportions.
+     * Large pictures are halved in steps first, which looks much better than one big bilinear step.
+     *
+     * @param original the picture file
+     * @param size     max width and height in pixels
+     * @return the scaled picture as a JPEG, or a PNG if it is transparent
+     * @throws IOException if the picture could not be read
+     */
+    public static byte[] scale(byte[] original, int size) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(original));
+        if (image == null) {
+            throw new IOException("Unsupported picture format");
+        }
+        boolean transparent = image.getColorModel().hasAlpha();
+        double factor = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        int type = transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = image;
+        do {
+            int stepWidth = Math.max(width, scaled.getWidth() / 2);
+            int stepHeight = Math.max(height, scaled.getHeight() / 2);
+            BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(scaled, 0, 0, stepWidth, stepHeight, null);
+            graphics.dispose();
+            scaled = step;
+        } while (scaled.getWidth() != width || scaled.getHeight() != height);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(scaled, transparent ? "png" : "jpg", out);
+        return out.toByteArray();
+    }
+
+    private boolean isAllowed(String url) {
+        try {
+            URI uri = URI.create(url);
+            String host = uri.getHost();
+            if (host == null || !("https".equals(uri.getScheme()) || "http".equals(uri.getScheme()))) {
+                return false;
+            }
+            for (String allowedHost : allowedHosts) {
+                if (host.equals(allowedHost) || host.endsWith("." + allowedHost)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Files are named by the SHA-256 of the address and the size, so any address gives a safe file name
+     */
+    private Path fileFor(String url, int size) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest(url.getBytes(StandardCharsets.UTF_8))) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name + "-" + size);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is missing from the JVM", e);
+        }
+    }
+
+    /**
+     * Marks the file as used so it is trimmed last
+     */
+    private byte[] readFromDisk(Path file) {
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Could not read thumbnail " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and moves it in place, so a crash never leaves half a picture behind
+     */
+    private void writeToDisk(Path file, byte[] thumbnail) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, "thumbnail", ".tmp");
+            Files.write(temporaryFile, thumbnail);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not store thumbnail " + file + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    //nothing more to do
+                }
+            }
+            return;
+        }
+        addDiskBytes(thumbnail.length);
+    }
+
+    /**
+     * Trims the directory to three quarters of its limit when it is full, so it isn't trimmed on every write
+     */
+    private synchronized void addDiskBytes(long bytes) {
+        diskBytes = getDiskBytes() + bytes;
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        List<StoredFile> files = storedFiles();
+        files.sort(Comparator.comparing(file -> file.lastUsed));
+        diskBytes = files.stream().mapToLong(file -> file.size).sum();
+        for (StoredFile file : files) {
+            if (diskBytes <= maxDiskBytes * 3 / 4) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(file.path);
+                diskBytes -= file.size;
+            } catch (IOException e) {
+                System.err.println("Could not remove thumbnail " + file.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private List<StoredFile> storedFiles() {
+        List<StoredFile> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*-*")) {
+            for (Path path : stream) {
+                try {
+                    files.add(new StoredFile(path, Files.size(path), Files.getLastModifiedTime(path)));
+                } catch (NoSuchFileException e) {
+                    // removed while listing
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list thumbnails in " + directory + ": " + e.getMessage());
+        }
+        return files;
+    }
+
+    private static Function<String, CompletableFuture<byte[]>> httpDownload() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(3))
+                .build();
+        return url -> httpClient.sendAsync(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(10)).build(),
+                        HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new UncheckedIOException(new IOException("Picture " + url + " answered " + response.statusCode()));
+                    }
+                    return response.body();
+                });
+    }
+
+    private static class StoredFile {
+        private final Path path;
+        private final long size;
+        private final FileTime lastUsed;
+
+        private StoredFile(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
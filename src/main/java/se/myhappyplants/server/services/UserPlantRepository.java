@@ -1,5 +1,6 @@
 package se.myhappyplants.server.services;
 
+import se.myhappyplants.shared.BatchOperation;
 import se.myhappyplants.shared.Plant;
 import se.myhappyplants.shared.PlantDetails;
 import se.myhappyplants.shared.User;
@@ -9,6 +10,8 @@ import java.net.UnknownHostException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Class responsible for calling the database about a users library.
@@ -17,6 +20,14 @@ import java.util.ArrayList;
  */
 public class UserPlantRepository {
 
+    private static final int LIBRARY_FETCH_SIZE = 100;
+    private static final Map<BatchOperation.Type, String> BATCH_QUERIES = Map.of(
+            BatchOperation.Type.WATER, "UPDATE user_plants SET last_watered = ? WHERE user_id = ? AND nickname = ?;",
+            BatchOperation.Type.RENAME, "UPDATE user_plants SET nickname = ? WHERE user_id = ? AND nickname = ?;",
+            BatchOperation.Type.FREQUENCY, "UPDATE user_plants SET watering_frequency = ? WHERE user_id = ? AND nickname = ?;",
+            BatchOperation.Type.FAVORITE, "UPDATE user_plants SET is_favorite = ? WHERE user_id = ? AND nickname = ?;",
+            BatchOperation.Type.DELETE, "DELETE FROM user_plants WHERE user_id = ? AND nickname = ?;");
+
     private IQueryExecutor database;
 
     /**
@@ -100,8 +111,8 @@ public class UserPlantRepository {
         ArrayList<Plant> plantList = new ArrayList<>();
         String query = "SELECT id, nickname, plant_id, last_watered, image_url, watering_frequency, is_favorite FROM user_plants WHERE user_id = ?;";
         System.out.println("User: " + user.getUniqueId());
-        try (ResultSet resultSet = database.executeQuery(query, ps -> ps.setInt(1, user.getUniqueId()))) {
-            while (resultSet.next()) {
+        try {
+            plantList.addAll(database.query(query, ps -> ps.setInt(1, user.getUniqueId()), resultSet -> {
                 int databaseId = resultSet.getInt("id");
                 String nickname = resultSet.getString("nickname");
                 String plantId = resultSet.getString("plant_id");
@@ -110,8 +121,8 @@ public class UserPlantRepository {
                 int waterFrequency = resultSet.getInt("watering_frequency");
                 boolean isFavorite = resultSet.getBoolean("is_favorite");
                 System.out.println("Nickname: " + nickname + " PlantId: " + plantId + " Last watered: " + lastWatered + " ImageURL: " + imageURL);
-                plantList.add(new Plant(databaseId, nickname, plantId, lastWatered, waterFrequency, imageURL, isFavorite));
-            }
+                return new Plant(databaseId, nickname, plantId, lastWatered, waterFrequency, imageURL, isFavorite);
+            }, LIBRARY_FETCH_SIZE));
         } catch (SQLException exception) {
             System.out.println(exception.fillInStackTrace());
         }
@@ -126,8 +137,8 @@ public class UserPlantRepository {
     public ArrayList<Plant> getUserWishlist(User user) {
         ArrayList<Plant> plantList = new ArrayList<>();
         String query = "SELECT plant_id, added_date, common_name, scientific_name, family, light, water, description, image_url FROM user_wishlist WHERE user_id = ?;";
-        try (ResultSet resultSet = database.executeQuery(query, ps -> ps.setInt(1, user.getUniqueId()))) {
-            while (resultSet.next()) {
+        try {
+            plantList.addAll(database.query(query, ps -> ps.setInt(1, user.getUniqueId()), resultSet -> {
                 String plantId = resultSet.getString("plant_id");
                 Date addedDate = resultSet.getDate("added_date");
                 String commonName = resultSet.getString("common_name");
@@ -139,8 +150,8 @@ public class UserPlantRepository {
                 String imageURL = resultSet.getString("image_url");
                 System.out.println("PlantId: " + plantId + " Added date: " + addedDate);
 
-                plantList.add(new Plant(plantId, addedDate, commonName, scientificName, family, light, water, description, imageURL));
-            }
+                return new Plant(plantId, addedDate, commonName, scientificName, family, light, water, description, imageURL);
+            }, LIBRARY_FETCH_SIZE));
         } catch (SQLException exception) {
             System.out.println(exception.fillInStackTrace());
         }
@@ -156,17 +167,20 @@ public class UserPlantRepository {
     public Plant getPlant(User user, String nickname) {
         Plant plant = null;
         String query = "SELECT nickname, plant_id, last_watered, image_url, watering_frequency, is_favorite FROM user_plants WHERE user_id = ? AND nickname = ?;";
-        try (ResultSet resultSet = database.executeQuery(query, ps -> {
-            ps.setInt(1, user.getUniqueId());
-            ps.setString(2, nickname);
-        })) {
-            if (resultSet.next()) {
+        try {
+            List<Plant> plants = database.query(query, ps -> {
+                ps.setInt(1, user.getUniqueId());
+                ps.setString(2, nickname);
+            }, resultSet -> {
                 String plantId = resultSet.getString("plant_id");
                 Date lastWatered = resultSet.getDate("last_watered");
                 String imageURL = resultSet.getString("image_url");
                 int waterFrequency = resultSet.getInt("watering_frequency");
                 boolean isFavorite = resultSet.getBoolean("is_favorite");
-                plant = new Plant(nickname, plantId, lastWatered, waterFrequency, imageURL, isFavorite);
+                return new Plant(nickname, plantId, lastWatered, waterFrequency, imageURL, isFavorite);
+            });
+            if (!plants.isEmpty()) {
+                plant = plants.get(0);
             }
         } catch (SQLException sqlException) {
             System.out.println(sqlException.fillInStackTrace());
@@ -357,4 +371,94 @@ public class UserPlantRepository {
         System.out.println("returning favoriteChanged: " + favoriteChanged);
         return favoriteChanged;
     }
-}
\ No newline at end of file
+
+    /**
+     * Method that applies several changes to a user's plants in one transaction. Following changes of the
+     * same kind are sent to the database as one JDBC batch, and the changes are applied in the order given,
+     * so a change that comes after a rename finds the plant by its new nickname.
+     * A change that matches no plant is not applied, but doesn't stop the others. A rename that matches no
+     * plant while a plant already has the new nickname counts as applied, it is a rename sent again by a
+     * client that never got the answer to the first one.
+     *
+     * @param user       the user that owns the plants
+     * @param operations the changes
+     * @return one value per change, true if it was applied, all false if the transaction was rolled back
+     */
+    public boolean[] applyBatch(User user, List<BatchOperation> operations) {
+        boolean[] applied = new boolean[operations.size()];
+        try {
+            database.beginTransaction();
+            int start = 0;
+            while (start < operations.size()) {
+                BatchOperation.Type type = operations.get(start).getType();
+                int end = start;
+                List<IQueryExecutor.PreparedStatementSetter> setters = new ArrayList<>();
+                List<Integer> indexes = new ArrayList<>();
+                while (end < operations.size() && operations.get(end).getType() == type) {
+                    BatchOperation operation = operations.get(end);
+                    if (isComplete(operation)) {
+                        setters.add(ps -> setBatchValues(ps, user, operation));
+                        indexes.add(end);
+                    }
+                    end++;
+                }
+                if (!setters.isEmpty()) {
+                    int[] counts = database.executeBatch(BATCH_QUERIES.get(type), setters);
+                    for (int i = 0; i < counts.length; i++) {
+                        applied[indexes.get(i)] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+                        if (!applied[indexes.get(i)] && type == BatchOperation.Type.RENAME) {
+                            applied[indexes.get(i)] = hasPlant(user, operations.get(indexes.get(i)).getNewNickname());
+                        }
+                    }
+                }
+                start = end;
+            }
+            database.endTransaction();
+        } catch (SQLException sqlException) {
+            sqlException.printStackTrace();
+            applied = new boolean[operations.size()];
+            try {
+                database.rollbackTransaction();
+            } catch (SQLException rollbackException) {
+                rollbackException.printStackTrace();
+            }
+        }
+        return applied;
+    }
+
+    private boolean hasPlant(User user, String nickname) throws SQLException {
+        String query = "SELECT nickname FROM user_plants WHERE user_id = ? AND nickname = ?;";
+        return !database.query(query, ps -> {
+            ps.setInt(1, user.getUniqueId());
+            ps.setString(2, nickname);
+        }, resultSet -> resultSet.getString("nickname")).isEmpty();
+    }
+
+    /**
+     * @return false if the change lacks a value it needs, it is then left out
+     */
+    private static boolean isComplete(BatchOperation operation) {
+        if (operation.getNickname() == null) {
+            return false;
+        }
+        return switch (operation.getType()) {
+            case WATER -> operation.getDate() != null;
+            case RENAME -> operation.getNewNickname() != null;
+            case FREQUENCY, FAVORITE, DELETE -> true;
+        };
+    }
+
+    private static void setBatchValues(PreparedStatement ps, User user, BatchOperation operation) throws SQLException {
+        int index = 1;
+        switch (operation.getType()) {
+            case WATER -> ps.setDate(index++, Date.valueOf(operation.getDate()));
+            case RENAME -> ps.setString(index++, operation.getNewNickname());
+            case FREQUENCY -> ps.setInt(index++, operation.getWateringFrequency());
+            case FAVORITE -> ps.setBoolean(index++, operation.isFavorite());
+            case DELETE -> {
+            }
+        }
+        ps.setInt(index++, user.getUniqueId());
+        ps.setString(index, operation.getNickname());
+    }
+}
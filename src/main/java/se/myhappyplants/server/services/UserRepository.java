@@ -4,6 +4,7 @@ import org.mindrot.jbcrypt.BCrypt;
 import se.myhappyplants.shared.User;
 
 import java.sql.*;
+import java.util.List;
 
 /**
  * Class responsible for calling the database about users.
@@ -57,14 +58,13 @@ public class UserRepository {
         boolean isVerified = false;
         String query = "SELECT password FROM users WHERE email = ? OR username = ?;";
       
-        try (ResultSet resultSet = queryExecutor.executeQuery(query, ps -> {
-            ps.setString(1, email);
-            ps.setString(2, email);
-                }))
-        {
-            if (resultSet.next()) {
-                String hashedPassword = resultSet.getString(1);
-                isVerified = BCrypt.checkpw(password, hashedPassword);
+        try {
+            List<String> hashedPasswords = queryExecutor.query(query, ps -> {
+                ps.setString(1, email);
+                ps.setString(2, email);
+            }, resultSet -> resultSet.getString(1));
+            if (!hashedPasswords.isEmpty()) {
+                isVerified = BCrypt.checkpw(password, hashedPasswords.get(0));
             }
         } catch (SQLException sqlException) {
             sqlException.printStackTrace();
@@ -80,26 +80,14 @@ public class UserRepository {
      */
     public User getUserDetails(String emailOrUsername) {
         User user = null;
-        int uniqueID = 0;
-        String username = null;
-        String email = null;
-        boolean notificationActivated = false;
-        boolean funFactsActivated = false;
         String query = "SELECT id, username, email, notification_activated, fun_facts_activated FROM users WHERE email = ? OR username = ?;";
 
-        try (ResultSet resultSet = queryExecutor.executeQuery(query, ps -> {
-            ps.setString(1, emailOrUsername);
-            ps.setString(2, emailOrUsername);
-                }))
-        {
-            if (resultSet.next()) {
-                uniqueID = resultSet.getInt(1);
-                username = resultSet.getString(2);
-                email = resultSet.getString(3);
-                notificationActivated = resultSet.getBoolean(4);
-                funFactsActivated = resultSet.getBoolean(5);
-            }
-            user = new User(uniqueID, email, username, notificationActivated, funFactsActivated);
+        try {
+            List<User> users = queryExecutor.query(query, ps -> {
+                ps.setString(1, emailOrUsername);
+                ps.setString(2, emailOrUsername);
+            }, resultSet -> new User(resultSet.getInt(1), resultSet.getString(3), resultSet.getString(2), resultSet.getBoolean(4), resultSet.getBoolean(5)));
+            user = users.isEmpty() ? new User(0, null, null, false, false) : users.get(0);
         } catch (SQLException sqlException) {
             sqlException.printStackTrace();
         }
@@ -121,22 +109,19 @@ public class UserRepository {
             String querySelect = "SELECT id FROM users WHERE email = ?;";
             try {
                 queryExecutor.beginTransaction();
-                try (ResultSet resultSet = queryExecutor.executeQuery(querySelect, ps -> {
+                List<Integer> ids = queryExecutor.query(querySelect, ps -> {
                     ps.setString(1, email);
-                })) {
-                    if (resultSet.next()) {
-                        int id = resultSet.getInt(1);
-                        String queryDeleteUser = "DELETE FROM users WHERE id = ?;";
-                        queryExecutor.executeUpdate(queryDeleteUser, ps -> {
-                            ps.setInt(1, id);
-                        });
-
-                    } else {
-                        throw new SQLException("No user found with email: " + email);
-                    }
-                    queryExecutor.endTransaction();
-                    accountDeleted = true;
+                }, resultSet -> resultSet.getInt(1));
+                if (ids.isEmpty()) {
+                    throw new SQLException("No user found with email: " + email);
                 }
+                int id = ids.get(0);
+                String queryDeleteUser = "DELETE FROM users WHERE id = ?;";
+                queryExecutor.executeUpdate(queryDeleteUser, ps -> {
+                    ps.setInt(1, id);
+                });
+                queryExecutor.endTransaction();
+                accountDeleted = true;
             } catch (SQLException sqlException) {
                 try {
                     queryExecutor.rollbackTransaction();
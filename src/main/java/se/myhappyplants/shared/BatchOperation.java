@@ -0,0 +1,112 @@
+package se.myhappyplants.shared;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * One change to a plant in the user's library, sent together with other changes in a batch message.
+ * The plant is found by its nickname, like in the single change messages.
+ */
+public class BatchOperation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kinds of changes a batch can carry
+     */
+    public enum Type {
+        WATER,
+        RENAME,
+        FREQUENCY,
+        FAVORITE,
+        DELETE
+    }
+
+    private Type type;
+    private String nickname;
+    private LocalDate date;
+    private String newNickname;
+    private int wateringFrequency;
+    private boolean favorite;
+
+    private BatchOperation(Type type, String nickname) {
+        this.type = type;
+        this.nickname = nickname;
+    }
+
+    /**
+     * @param nickname nickname of the plant
+     * @param date     the date the plant was last watered
+     * @return a change of the last watered date
+     */
+    public static BatchOperation water(String nickname, LocalDate date) {
+        BatchOperation operation = new BatchOperation(Type.WATER, nickname);
+        operation.date = date;
+        return operation;
+    }
+
+    /**
+     * @param nickname    nickname of the plant
+     * @param newNickname new nickname to change to
+     * @return a change of the nickname
+     */
+    public static BatchOperation rename(String nickname, String newNickname) {
+        BatchOperation operation = new BatchOperation(Type.RENAME, nickname);
+        operation.newNickname = newNickname;
+        return operation;
+    }
+
+    /**
+     * @param nickname          nickname of the plant
+     * @param wateringFrequency new number of days between waterings
+     * @return a change of the watering frequency
+     */
+    public static BatchOperation wateringFrequency(String nickname, int wateringFrequency) {
+        BatchOperation operation = new BatchOperation(Type.FREQUENCY, nickname);
+        operation.wateringFrequency = wateringFrequency;
+        return operation;
+    }
+
+    /**
+     * @param nickname nickname of the plant
+     * @param favorite true to make the plant a favorite, false to remove it from the favorites
+     * @return a change of the favorite mark
+     */
+    public static BatchOperation favorite(String nickname, boolean favorite) {
+        BatchOperation operation = new BatchOperation(Type.FAVORITE, nickname);
+        operation.favorite = favorite;
+        return operation;
+    }
+
+    /**
+     * @param nickname nickname of the plant
+     * @return a removal of the plant from the library
+     */
+    public static BatchOperation delete(String nickname) {
+        return new BatchOperation(Type.DELETE, nickname);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getNewNickname() {
+        return newNickname;
+    }
+
+    public int getWateringFrequency() {
+        return wateringFrequency;
+    }
+
+    public boolean isFavorite() {
+        return favorite;
+    }
+}
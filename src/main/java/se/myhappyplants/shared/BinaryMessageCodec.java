@@ -0,0 +1,595 @@
+package se.myhappyplants.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written binary encoding of Message.
+ * Every object starts with a bit mask that tells which of its fields are set, and only those fields follow,
+ * so no class descriptors are sent and empty fields cost nothing. Numbers and lengths are variable-length
+ * integers and strings are UTF-8 prefixed with their length. Dates are sent as days since 1970-01-01.
+ * <p>
+ * Enums are sent as their ordinal, so new constants must be added last in MessageType, SortingOption
+ * and BatchOperation.Type.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final byte ID = 2;
+    private static final int VERSION = 1;
+
+    // fields of Message
+    private static final int NOTIFICATIONS = 1;
+    private static final int SUCCESS = 1 << 1;
+    private static final int MESSAGE_TEXT = 1 << 2;
+    private static final int USER = 1 << 3;
+    private static final int DATE = 1 << 4;
+    private static final int PLANT_ARRAY = 1 << 5;
+    private static final int PLANT = 1 << 6;
+    private static final int NEW_NICKNAME = 1 << 7;
+    private static final int NEW_WATERING_FREQUENCY = 1 << 8;
+    private static final int PLANT_DETAILS = 1 << 9;
+    private static final int SORTING_OPTION = 1 << 10;
+    private static final int OFFSET = 1 << 11;
+    private static final int LIMIT = 1 << 12;
+    private static final int TOTAL_RESULTS = 1 << 13;
+    private static final int SUGGESTIONS = 1 << 14;
+    private static final int IMAGE_SIZE = 1 << 15;
+    private static final int IMAGE_DATA = 1 << 16;
+    private static final int BATCH_OPERATIONS = 1 << 17;
+    private static final int BATCH_RESULTS = 1 << 18;
+    private static final int SORT_ONLY = 1 << 19;
+
+    // fields of Plant
+    private static final int PLANT_DATABASE_ID = 1;
+    private static final int PLANT_ID = 1 << 1;
+    private static final int PLANT_COMMON_NAME = 1 << 2;
+    private static final int PLANT_SCIENTIFIC_NAME = 1 << 3;
+    private static final int PLANT_IMAGE_URL = 1 << 4;
+    private static final int PLANT_NICKNAME = 1 << 5;
+    private static final int PLANT_WATERING_FREQUENCY = 1 << 6;
+    private static final int PLANT_LAST_WATERED = 1 << 7;
+    private static final int PLANT_DATE_ADDED = 1 << 8;
+    private static final int PLANT_FAVORITE = 1 << 9;
+    private static final int PLANT_FAMILY = 1 << 10;
+    private static final int PLANT_LIGHT = 1 << 11;
+    private static final int PLANT_WATER = 1 << 12;
+    private static final int PLANT_DESCRIPTION = 1 << 13;
+
+    // fields of User
+    private static final int USER_UNIQUE_ID = 1;
+    private static final int USER_EMAIL = 1 << 1;
+    private static final int USER_USERNAME = 1 << 2;
+    private static final int USER_PASSWORD = 1 << 3;
+    private static final int USER_AVATAR_URL = 1 << 4;
+    private static final int USER_NOTIFICATIONS = 1 << 5;
+    private static final int USER_FUN_FACTS = 1 << 6;
+
+    // fields of PlantDetails
+    private static final int DETAILS_FAMILY_NAME = 1;
+    private static final int DETAILS_SCIENTIFIC_NAME = 1 << 1;
+    private static final int DETAILS_DESCRIPTION = 1 << 2;
+    private static final int DETAILS_WATERING = 1 << 3;
+    private static final int DETAILS_SUNLIGHT = 1 << 4;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        writeMessage(out, message);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary message version: " + version);
+        }
+        try {
+            return readMessage(in);
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed binary message", e);
+        }
+    }
+
+    private void writeMessage(DataOutputStream out, Message message) throws IOException {
+        int fields = 0;
+        fields |= message.getNotifications() ? NOTIFICATIONS : 0;
+        fields |= message.isSuccess() ? SUCCESS : 0;
+        fields |= message.getMessageText() != null ? MESSAGE_TEXT : 0;
+        fields |= message.getUser() != null ? USER : 0;
+        fields |= message.getDate() != null ? DATE : 0;
+        fields |= message.getPlantArray() != null ? PLANT_ARRAY : 0;
+        fields |= message.getPlant() != null ? PLANT : 0;
+        fields |= message.getNewNickname() != null ? NEW_NICKNAME : 0;
+        fields |= message.getNewWateringFrequency() != 0 ? NEW_WATERING_FREQUENCY : 0;
+        fields |= message.getPlantDetails() != null ? PLANT_DETAILS : 0;
+        fields |= message.getSortingOption() != null ? SORTING_OPTION : 0;
+        fields |= message.getOffset() != 0 ? OFFSET : 0;
+        fields |= message.getLimit() != 0 ? LIMIT : 0;
+        fields |= message.getTotalResults() != 0 ? TOTAL_RESULTS : 0;
+        fields |= message.getSuggestions() != null ? SUGGESTIONS : 0;
+        fields |= message.getImageSize() != 0 ? IMAGE_SIZE : 0;
+        fields |= message.getImageData() != null ? IMAGE_DATA : 0;
+        fields |= message.getBatchOperations() != null ? BATCH_OPERATIONS : 0;
+        fields |= message.getBatchResults() != null ? BATCH_RESULTS : 0;
+        fields |= message.isSortOnly() ? SORT_ONLY : 0;
+
+        writeVarLong(out, message.getRequestId());
+        writeEnum(out, message.getMessageType());
+        writeVarInt(out, fields);
+        if ((fields & MESSAGE_TEXT) != 0) {
+            writeString(out, message.getMessageText());
+        }
+        if ((fields & USER) != 0) {
+            writeUser(out, message.getUser());
+        }
+        if ((fields & DATE) != 0) {
+            writeVarLong(out, message.getDate().toEpochDay());
+        }
+        if ((fields & PLANT_ARRAY) != 0) {
+            List<Plant> plants = message.getPlantArray();
+            writeVarInt(out, plants.size());
+            for (Plant plant : plants) {
+                writePlant(out, plant);
+            }
+        }
+        if ((fields & PLANT) != 0) {
+            writePlant(out, message.getPlant());
+        }
+        if ((fields & NEW_NICKNAME) != 0) {
+            writeString(out, message.getNewNickname());
+        }
+        if ((fields & NEW_WATERING_FREQUENCY) != 0) {
+            writeVarLong(out, message.getNewWateringFrequency());
+        }
+        if ((fields & PLANT_DETAILS) != 0) {
+            writePlantDetails(out, message.getPlantDetails());
+        }
+        if ((fields & SORTING_OPTION) != 0) {
+            writeEnum(out, message.getSortingOption());
+        }
+        if ((fields & OFFSET) != 0) {
+            writeVarLong(out, message.getOffset());
+        }
+        if ((fields & LIMIT) != 0) {
+            writeVarLong(out, message.getLimit());
+        }
+        if ((fields & TOTAL_RESULTS) != 0) {
+            writeVarLong(out, message.getTotalResults());
+        }
+        if ((fields & SUGGESTIONS) != 0) {
+            List<String> suggestions = message.getSuggestions();
+            writeVarInt(out, suggestions.size());
+            for (String suggestion : suggestions) {
+                writeString(out, suggestion);
+            }
+        }
+        if ((fields & IMAGE_SIZE) != 0) {
+            writeVarLong(out, message.getImageSize());
+        }
+        if ((fields & IMAGE_DATA) != 0) {
+            writeVarInt(out, message.getImageData().length);
+            out.write(message.getImageData());
+        }
+        if ((fields & BATCH_OPERATIONS) != 0) {
+            List<BatchOperation> operations = message.getBatchOperations();
+            writeVarInt(out, operations.size());
+            for (BatchOperation operation : operations) {
+                writeBatchOperation(out, operation);
+            }
+        }
+        if ((fields & BATCH_RESULTS) != 0) {
+            boolean[] results = message.getBatchResults();
+            writeVarInt(out, results.length);
+            for (boolean result : results) {
+                out.writeBoolean(result);
+            }
+        }
+    }
+
+    private Message readMessage(DataInputStream in) throws IOException {
+        Message message = new Message();
+        message.setRequestId(readVarLong(in));
+        message.setMessageType(readEnum(in, MessageType.values()));
+        int fields = readVarInt(in);
+        message.setNotifications((fields & NOTIFICATIONS) != 0);
+        message.setSuccess((fields & SUCCESS) != 0);
+        message.setSortOnly((fields & SORT_ONLY) != 0);
+        if ((fields & MESSAGE_TEXT) != 0) {
+            message.setMessageText(readString(in));
+        }
+        if ((fields & USER) != 0) {
+            message.setUser(readUser(in));
+        }
+        if ((fields & DATE) != 0) {
+            message.setDate(LocalDate.ofEpochDay(readVarLong(in)));
+        }
+        if ((fields & PLANT_ARRAY) != 0) {
+            int size = readLength(in);
+            List<Plant> plants = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                plants.add(readPlant(in));
+            }
+            message.setPlantArray(plants);
+        }
+        if ((fields & PLANT) != 0) {
+            message.setPlant(readPlant(in));
+        }
+        if ((fields & NEW_NICKNAME) != 0) {
+            message.setNewNickname(readString(in));
+        }
+        if ((fields & NEW_WATERING_FREQUENCY) != 0) {
+            message.setNewWateringFrequency((int) readVarLong(in));
+        }
+        if ((fields & PLANT_DETAILS) != 0) {
+            message.setPlantDetails(readPlantDetails(in));
+        }
+        if ((fields & SORTING_OPTION) != 0) {
+            message.setSortingOption(readEnum(in, SortingOption.values()));
+        }
+        if ((fields & OFFSET) != 0) {
+            message.setOffset((int) readVarLong(in));
+        }
+        if ((fields & LIMIT) != 0) {
+            message.setLimit((int) readVarLong(in));
+        }
+        if ((fields & TOTAL_RESULTS) != 0) {
+            message.setTotalResults((int) readVarLong(in));
+        }
+        if ((fields & SUGGESTIONS) != 0) {
+            int size = readLength(in);
+            List<String> suggestions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                suggestions.add(readString(in));
+            }
+            message.setSuggestions(suggestions);
+        }
+        if ((fields & IMAGE_SIZE) != 0) {
+            message.setImageSize((int) readVarLong(in));
+        }
+        if ((fields & IMAGE_DATA) != 0) {
+            byte[] imageData = new byte[readLength(in)];
+            in.readFully(imageData);
+            message.setImageData(imageData);
+        }
+        if ((fields & BATCH_OPERATIONS) != 0) {
+            int size = readLength(in);
+            List<BatchOperation> operations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                operations.add(readBatchOperation(in));
+            }
+            message.setBatchOperations(operations);
+        }
+        if ((fields & BATCH_RESULTS) != 0) {
+            boolean[] results = new boolean[readLength(in)];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = in.readBoolean();
+            }
+            message.setBatchResults(results);
+        }
+        return message;
+    }
+
+    private void writePlant(DataOutputStream out, Plant plant) throws IOException {
+        if (plant == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+        int fields = 0;
+        fields |= plant.getDatabaseId() != 0 ? PLANT_DATABASE_ID : 0;
+        fields |= plant.getPlantId() != null ? PLANT_ID : 0;
+        fields |= plant.getCommonName() != null ? PLANT_COMMON_NAME : 0;
+        fields |= plant.getScientificName() != null ? PLANT_SCIENTIFIC_NAME : 0;
+        fields |= plant.getImageURLOrNull() != null ? PLANT_IMAGE_URL : 0;
+        fields |= plant.getNickname() != null ? PLANT_NICKNAME : 0;
+        fields |= plant.getUsers_watering_frequency() != 0 ? PLANT_WATERING_FREQUENCY : 0;
+        fields |= plant.getLastWatered() != null ? PLANT_LAST_WATERED : 0;
+        fields |= plant.getDateAdded() != null ? PLANT_DATE_ADDED : 0;
+        fields |= plant.getIsFavorite() ? PLANT_FAVORITE : 0;
+        fields |= plant.getFamily() != null ? PLANT_FAMILY : 0;
+        fields |= plant.getLight() != null ? PLANT_LIGHT : 0;
+        fields |= plant.getWater() != null ? PLANT_WATER : 0;
+        fields |= plant.getDescription() != null ? PLANT_DESCRIPTION : 0;
+
+        writeVarInt(out, fields);
+        if ((fields & PLANT_DATABASE_ID) != 0) {
+            writeVarLong(out, plant.getDatabaseId());
+        }
+        if ((fields & PLANT_ID) != 0) {
+            writeString(out, plant.getPlantId());
+        }
+        if ((fields & PLANT_COMMON_NAME) != 0) {
+            writeString(out, plant.getCommonName());
+        }
+        if ((fields & PLANT_SCIENTIFIC_NAME) != 0) {
+            writeString(out, plant.getScientificName());
+        }
+        if ((fields & PLANT_IMAGE_URL) != 0) {
+            writeString(out, plant.getImageURLOrNull());
+        }
+        if ((fields & PLANT_NICKNAME) != 0) {
+            writeString(out, plant.getNickname());
+        }
+        if ((fields & PLANT_WATERING_FREQUENCY) != 0) {
+            writeVarLong(out, plant.getUsers_watering_frequency());
+        }
+        if ((fields & PLANT_LAST_WATERED) != 0) {
+            writeDate(out, plant.getLastWatered());
+        }
+        if ((fields & PLANT_DATE_ADDED) != 0) {
+            writeDate(out, plant.getDateAdded());
+        }
+        if ((fields & PLANT_FAMILY) != 0) {
+            writeString(out, plant.getFamily());
+        }
+        if ((fields & PLANT_LIGHT) != 0) {
+            writeString(out, plant.getLight());
+        }
+        if ((fields & PLANT_WATER) != 0) {
+            writeString(out, plant.getWater());
+        }
+        if ((fields & PLANT_DESCRIPTION) != 0) {
+            writeString(out, plant.getDescription());
+        }
+    }
+
+    private Plant readPlant(DataInputStream in) throws IOException {
+        int fields = readVarInt(in);
+        if (fields == -1) {
+            return null;
+        }
+        int databaseId = (fields & PLANT_DATABASE_ID) != 0 ? (int) readVarLong(in) : 0;
+        String plantId = (fields & PLANT_ID) != 0 ? readString(in) : null;
+        String commonName = (fields & PLANT_COMMON_NAME) != 0 ? readString(in) : null;
+        String scientificName = (fields & PLANT_SCIENTIFIC_NAME) != 0 ? readString(in) : null;
+        String imageURL = (fields & PLANT_IMAGE_URL) != 0 ? readString(in) : null;
+        String nickname = (fields & PLANT_NICKNAME) != 0 ? readString(in) : null;
+        int wateringFrequency = (fields & PLANT_WATERING_FREQUENCY) != 0 ? (int) readVarLong(in) : 0;
+        Date lastWatered = (fields & PLANT_LAST_WATERED) != 0 ? readDate(in) : null;
+        Date dateAdded = (fields & PLANT_DATE_ADDED) != 0 ? readDate(in) : null;
+        String family = (fields & PLANT_FAMILY) != 0 ? readString(in) : null;
+        String light = (fields & PLANT_LIGHT) != 0 ? readString(in) : null;
+        String water = (fields & PLANT_WATER) != 0 ? readString(in) : null;
+        String description = (fields & PLANT_DESCRIPTION) != 0 ? readString(in) : null;
+
+        Plant plant = new Plant(plantId, dateAdded, commonName, scientificName, family, light, water, description, imageURL);
+        plant.setDatabaseId(databaseId);
+        plant.setNickname(nickname);
+        plant.setUsers_watering_frequency(wateringFrequency);
+        plant.setLastWatered(lastWatered);
+        plant.setIsFavorite((fields & PLANT_FAVORITE) != 0);
+        return plant;
+    }
+
+    private void writeUser(DataOutputStream out, User user) throws IOException {
+        int fields = 0;
+        fields |= user.getUniqueId() != 0 ? USER_UNIQUE_ID : 0;
+        fields |= user.getEmail() != null ? USER_EMAIL : 0;
+        fields |= user.getUsername() != null ? USER_USERNAME : 0;
+        fields |= user.getPassword() != null ? USER_PASSWORD : 0;
+        fields |= user.getAvatarURL() != null ? USER_AVATAR_URL : 0;
+        fields |= user.areNotificationsActivated() ? USER_NOTIFICATIONS : 0;
+        fields |= user.getFunFactsActivated() ? USER_FUN_FACTS : 0;
+
+        writeVarInt(out, fields);
+        if ((fields & USER_UNIQUE_ID) != 0) {
+            writeVarLong(out, user.getUniqueId());
+        }
+        if ((fields & USER_EMAIL) != 0) {
+            writeString(out, user.getEmail());
+        }
+        if ((fields & USER_USERNAME) != 0) {
+            writeString(out, user.getUsername());
+        }
+        if ((fields & USER_PASSWORD) != 0) {
+            writeString(out, user.getPassword());
+        }
+        if ((fields & USER_AVATAR_URL) != 0) {
+            writeString(out, user.getAvatarURL());
+        }
+    }
+
+    private User readUser(DataInputStream in) throws IOException {
+        int fields = readVarInt(in);
+        int uniqueId = (fields & USER_UNIQUE_ID) != 0 ? (int) readVarLong(in) : 0;
+        String email = (fields & USER_EMAIL) != 0 ? readString(in) : null;
+        String username = (fields & USER_USERNAME) != 0 ? readString(in) : null;
+        User user = new User(uniqueId, email, username, (fields & USER_NOTIFICATIONS) != 0, (fields & USER_FUN_FACTS) != 0);
+        if ((fields & USER_PASSWORD) != 0) {
+            user.setPassword(readString(in));
+        }
+        if ((fields & USER_AVATAR_URL) != 0) {
+            user.setAvatarURL(readString(in));
+        }
+        return user;
+    }
+
+    private void writePlantDetails(DataOutputStream out, PlantDetails plantDetails) throws IOException {
+        int fields = 0;
+        fields |= plantDetails.getFamilyName() != null ? DETAILS_FAMILY_NAME : 0;
+        fields |= plantDetails.getScientificName() != null ? DETAILS_SCIENTIFIC_NAME : 0;
+        fields |= plantDetails.getDescription() != null ? DETAILS_DESCRIPTION : 0;
+        fields |= plantDetails.getRecommended_watering_frequency() != null ? DETAILS_WATERING : 0;
+        fields |= plantDetails.getSunlight() != null ? DETAILS_SUNLIGHT : 0;
+
+        writeVarInt(out, fields);
+        if ((fields & DETAILS_FAMILY_NAME) != 0) {
+            writeString(out, plantDetails.getFamilyName());
+        }
+        if ((fields & DETAILS_SCIENTIFIC_NAME) != 0) {
+            writeString(out, plantDetails.getScientificName());
+        }
+        if ((fields & DETAILS_DESCRIPTION) != 0) {
+            writeString(out, plantDetails.getDescription());
+        }
+        if ((fields & DETAILS_WATERING) != 0) {
+            writeString(out, plantDetails.getRecommended_watering_frequency());
+        }
+        if ((fields & DETAILS_SUNLIGHT) != 0) {
+            List<String> sunlight = plantDetails.getSunlight();
+            writeVarInt(out, sunlight.size());
+            for (String light : sunlight) {
+                writeString(out, light);
+            }
+        }
+    }
+
+    private PlantDetails readPlantDetails(DataInputStream in) throws IOException {
+        int fields = readVarInt(in);
+        String familyName = (fields & DETAILS_FAMILY_NAME) != 0 ? readString(in) : null;
+        String scientificName = (fields & DETAILS_SCIENTIFIC_NAME) != 0 ? readString(in) : null;
+        String description = (fields & DETAILS_DESCRIPTION) != 0 ? readString(in) : null;
+        String watering = (fields & DETAILS_WATERING) != 0 ? readString(in) : null;
+        List<String> sunlight = null;
+        if ((fields & DETAILS_SUNLIGHT) != 0) {
+            int size = readLength(in);
+            sunlight = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                sunlight.add(readString(in));
+            }
+        }
+        return new PlantDetails(familyName, description, watering, sunlight, scientificName);
+    }
+
+    /**
+     * Writes the type and nickname of the operation followed by the one value its type uses
+     */
+    private void writeBatchOperation(DataOutputStream out, BatchOperation operation) throws IOException {
+        writeEnum(out, operation.getType());
+        writeString(out, operation.getNickname());
+        switch (operation.getType()) {
+            case WATER -> writeVarLong(out, operation.getDate().toEpochDay());
+            case RENAME -> writeString(out, operation.getNewNickname());
+            case FREQUENCY -> writeVarLong(out, operation.getWateringFrequency());
+            case FAVORITE -> out.writeBoolean(operation.isFavorite());
+            case DELETE -> {
+            }
+        }
+    }
+
+    private BatchOperation readBatchOperation(DataInputStream in) throws IOException {
+        BatchOperation.Type type = readEnum(in, BatchOperation.Type.values());
+        if (type == null) {
+            throw new IOException("Batch operation without a type");
+        }
+        String nickname = readString(in);
+        return switch (type) {
+            case WATER -> BatchOperation.water(nickname, LocalDate.ofEpochDay(readVarLong(in)));
+            case RENAME -> BatchOperation.rename(nickname, readString(in));
+            case FREQUENCY -> BatchOperation.wateringFrequency(nickname, (int) readVarLong(in));
+            case FAVORITE -> BatchOperation.favorite(nickname, in.readBoolean());
+            case DELETE -> BatchOperation.delete(nickname);
+        };
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeVarInt(out, value == null ? 0 : value.ordinal() + 1);
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, E[] values) throws IOException {
+        int index = readVarInt(in);
+        if (index == 0) {
+            return null;
+        }
+        if (index < 0 || index > values.length) {
+            throw new IOException("Unknown enum constant: " + index);
+        }
+        return values[index - 1];
+    }
+
+    private static void writeDate(DataOutputStream out, Date date) throws IOException {
+        writeVarLong(out, date.toLocalDate().toEpochDay());
+    }
+
+    private static Date readDate(DataInputStream in) throws IOException {
+        return Date.valueOf(LocalDate.ofEpochDay(readVarLong(in)));
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by the bytes, null is written as length -1
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return length;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * Writes a zigzag encoded variable-length integer, 7 bits per byte, so small values of either sign take one byte
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Message ended in the middle of a number");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Variable-length number is too long");
+    }
+}
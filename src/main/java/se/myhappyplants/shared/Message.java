@@ -26,8 +26,24 @@ public class Message implements Serializable {
     private int newWateringFrequency;
     private PlantDetails plantDetails;
     private SortingOption sortingOption;
+    private long requestId;
+    private int offset;
+    private int limit;
+    private int totalResults;
+    private List<String> suggestions;
+    private int imageSize;
+    private byte[] imageData;
+    private List<BatchOperation> batchOperations;
+    private boolean[] batchResults;
+    private boolean sortOnly;
 
 
+    /**
+     * Creates an empty message, used by BinaryMessageCodec which sets the fields afterwards
+     */
+    Message() {
+    }
+
     /**
      * create a message that can be used to send a boolean value
      *
@@ -166,6 +182,95 @@ public class Message implements Serializable {
         this.sortingOption = sortingOption;
     }
 
+    /**
+     * Creates a message which can be used to ask for
+     * one page of search results
+     *
+     * @param messageType
+     * @param messageText
+     * @param sortingOption
+     * @param offset        index of the first result to send
+     * @param limit         max number of results to send, 0 for all
+     */
+    public Message(MessageType messageType, String messageText, SortingOption sortingOption, int offset, int limit) {
+        this(messageType, messageText, sortingOption);
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Creates a message which can be used to ask for
+     * one page of search results
+     *
+     * @param messageType
+     * @param messageText
+     * @param sortingOption
+     * @param offset        index of the first result to send
+     * @param limit         max number of results to send, 0 for all
+     * @param sortOnly      true if the search was already made and is only sorted again
+     */
+    public Message(MessageType messageType, String messageText, SortingOption sortingOption, int offset, int limit, boolean sortOnly) {
+        this(messageType, messageText, sortingOption, offset, limit);
+        this.sortOnly = sortOnly;
+    }
+
+    /**
+     * Creates a message that can be used to send
+     * one page of an array of plants
+     *
+     * @param plantArray   the plants of the page
+     * @param offset       index of the first plant of the page among all results
+     * @param totalResults number of results on all pages
+     * @param success
+     */
+    public Message(List<Plant> plantArray, int offset, int totalResults, boolean success) {
+        this(plantArray, success);
+        this.offset = offset;
+        this.totalResults = totalResults;
+    }
+
+    /**
+     * Creates a message that can be used to send
+     * search suggestions
+     *
+     * @param messageType
+     * @param suggestions
+     * @param success
+     */
+    public Message(MessageType messageType, List<String> suggestions, boolean success) {
+        this.messageType = messageType;
+        this.suggestions = suggestions;
+        this.success = success;
+    }
+
+    /**
+     * Creates a message that can be used to ask for
+     * a picture scaled down to a size
+     *
+     * @param messageType
+     * @param imageURL    address of the picture
+     * @param imageSize   max width and height in pixels
+     */
+    public Message(MessageType messageType, String imageURL, int imageSize) {
+        this.messageType = messageType;
+        this.messageText = imageURL;
+        this.imageSize = imageSize;
+    }
+
+    /**
+     * Creates a message that can be used to send
+     * an encoded picture
+     *
+     * @param messageType
+     * @param imageData   the picture file
+     * @param success
+     */
+    public Message(MessageType messageType, byte[] imageData, boolean success) {
+        this.messageType = messageType;
+        this.imageData = imageData;
+        this.success = success;
+    }
+
     /**
      * Creates a message which can be used to send
      * a user and a boolean value
@@ -190,6 +295,32 @@ public class Message implements Serializable {
         this.success = success;
     }
 
+    /**
+     * Creates a message that can be used to send
+     * several changes to a user's plants at once
+     *
+     * @param messageType
+     * @param user
+     * @param batchOperations the changes, in the order they are applied
+     */
+    public Message(MessageType messageType, User user, List<BatchOperation> batchOperations) {
+        this.messageType = messageType;
+        this.user = user;
+        this.batchOperations = batchOperations;
+    }
+
+    /**
+     * Creates a message that can be used to send
+     * the outcome of each change in a batch
+     *
+     * @param batchResults true for each change that was applied
+     * @param success      true if the batch was saved
+     */
+    public Message(boolean[] batchResults, boolean success) {
+        this.batchResults = batchResults;
+        this.success = success;
+    }
+
     public String getNewNickname() {
         return newNickname;
     }
@@ -237,4 +368,157 @@ public class Message implements Serializable {
     public PlantDetails getPlantDetails() {
         return plantDetails;
     }
+
+    /**
+     * Id that pairs a response with its request when several requests share one connection
+     *
+     * @return the id, 0 if the message was not sent over a shared connection
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return index of the first result asked for or sent
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return max number of results asked for, 0 for all
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return true if a search request only sorts a search that was already made
+     */
+    public boolean isSortOnly() {
+        return sortOnly;
+    }
+
+    /**
+     * @return number of results on all pages, set in paged search responses
+     */
+    public int getTotalResults() {
+        return totalResults;
+    }
+
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+
+    /**
+     * @return max width and height in pixels of a picture asked for
+     */
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    public byte[] getImageData() {
+        return imageData;
+    }
+
+    public List<BatchOperation> getBatchOperations() {
+        return batchOperations;
+    }
+
+    /**
+     * @return one value per change in the batch request, true if that change was applied
+     */
+    public boolean[] getBatchResults() {
+        return batchResults;
+    }
+
+    // setters used by BinaryMessageCodec when decoding
+
+    void setMessageType(MessageType messageType) {
+        this.messageType = messageType;
+    }
+
+    void setNotifications(boolean notifications) {
+        this.notifications = notifications;
+    }
+
+    void setMessageText(String messageText) {
+        this.messageText = messageText;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+    }
+
+    void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    void setPlantArray(List<Plant> plantArray) {
+        this.plantArray = plantArray;
+    }
+
+    void setPlant(Plant plant) {
+        this.plant = plant;
+    }
+
+    void setNewNickname(String newNickname) {
+        this.newNickname = newNickname;
+    }
+
+    void setNewWateringFrequency(int newWateringFrequency) {
+        this.newWateringFrequency = newWateringFrequency;
+    }
+
+    void setPlantDetails(PlantDetails plantDetails) {
+        this.plantDetails = plantDetails;
+    }
+
+    void setSortingOption(SortingOption sortingOption) {
+        this.sortingOption = sortingOption;
+    }
+
+    void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    void setTotalResults(int totalResults) {
+        this.totalResults = totalResults;
+    }
+
+    void setSuggestions(List<String> suggestions) {
+        this.suggestions = suggestions;
+    }
+
+    void setImageSize(int imageSize) {
+        this.imageSize = imageSize;
+    }
+
+    void setImageData(byte[] imageData) {
+        this.imageData = imageData;
+    }
+
+    void setBatchOperations(List<BatchOperation> batchOperations) {
+        this.batchOperations = batchOperations;
+    }
+
+    void setBatchResults(boolean[] batchResults) {
+        this.batchResults = batchResults;
+    }
+
+    void setSortOnly(boolean sortOnly) {
+        this.sortOnly = sortOnly;
+    }
 }
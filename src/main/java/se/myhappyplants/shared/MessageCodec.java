@@ -0,0 +1,33 @@
+package se.myhappyplants.shared;
+
+import java.io.IOException;
+
+/**
+ * Turns a Message into the payload of a frame and back.
+ * The client and server agree on a codec with a handshake, see MessageFrames.
+ */
+public interface MessageCodec {
+
+    /**
+     * @return the id that identifies the codec in the handshake
+     */
+    byte getId();
+
+    /**
+     * Encodes a message
+     *
+     * @param message message to encode
+     * @return the encoded message
+     * @throws IOException if the message could not be encoded
+     */
+    byte[] encode(Message message) throws IOException;
+
+    /**
+     * Decodes a message
+     *
+     * @param payload bytes received in a frame
+     * @return the decoded message
+     * @throws IOException if the payload is not a valid message
+     */
+    Message decode(byte[] payload) throws IOException;
+}
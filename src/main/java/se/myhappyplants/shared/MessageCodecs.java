@@ -0,0 +1,43 @@
+package se.myhappyplants.shared;
+
+/**
+ * The codecs that client and server can agree on
+ */
+public final class MessageCodecs {
+
+    public static final MessageCodec JAVA_SERIALIZATION = new JavaSerializationCodec();
+    public static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * @param id id sent in the handshake
+     * @return the codec with the id, or null if it is not known
+     */
+    public static MessageCodec forId(byte id) {
+        if (id == JavaSerializationCodec.ID) {
+            return JAVA_SERIALIZATION;
+        }
+        if (id == BinaryMessageCodec.ID) {
+            return BINARY;
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a codec by the name used in system properties
+     *
+     * @param name "binary" or "java"
+     * @return the codec, or null if the name is null or unknown
+     */
+    public static MessageCodec fromName(String name) {
+        if ("binary".equalsIgnoreCase(name)) {
+            return BINARY;
+        }
+        if ("java".equalsIgnoreCase(name)) {
+            return JAVA_SERIALIZATION;
+        }
+        return null;
+    }
+}
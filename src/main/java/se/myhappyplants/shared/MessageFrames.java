@@ -0,0 +1,187 @@
+package se.myhappyplants.shared;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Helper class for sending messages as length-prefixed frames.
+ * Each frame is a 4 byte big-endian length followed by that many bytes of payload,
+ * which makes it possible for a non-blocking reader to know when a whole Message has arrived.
+ * <p>
+ * A client that wants another codec than Java serialization starts the connection with a handshake:
+ * the bytes 'M', 'H', 'P' and the id of the codec. The server answers with the same magic and the id of
+ * the codec it will use, after which both sides send frames encoded with that codec. The handshake can
+ * not be mistaken for a legacy connection, which starts with a Java stream header (0xACED) or a frame
+ * length (first byte 0).
+ */
+public final class MessageFrames {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    public static final int HANDSHAKE_SIZE = 4;
+    private static final byte[] HANDSHAKE_MAGIC = {'M', 'H', 'P'};
+
+    private MessageFrames() {
+    }
+
+    /**
+     * Serializes a message into the payload of a frame
+     *
+     * @param message message to serialize
+     * @return the serialized message
+     * @throws IOException if the message could not be serialized
+     */
+    public static byte[] toBytes(Message message) throws IOException {
+        return MessageCodecs.JAVA_SERIALIZATION.encode(message);
+    }
+
+    /**
+     * Deserializes the payload of a frame into a message
+     *
+     * @param payload bytes received in a frame
+     * @return the deserialized message
+     * @throws IOException if the payload is not a valid message
+     */
+    public static Message fromBytes(byte[] payload) throws IOException {
+        return MessageCodecs.JAVA_SERIALIZATION.decode(payload);
+    }
+
+    /**
+     * Writes a message as one frame to a stream
+     *
+     * @param out     stream to write to
+     * @param message message to write
+     * @throws IOException if the stream fails
+     */
+    public static void writeFrame(DataOutputStream out, Message message) throws IOException {
+        writeFrame(out, message, MessageCodecs.JAVA_SERIALIZATION);
+    }
+
+    /**
+     * Writes a message as one frame to a stream
+     *
+     * @param out     stream to write to
+     * @param message message to write
+     * @param codec   codec that encodes the message
+     * @throws IOException if the stream fails
+     */
+    public static void writeFrame(DataOutputStream out, Message message, MessageCodec codec) throws IOException {
+        byte[] payload = codec.encode(message);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Reads one frame from a stream, blocking until the whole frame has arrived
+     *
+     * @param in stream to read from
+     * @return the message in the frame
+     * @throws IOException if the stream fails or the frame is malformed
+     */
+    public static Message readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, MessageCodecs.JAVA_SERIALIZATION);
+    }
+
+    /**
+     * Reads one frame from a stream, blocking until the whole frame has arrived
+     *
+     * @param in    stream to read from
+     * @param codec codec that decodes the message
+     * @return the message in the frame
+     * @throws IOException if the stream fails or the frame is malformed
+     */
+    public static Message readFrame(DataInputStream in, MessageCodec codec) throws IOException {
+        int length = in.readInt();
+        checkFrameLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return codec.decode(payload);
+    }
+
+    /**
+     * Validates a frame length read from the wire
+     *
+     * @param length the length from the frame header
+     * @throws IOException if the length is negative or too large
+     */
+    public static void checkFrameLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+    }
+
+    /**
+     * @param codec codec to ask for or agree to
+     * @return the handshake bytes for the codec
+     */
+    public static byte[] handshake(MessageCodec codec) {
+        return new byte[]{HANDSHAKE_MAGIC[0], HANDSHAKE_MAGIC[1], HANDSHAKE_MAGIC[2], codec.getId()};
+    }
+
+    /**
+     * @param head the first bytes received on a connection
+     * @return true if they start with the handshake magic
+     */
+    public static boolean isHandshake(byte[] head) {
+        return head.length >= HANDSHAKE_SIZE
+                && head[0] == HANDSHAKE_MAGIC[0] && head[1] == HANDSHAKE_MAGIC[1] && head[2] == HANDSHAKE_MAGIC[2];
+    }
+
+    /**
+     * Picks the codec the server uses for a handshake, Java serialization if the asked for codec is not known
+     *
+     * @param head handshake received from the client
+     * @return the codec to use
+     */
+    public static MessageCodec agreeOnCodec(byte[] head) {
+        MessageCodec codec = MessageCodecs.forId(head[3]);
+        return codec != null ? codec : MessageCodecs.JAVA_SERIALIZATION;
+    }
+
+    /**
+     * Client side of the handshake, asks for a codec and waits for the server's answer
+     *
+     * @param out   stream to the server
+     * @param in    stream from the server
+     * @param codec codec the client wants
+     * @return the codec the server agreed to
+     * @throws IOException if the server does not answer with a valid handshake
+     */
+    public static MessageCodec requestCodec(DataOutputStream out, DataInputStream in, MessageCodec codec) throws IOException {
+        out.write(handshake(codec));
+        out.flush();
+        byte[] answer = new byte[HANDSHAKE_SIZE];
+        in.readFully(answer);
+        MessageCodec agreed = isHandshake(answer) ? MessageCodecs.forId(answer[3]) : null;
+        if (agreed == null) {
+            throw new IOException("Server did not agree on a codec");
+        }
+        return agreed;
+    }
+
+    /**
+     * Server side of the handshake for blocking connections. Looks at the first bytes without consuming them
+     * unless they are a handshake, in which case the answer is sent.
+     *
+     * @param in  stream from the client, must support mark and reset
+     * @param out stream to the client
+     * @return the agreed codec, or null if the client did not start with a handshake
+     * @throws IOException if the stream fails
+     */
+    public static MessageCodec acceptCodec(InputStream in, OutputStream out) throws IOException {
+        in.mark(HANDSHAKE_SIZE);
+        byte[] head = in.readNBytes(HANDSHAKE_SIZE);
+        if (!isHandshake(head)) {
+            in.reset();
+            return null;
+        }
+        MessageCodec codec = agreeOnCodec(head);
+        out.write(handshake(codec));
+        out.flush();
+        return codec;
+    }
+}
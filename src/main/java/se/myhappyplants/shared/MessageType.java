@@ -24,5 +24,8 @@ public enum MessageType {
     savePlantWishlist,
     removePlantWishlist,
     search,
-    updateIsFavorite
+    updateIsFavorite,
+    autocomplete,
+    getThumbnail,
+    batch
 }
@@ -257,6 +257,36 @@ public class Plant implements Serializable {
         return databaseId;
     }
 
+    public String getFamily() {
+        return family;
+    }
+
+    public String getLight() {
+        return light;
+    }
+
+    public String getWater() {
+        return water;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    // used by BinaryMessageCodec, which must send the fields exactly as they are
+
+    String getImageURLOrNull() {
+        return imageURL;
+    }
+
+    void setDatabaseId(int databaseId) {
+        this.databaseId = databaseId;
+    }
+
+    void setLastWatered(Date lastWatered) {
+        this.lastWatered = lastWatered;
+    }
+
     @Override
     public String toString() {
         return String.format("Common name: %s \tScientific name: %s \tFamily: %s \tLight: %s \tWater: %s \tDescription: %s \tNickname: %s \tUsers watering frequency: %d \tLast watered: %s \tDate added: %s \tIs favorite: %b \tDatabase ID: %d",
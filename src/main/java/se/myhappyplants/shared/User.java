@@ -109,6 +109,15 @@ public class User implements Serializable {
         this.avatarURL = new File(pathToImg).toURI().toString();
     }
 
+    /**
+     * Sets the avatar URL as it is, used by BinaryMessageCodec
+     *
+     * @param avatarURL URL of the avatar image
+     */
+    void setAvatarURL(String avatarURL) {
+        this.avatarURL = avatarURL;
+    }
+
     public boolean getFunFactsActivated() {
         return funFactsActivated;
     }
@@ -15,6 +15,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -435,6 +436,7 @@ public class ClientServerTests {
                 "MockedPlantus Scientificus"
         );
         doReturn(mockPlantDetails).when(plantApiServiceSpy).getPlantDetails(any(Plant.class));
+        doReturn(CompletableFuture.completedFuture(mockPlantDetails)).when(plantApiServiceSpy).getPlantDetailsAsync(any(Plant.class));
 
         Message getMorePlantInfoRequest = new Message(MessageType.getMorePlantInfo, plant);
         Message getMorePlantInfoResponse = clientConnection.makeRequest(getMorePlantInfoRequest);
@@ -460,6 +462,7 @@ public class ClientServerTests {
                 new Plant("2", "Monstera", "Monstera adansonii", "Monstera2.jpg")
         ));
         doReturn(mockPlants).when(plantApiServiceSpy).getPlants(query, SortingOption.COMMON_NAME);
+        doReturn(CompletableFuture.completedFuture(mockPlants)).when(plantApiServiceSpy).getPlantsAsync(query, SortingOption.COMMON_NAME);
 
         Message searchRequest = new Message(MessageType.search, query, SortingOption.COMMON_NAME);
         Message searchResponse = clientConnection.makeRequest(searchRequest);
@@ -3,6 +3,8 @@ package se.myhappyplants.server.services;
 import static se.myhappyplants.server.PasswordsAndKeys.*;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * En implementering av IQueryExecutor som använder en H2 in-memory-databas.
@@ -30,10 +32,37 @@ public class DBQueryExecutor implements IQueryExecutor {
     @Override
     public ResultSet executeQuery(String query, PreparedStatementSetter setter) throws SQLException {
         PreparedStatement stmt = connection.prepareStatement(query);
+        stmt.closeOnCompletion();
         setter.setValues(stmt);
         return stmt.executeQuery();
     }
 
+    @Override
+    public <T> List<T> query(String query, PreparedStatementSetter setter, RowMapper<T> rowMapper, int fetchSize) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setFetchSize(fetchSize);
+            setter.setValues(stmt);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(rowMapper.mapRow(resultSet));
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int[] executeBatch(String query, List<PreparedStatementSetter> setters) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            for (PreparedStatementSetter setter : setters) {
+                setter.setValues(stmt);
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        }
+    }
+
     @Override
     public void beginTransaction() throws SQLException {
         connection.setAutoCommit(false);
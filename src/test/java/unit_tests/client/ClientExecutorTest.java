@@ -0,0 +1,74 @@
+package unit_tests.client;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.client.model.ClientExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientExecutorTest {
+
+    @Test
+    public void limitsThreadsAndWaitingTasks() throws Exception {
+        ClientExecutor executor = new ClientExecutor(2, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(executor.run(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+            }));
+        }
+        Thread.sleep(100);
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(3, executor.getQueued());
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> futures.get(5).get());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+        release.countDown();
+        for (CompletableFuture<Void> future : futures.subList(0, 5)) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void skipsCancelledTasksAndPassesOnErrors() throws Exception {
+        ClientExecutor executor = new ClientExecutor(1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Void> blocking = executor.run(() -> await(release));
+        CompletableFuture<Integer> stale = executor.submit(calls::incrementAndGet);
+        CompletableFuture<Integer> failing = executor.submit(() -> {
+            throw new IOException("server is down");
+        });
+        stale.cancel(false);
+
+        release.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(stale.isCancelled());
+        assertEquals(0, calls.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package unit_tests.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.myhappyplants.client.model.ImageCache;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void storesDownloadedFileOnDisk() throws IOException {
+        Path source = directory.resolve("picture.png");
+        Files.write(source, new byte[]{1, 2, 3});
+        String url = source.toUri().toString();
+        ImageCache cache = new ImageCache(directory.resolve("cache"), 1024);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getImageBytes(url));
+        assertEquals(1, cache.getDownloads());
+
+        Files.delete(source);
+        ImageCache restarted = new ImageCache(directory.resolve("cache"), 1024);
+        assertArrayEquals(new byte[]{1, 2, 3}, restarted.getImageBytes(url));
+        assertEquals(0, restarted.getDownloads());
+        assertEquals(1, restarted.getDiskHits());
+    }
+
+    @Test
+    public void namesFilesBySha256OfAddress() {
+        ImageCache cache = new ImageCache(directory, 1024);
+        Path file = cache.fileFor("https://perenual.com/storage/species_image/1_abies_alba/og/1536px.jpg");
+        assertEquals(directory, file.getParent());
+        assertTrue(file.getFileName().toString().matches("[0-9a-f]{64}"));
+        assertEquals(file, cache.fileFor("https://perenual.com/storage/species_image/1_abies_alba/og/1536px.jpg"));
+        assertNotEquals(file, cache.fileFor("https://perenual.com/storage/species_image/2_abies_alba/og/1536px.jpg"));
+    }
+
+    @Test
+    public void failedDownloadIsNotStored() {
+        ImageCache cache = new ImageCache(directory.resolve("cache"), 1024);
+        String url = directory.resolve("missing.png").toUri().toString();
+        assertThrows(IOException.class, () -> cache.getImageBytes(url));
+        assertFalse(Files.exists(cache.fileFor(url)));
+    }
+
+    @Test
+    public void trimsTheFilesUsedLongestAgo() throws IOException {
+        ImageCache cache = new ImageCache(directory.resolve("cache"), 1024, 11);
+        String first = picture("first.png");
+        String second = picture("second.png");
+        String third = picture("third.png");
+        cache.getImageBytes(first);
+        cache.getImageBytes(second);
+        Files.setLastModifiedTime(cache.fileFor(first), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cache.fileFor(second), FileTime.fromMillis(2000));
+        cache.getImageBytes(first);
+
+        cache.getImageBytes(third);
+        assertTrue(Files.exists(cache.fileFor(first)));
+        assertFalse(Files.exists(cache.fileFor(second)));
+        assertTrue(Files.exists(cache.fileFor(third)));
+        assertEquals(8, cache.getDiskBytes());
+    }
+
+    @Test
+    public void limitsDownloadsPerServer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            int now = running.computeIfAbsent(host, key -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(host, key -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.get(host).decrementAndGet();
+            exchange.sendResponseHeaders(200, 1);
+            exchange.getResponseBody().write(1);
+            exchange.close();
+        });
+        server.start();
+        int port = server.getAddress().getPort();
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        try {
+            ImageCache cache = new ImageCache(directory.resolve("cache"), 1024, 1024 * 1024, 2, 4);
+            List<Future<byte[]>> downloads = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                String url = "http://localhost:" + port + "/" + i + ".jpg";
+                downloads.add(clients.submit(() -> cache.getImageBytes(url)));
+            }
+            String otherServer = "http://127.0.0.1:" + port + "/other.jpg";
+            downloads.add(clients.submit(() -> cache.getImageBytes(otherServer)));
+            Thread.sleep(300);
+            assertEquals(2, running.get("localhost:" + port).get());
+            assertEquals(1, running.get("127.0.0.1:" + port).get());
+
+            release.countDown();
+            for (Future<byte[]> download : downloads) {
+                assertArrayEquals(new byte[]{1}, download.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, maxRunning.get("localhost:" + port).get());
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    private String picture(String name) throws IOException {
+        Path source = directory.resolve(name);
+        Files.write(source, new byte[]{1, 2, 3, 4});
+        return source.toUri().toString();
+    }
+}
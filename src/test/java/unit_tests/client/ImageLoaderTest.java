@@ -0,0 +1,73 @@
+package unit_tests.client;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.client.model.ImageLoader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageLoaderTest {
+
+    @Test
+    public void loadsAsManyPicturesAtOnceAsItHasThreads() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ImageLoader loader = new ImageLoader(url -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            await(release);
+            running.decrementAndGet();
+            return null;
+        }, 3);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            loader.load("https://perenual.com/" + i + ".jpg", i, image -> done.countDown());
+        }
+        Thread.sleep(100);
+        assertEquals(3, loader.getRunning());
+        assertEquals(5, loader.getPending());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    public void loadsVisiblePicturesFirstAndSkipsCancelled() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+        ImageLoader loader = new ImageLoader(url -> {
+            if (url.endsWith("first")) {
+                await(release);
+            }
+            loaded.add(url);
+            return null;
+        }, 1);
+        CountDownLatch done = new CountDownLatch(3);
+        loader.load("https://host/first", 0, image -> done.countDown());
+        loader.load("https://host/b", 1, image -> done.countDown());
+        ImageLoader.Request cancelled = loader.load("https://host/c", 2, image -> fail("cancelled picture was delivered"));
+        ImageLoader.Request scrolledTo = loader.load("https://host/a", 3, image -> done.countDown());
+        cancelled.cancel();
+        loader.prioritize(scrolledTo, ImageLoader.VISIBLE);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("https://host/first", "https://host/a", "https://host/b"), loaded);
+        assertTrue(cancelled.isCancelled());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
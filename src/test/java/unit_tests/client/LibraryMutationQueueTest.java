@@ -0,0 +1,182 @@
+package unit_tests.client;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.client.model.ClientExecutor;
+import se.myhappyplants.client.model.LibraryMutationQueue;
+import se.myhappyplants.client.model.LibraryMutationQueue.Result;
+import se.myhappyplants.shared.BatchOperation;
+import se.myhappyplants.shared.Plant;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryMutationQueueTest {
+
+    private static final LocalDate LAST_WEEK = LocalDate.now().minusDays(7);
+
+    private final List<List<BatchOperation>> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<Plant> rolledBack = Collections.synchronizedList(new ArrayList<>());
+
+    private LibraryMutationQueue queue(LibraryMutationQueue.Sender sender) {
+        return new LibraryMutationQueue((user, operations) -> {
+            sent.add(operations);
+            return sender.send(user, operations);
+        }, () -> null, Runnable::run, new ClientExecutor(1, 10), 60_000, 1, 3, rolledBack::addAll);
+    }
+
+    private static Plant plant(String nickname) {
+        return new Plant(nickname, "1", Date.valueOf(LAST_WEEK), 7, "", false);
+    }
+
+    private static List<Result> all(Result result, List<BatchOperation> operations) {
+        return new ArrayList<>(Collections.nCopies(operations.size(), result));
+    }
+
+    @Test
+    public void mergesChangesToTheSamePlant() throws Exception {
+        LibraryMutationQueue queue = queue((user, operations) -> all(Result.APPLIED, operations));
+        Plant plant = plant("Rose");
+        queue.water(plant, LocalDate.now().minusDays(1));
+        queue.water(plant, LocalDate.now());
+        queue.rename(plant, "Rosa");
+        queue.rename(plant, "Rosie");
+        queue.changeWateringFrequency(plant, 3);
+        assertEquals("Rosie", plant.getNickname());
+        assertEquals(1, queue.getUnsaved());
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(1, sent.size());
+        List<BatchOperation> operations = sent.get(0);
+        assertEquals(3, operations.size());
+        assertEquals(BatchOperation.Type.RENAME, operations.get(0).getType());
+        assertEquals("Rose", operations.get(0).getNickname());
+        assertEquals("Rosie", operations.get(0).getNewNickname());
+        assertEquals(BatchOperation.Type.WATER, operations.get(1).getType());
+        assertEquals("Rosie", operations.get(1).getNickname());
+        assertEquals(LocalDate.now(), operations.get(1).getDate());
+        assertEquals(3, operations.get(2).getWateringFrequency());
+        assertEquals(0, queue.getUnsaved());
+        assertTrue(rolledBack.isEmpty());
+    }
+
+    @Test
+    public void dropsChangesThatAreUndone() throws Exception {
+        LibraryMutationQueue queue = queue((user, operations) -> all(Result.APPLIED, operations));
+        Plant plant = plant("Rose");
+        queue.water(plant, LocalDate.now());
+        queue.water(plant, LAST_WEEK);
+        assertFalse(queue.water(plant, LocalDate.now().plusDays(1)));
+        assertEquals(0, queue.getUnsaved());
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void retriesWhenTheServerCantBeReached() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        LibraryMutationQueue queue = queue((user, operations) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("server is down");
+            }
+            return all(Result.APPLIED, operations);
+        });
+        Plant plant = plant("Rose");
+        queue.changeWateringFrequency(plant, 3);
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(3, attempts.get());
+        assertEquals(3, plant.getUsers_watering_frequency());
+        assertTrue(rolledBack.isEmpty());
+    }
+
+    @Test
+    public void keepsARenameWhoseResponseWasLost() throws Exception {
+        // a server holding one plant, which counts a rename to the name the plant already has as applied
+        List<String> serverNames = new ArrayList<>(List.of("Rose"));
+        AtomicInteger attempts = new AtomicInteger();
+        LibraryMutationQueue queue = queue((user, operations) -> {
+            List<Result> results = new ArrayList<>();
+            for (BatchOperation operation : operations) {
+                int index = serverNames.indexOf(operation.getNickname());
+                if (index >= 0) {
+                    serverNames.set(index, operation.getNewNickname());
+                }
+                results.add(index >= 0 || serverNames.contains(operation.getNewNickname()) ? Result.APPLIED : Result.REFUSED);
+            }
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("connection lost before the response");
+            }
+            return results;
+        });
+        Plant plant = plant("Rose");
+        queue.rename(plant, "Rosie");
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(2, attempts.get());
+        assertEquals("Rosie", plant.getNickname());
+        assertEquals(List.of("Rosie"), serverNames);
+        assertTrue(rolledBack.isEmpty());
+    }
+
+    @Test
+    public void undoesRefusedAndUnsentChanges() throws Exception {
+        LibraryMutationQueue queue = queue((user, operations) -> {
+            List<Result> results = all(Result.APPLIED, operations);
+            for (int i = 0; i < operations.size(); i++) {
+                if (operations.get(i).getType() == BatchOperation.Type.RENAME) {
+                    results.set(i, Result.REFUSED);
+                }
+            }
+            return results;
+        });
+        Plant renamed = plant("Rose");
+        Plant watered = plant("Aloe");
+        queue.rename(renamed, "Rosie");
+        queue.water(watered, LocalDate.now());
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        assertEquals("Rose", renamed.getNickname());
+        assertEquals(LocalDate.now(), watered.getLastWatered().toLocalDate());
+        assertEquals(List.of(renamed), rolledBack);
+
+        LibraryMutationQueue offline = queue((user, operations) -> {
+            throw new IOException("server is down");
+        });
+        offline.changeWateringFrequency(watered, 3);
+        offline.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(7, watered.getUsers_watering_frequency());
+        assertEquals(0, offline.getUnsaved());
+    }
+
+    @Test
+    public void renamesBeforeTheFreedNameIsTaken() throws Exception {
+        LibraryMutationQueue queue = queue((user, operations) -> all(Result.APPLIED, operations));
+        Plant first = plant("X");
+        Plant second = plant("Y");
+        queue.rename(first, "Z");
+        queue.rename(second, "W");
+        queue.rename(first, "Y");
+        queue.favorite(first, true);
+
+        queue.flush().get(5, TimeUnit.SECONDS);
+        List<BatchOperation> operations = sent.get(0);
+        assertEquals(3, operations.size());
+        assertEquals("Y", operations.get(0).getNickname());
+        assertEquals("W", operations.get(0).getNewNickname());
+        assertEquals("X", operations.get(1).getNickname());
+        assertEquals("Y", operations.get(1).getNewNickname());
+        assertEquals(BatchOperation.Type.FAVORITE, operations.get(2).getType());
+        assertTrue(operations.get(2).isFavorite());
+        assertEquals("Y", operations.get(2).getNickname());
+        assertTrue(first.getIsFavorite());
+    }
+}
@@ -0,0 +1,32 @@
+package unit_tests.client;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.client.model.ListSorter;
+import se.myhappyplants.shared.Plant;
+import se.myhappyplants.shared.SortingOption;
+
+import java.sql.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListSorterTest {
+
+    private static final Date TODAY = new Date(System.currentTimeMillis());
+
+    @Test
+    public void sortsPlantsInPlace() {
+        Plant rose = new Plant("rose", "1", TODAY, 7, "", false);
+        Plant monstera = new Plant("Monstera", "2", TODAY, 7, "", true);
+        Plant aloe = new Plant("aloe", "3", TODAY, 7, "", false);
+        ObservableList<Plant> plants = FXCollections.observableArrayList(rose, monstera, aloe);
+
+        assertSame(plants, ListSorter.sort(SortingOption.NICKNAME, plants));
+        assertEquals(List.of(aloe, monstera, rose), plants);
+
+        ListSorter.sort(SortingOption.FAVORITES, plants);
+        assertEquals(List.of(monstera, aloe, rose), plants);
+    }
+}
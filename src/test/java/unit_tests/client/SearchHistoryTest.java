@@ -0,0 +1,87 @@
+package unit_tests.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.myhappyplants.client.model.SearchHistory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void findsSubstringsMostUsedFirst() {
+        SearchHistory history = new SearchHistory(directory.resolve("history.txt"), 100);
+        history.add("Monstera");
+        history.add("Rose");
+        history.add("Monstera deliciosa");
+        history.add("Monstera deliciosa");
+
+        assertEquals(List.of("Monstera deliciosa", "Monstera"), history.find("mon", 10));
+        assertEquals(List.of("Monstera deliciosa", "Monstera"), history.find("STERA", 10));
+        assertEquals(List.of("Monstera deliciosa"), history.find("delic", 10));
+        assertEquals(List.of("Rose"), history.find("ros", 10));
+        assertTrue(history.find("tulip", 10).isEmpty());
+        assertEquals(1, history.find("mon", 1).size());
+    }
+
+    @Test
+    public void readsOldAndCompactedFiles() throws IOException {
+        Path file = directory.resolve("history.txt");
+        Files.write(file, List.of("rose", "3\tmonstera", "rose"));
+
+        SearchHistory history = new SearchHistory(file, 100);
+        assertEquals(2, history.size());
+        assertTrue(history.contains("Rose"));
+        assertEquals(List.of("monstera", "rose"), history.find("o", 10));
+
+        history.compact();
+        assertEquals(List.of("3\tmonstera", "2\trose"), Files.readAllLines(file));
+        assertEquals(List.of("monstera", "rose"), new SearchHistory(file, 100).find("o", 10));
+    }
+
+    @Test
+    public void appendsAndSurvivesRestart() {
+        Path file = directory.resolve("history.txt");
+        SearchHistory history = new SearchHistory(file, 100);
+        history.add("aloe vera");
+        history.add("cactus\n");
+
+        SearchHistory reloaded = new SearchHistory(file, 100);
+        assertTrue(reloaded.contains("aloe vera"));
+        assertTrue(reloaded.contains("cactus"));
+    }
+
+    @Test
+    public void forgetsLeastUsedWhenFull() {
+        SearchHistory history = new SearchHistory(directory.resolve("history.txt"), 2);
+        history.add("basil");
+        history.add("basil");
+        history.add("mint");
+        history.add("sage");
+
+        assertEquals(2, history.size());
+        assertTrue(history.contains("basil"));
+        assertFalse(history.contains("mint"));
+        assertEquals(List.of("sage"), history.find("s", 10).subList(1, 2));
+        assertTrue(history.find("min", 10).isEmpty());
+    }
+
+    @Test
+    public void compactsWhenFileGrows() throws IOException {
+        Path file = directory.resolve("history.txt");
+        SearchHistory history = new SearchHistory(file, 100);
+        for (int i = 0; i < 300; i++) {
+            history.add("fern");
+        }
+        assertTrue(Files.readAllLines(file).size() < 150);
+        assertEquals(List.of("fern"), new SearchHistory(file, 100).find("fer", 10));
+    }
+}
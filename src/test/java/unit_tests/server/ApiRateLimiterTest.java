@@ -0,0 +1,75 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.ApiPriority;
+import se.myhappyplants.server.services.ApiRateLimiter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApiRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(Duration.ofDays(20000).toMillis());
+
+    @Test
+    public void stopsWhenTheDailyBudgetIsUsedUp() {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 3, 0, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+        }
+        assertFalse(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+        assertEquals(0, rateLimiter.getRemainingDailyBudget());
+        assertEquals(1, rateLimiter.getRejected());
+
+        now.addAndGet(Duration.ofDays(1).toMillis());
+        assertEquals(3, rateLimiter.getRemainingDailyBudget());
+        assertTrue(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+    }
+
+    @Test
+    public void backgroundRequestsLeaveTheReserveForInteractiveRequests() {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 10, 0.5, now::get);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.acquire(ApiPriority.BACKGROUND).join());
+        }
+        assertFalse(rateLimiter.acquire(ApiPriority.BACKGROUND).join());
+        assertTrue(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+        assertEquals(4, rateLimiter.getRemainingDailyBudget());
+    }
+
+    @Test
+    public void interactiveRequestsGoFirstWhenTokensRunOut() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(20, 1, 100, 0);
+        assertTrue(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+
+        List<ApiPriority> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<Boolean> background = rateLimiter.acquire(ApiPriority.BACKGROUND);
+        background.thenRun(() -> order.add(ApiPriority.BACKGROUND));
+        CompletableFuture<Boolean> interactive = rateLimiter.acquire(ApiPriority.INTERACTIVE);
+        interactive.thenRun(() -> order.add(ApiPriority.INTERACTIVE));
+        assertEquals(2, rateLimiter.getQueued());
+
+        assertTrue(interactive.get(5, TimeUnit.SECONDS));
+        assertTrue(background.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(ApiPriority.INTERACTIVE, ApiPriority.BACKGROUND), order);
+    }
+
+    @Test
+    public void cancelledRequestsDontUseTheBudget() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(20, 1, 100, 0);
+        assertTrue(rateLimiter.acquire(ApiPriority.INTERACTIVE).join());
+
+        CompletableFuture<Boolean> gaveUp = rateLimiter.acquire(ApiPriority.INTERACTIVE);
+        CompletableFuture<Boolean> waiting = rateLimiter.acquire(ApiPriority.INTERACTIVE);
+        gaveUp.cancel(false);
+
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(2, rateLimiter.getUsedToday());
+    }
+}
@@ -0,0 +1,44 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.BkTree;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BkTreeTest {
+
+    @Test
+    public void computesEditDistance() {
+        assertEquals(0, BkTree.distance("ficus", "ficus"));
+        assertEquals(1, BkTree.distance("monstra", "monstera"));
+        assertEquals(1, BkTree.distance("lyratta", "lyrata"));
+        assertEquals(3, BkTree.distance("kitten", "sitting"));
+        assertEquals(5, BkTree.distance("", "ficus"));
+    }
+
+    @Test
+    public void findsEveryWordWithinTheDistance() {
+        BkTree tree = new BkTree();
+        for (String word : new String[]{"monstera", "monster", "ficus", "fiscus", "lyrata", "rosa", "rose", "rosa"}) {
+            tree.add(word);
+        }
+        assertEquals(7, tree.size());
+
+        Set<String> words = new TreeSet<>();
+        tree.search("monstra", 1).forEach(match -> words.add(match.getWord()));
+        assertEquals(Set.of("monstera"), words);
+
+        words.clear();
+        tree.search("monstra", 2).forEach(match -> words.add(match.getWord()));
+        assertEquals(Set.of("monstera", "monster"), words);
+
+        words.clear();
+        tree.search("rosy", 1).forEach(match -> words.add(match.getWord()));
+        assertEquals(Set.of("rosa", "rose"), words);
+
+        assertTrue(tree.search("cactus", 2).isEmpty());
+    }
+}
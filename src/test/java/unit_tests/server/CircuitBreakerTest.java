@@ -0,0 +1,71 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.CircuitBreaker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("details", 3, Duration.ofSeconds(30), now::get);
+
+    private void failCalls(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    @Test
+    public void opensAfterFailuresInARow() {
+        failCalls(2);
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordSuccess();
+        failCalls(2);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        failCalls(1);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+        assertEquals(1, circuitBreaker.getRejected());
+    }
+
+    @Test
+    public void halfOpenLetsOneTrialThrough() {
+        failCalls(3);
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void failedTrialOpensTheCircuitAgain() {
+        failCalls(3);
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void cancelledTrialLetsTheNextOneThrough() {
+        failCalls(3);
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.cancel();
+        assertTrue(circuitBreaker.allowRequest());
+    }
+}
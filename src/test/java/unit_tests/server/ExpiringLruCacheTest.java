@@ -0,0 +1,51 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.CacheStats;
+import se.myhappyplants.server.services.ExpiringLruCache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringLruCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(2, Duration.ofSeconds(10), now::get);
+
+    @Test
+    public void returnsFreshValues() {
+        cache.put("monstera", "result");
+        assertEquals("result", cache.get("monstera"));
+        assertNull(cache.get("ficus"));
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    public void expiredValuesAreOnlyReturnedAsStale() {
+        cache.put("monstera", "result");
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertNull(cache.get("monstera"));
+        assertEquals("result", cache.getStale("monstera"));
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        cache.put("monstera", "1");
+        cache.put("ficus", "2");
+        cache.get("monstera");
+        cache.put("aloe", "3");
+
+        assertNull(cache.getStale("ficus"));
+        assertEquals("1", cache.get("monstera"));
+        assertEquals("3", cache.get("aloe"));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.size());
+    }
+}
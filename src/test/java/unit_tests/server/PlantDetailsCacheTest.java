@@ -0,0 +1,56 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.myhappyplants.server.services.PlantDetailsCache;
+import se.myhappyplants.shared.PlantDetails;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlantDetailsCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void detailsSurviveARestart() {
+        PlantDetailsCache cache = new PlantDetailsCache(directory, 10);
+        cache.put("1234", new PlantDetails("Araceae", "Big leaves", "Average", List.of("full sun", "part shade"), "Monstera deliciosa"));
+        assertTrue(Files.exists(directory.resolve("1234.json")));
+
+        PlantDetailsCache restarted = new PlantDetailsCache(directory, 10);
+        PlantDetails plantDetails = restarted.get("1234");
+        assertNotNull(plantDetails);
+        assertEquals("Araceae", plantDetails.getFamilyName());
+        assertEquals("Monstera deliciosa", plantDetails.getScientificName());
+        assertEquals(List.of("full sun", "part shade"), plantDetails.getSunlight());
+        assertEquals(1, restarted.getDiskHits());
+
+        restarted.get("1234");
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals(1, restarted.getMemoryStats().getHits());
+    }
+
+    @Test
+    public void missingOrBrokenFilesAreMisses() throws IOException {
+        Files.writeString(directory.resolve("55.json"), "{\"familyName\":");
+        PlantDetailsCache cache = new PlantDetailsCache(directory, 10);
+        assertNull(cache.get("55"));
+        assertNull(cache.get("56"));
+        assertEquals(2, cache.getDiskMisses());
+    }
+
+    @Test
+    public void nonNumericIdsAreNotStoredOnDisk() throws IOException {
+        PlantDetailsCache cache = new PlantDetailsCache(directory, 10);
+        cache.put("../evil", new PlantDetails("a", "b", "c", List.of(), "d"));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.PooledDatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PooledDatabaseConnectionTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private PooledDatabaseConnection pool;
+
+    private Connection newConnection() throws SQLException {
+        created.incrementAndGet();
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.getAutoCommit()).thenReturn(true);
+        return connection;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void sameThreadKeepsConnectionUntilReleased() {
+        pool = new PooledDatabaseConnection(this::newConnection, 0, 2, 100, 60_000, 0);
+        Connection first = pool.getConnection();
+        assertSame(first, pool.getConnection());
+        assertEquals(1, pool.getBorrowedConnections());
+
+        pool.releaseConnection();
+        assertEquals(0, pool.getBorrowedConnections());
+        assertSame(first, pool.getConnection());
+        assertEquals(1, created.get());
+        pool.releaseConnection();
+    }
+
+    @Test
+    public void differentThreadsGetDifferentConnections() {
+        pool = new PooledDatabaseConnection(this::newConnection, 0, 2, 100, 60_000, 0);
+        Connection first = pool.getConnection();
+        Connection second = CompletableFuture.supplyAsync(() -> pool.getConnection()).join();
+        assertNotNull(second);
+        assertNotSame(first, second);
+        pool.releaseConnection();
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() {
+        pool = new PooledDatabaseConnection(this::newConnection, 0, 1, 50, 60_000, 0);
+        assertNotNull(pool.getConnection());
+        assertNull(CompletableFuture.supplyAsync(() -> pool.getConnection()).join());
+        pool.releaseConnection();
+    }
+
+    @Test
+    public void invalidConnectionIsReplacedOnBorrow() throws SQLException {
+        pool = new PooledDatabaseConnection(this::newConnection, 0, 1, 100, 60_000, 0);
+        Connection first = pool.getConnection();
+        pool.releaseConnection();
+        when(first.isValid(anyInt())).thenReturn(false);
+
+        Connection second = pool.getConnection();
+        assertNotSame(first, second);
+        verify(first).close();
+        assertEquals(1, pool.getTotalConnections());
+        pool.releaseConnection();
+    }
+
+    @Test
+    public void releaseRollsBackOpenTransaction() throws SQLException {
+        pool = new PooledDatabaseConnection(this::newConnection, 0, 1, 100, 60_000, 0);
+        Connection connection = pool.getConnection();
+        when(connection.getAutoCommit()).thenReturn(false);
+        pool.releaseConnection();
+
+        verify(connection).rollback();
+        verify(connection).setAutoCommit(true);
+        assertEquals(1, pool.getIdleConnections());
+    }
+}
@@ -0,0 +1,51 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.PrefixIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixIndexTest {
+
+    @Test
+    public void suggestsFromTheStartOfEveryWord() {
+        PrefixIndex index = new PrefixIndex(10, 100);
+        index.addIfAbsent("Monstera deliciosa");
+        index.addIfAbsent("Swiss cheese plant");
+
+        assertEquals(List.of("Monstera deliciosa"), index.suggest("mon", 10));
+        assertEquals(List.of("Monstera deliciosa"), index.suggest("DELI", 10));
+        assertEquals(List.of("Swiss cheese plant"), index.suggest("cheese p", 10));
+        assertTrue(index.suggest("ster", 10).isEmpty());
+        assertTrue(index.suggest(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void popularSuggestionsComeFirst() {
+        PrefixIndex index = new PrefixIndex(2, 100);
+        index.addIfAbsent("Rosa canina");
+        index.addIfAbsent("Rosemary");
+        index.addIfAbsent("Rose");
+        assertEquals(List.of("Rosa canina", "Rose"), index.suggest("ros", 10));
+
+        index.add("rosemary", 3);
+        index.add("rose", 5);
+        assertEquals(List.of("Rose", "Rosemary"), index.suggest("ros", 10));
+        assertEquals(List.of("Rose"), index.suggest("ros", 1));
+
+        index.addIfAbsent("ROSE");
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void stopsGrowingAtMaxTerms() {
+        PrefixIndex index = new PrefixIndex(10, 2);
+        index.addIfAbsent("Ficus");
+        index.addIfAbsent("Fig");
+        index.add("Fittonia", 10);
+        assertEquals(2, index.size());
+        assertEquals(List.of("Ficus", "Fig"), index.suggest("fi", 10));
+    }
+}
@@ -0,0 +1,69 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.PreparedStatementCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PreparedStatementCacheTest {
+
+    private Connection connection;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private PreparedStatementCache cache;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+        cache = new PreparedStatementCache(connection, 2, hits, misses);
+    }
+
+    @Test
+    public void reusesStatementForSameQuery() throws SQLException {
+        PreparedStatement first = cache.getStatement("SELECT 1");
+        PreparedStatement second = cache.getStatement("SELECT 1");
+        assertSame(first, second);
+        verify(connection, times(1)).prepareStatement("SELECT 1");
+        verify(second).clearParameters();
+        assertEquals(1, hits.get());
+        assertEquals(1, misses.get());
+    }
+
+    @Test
+    public void evictsAndClosesLeastRecentlyUsed() throws SQLException {
+        PreparedStatement first = cache.getStatement("SELECT 1");
+        PreparedStatement second = cache.getStatement("SELECT 2");
+        cache.getStatement("SELECT 1");
+        cache.getStatement("SELECT 3");
+
+        assertEquals(2, cache.size());
+        verify(second).close();
+        verify(first, never()).close();
+    }
+
+    @Test
+    public void closedStatementIsPreparedAgain() throws SQLException {
+        PreparedStatement first = cache.getStatement("SELECT 1");
+        when(first.isClosed()).thenReturn(true);
+        assertNotSame(first, cache.getStatement("SELECT 1"));
+        assertEquals(2, misses.get());
+    }
+
+    @Test
+    public void closeClosesAllStatements() throws SQLException {
+        PreparedStatement first = cache.getStatement("SELECT 1");
+        PreparedStatement second = cache.getStatement("SELECT 2");
+        cache.close();
+        verify(first).close();
+        verify(second).close();
+        assertEquals(0, cache.size());
+    }
+}
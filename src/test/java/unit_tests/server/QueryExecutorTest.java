@@ -0,0 +1,73 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.IDatabaseConnection;
+import se.myhappyplants.server.services.QueryExecutor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class QueryExecutorTest {
+
+    private IDatabaseConnection databaseConnection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        Connection connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        databaseConnection = mock(IDatabaseConnection.class);
+        when(databaseConnection.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString(1)).thenReturn("Monstera", "Ficus");
+    }
+
+    @Test
+    public void queryMapsRowsAndClosesEverything() throws SQLException {
+        QueryExecutor queryExecutor = new QueryExecutor(databaseConnection);
+        List<String> names = queryExecutor.query("SELECT nickname FROM user_plants WHERE user_id = ?",
+                ps -> ps.setInt(1, 7), rs -> rs.getString(1), 50);
+
+        assertEquals(List.of("Monstera", "Ficus"), names);
+        verify(statement).setInt(1, 7);
+        verify(statement).setFetchSize(50);
+        verify(resultSet).close();
+        verify(statement).close();
+    }
+
+    @Test
+    public void queryKeepsCachedStatementOpen() throws SQLException {
+        QueryExecutor queryExecutor = new QueryExecutor(databaseConnection, 8);
+        queryExecutor.query("SELECT nickname FROM user_plants", null, rs -> rs.getString(1));
+
+        verify(resultSet).close();
+        verify(statement, never()).close();
+        assertEquals(1, queryExecutor.getStatementCacheMisses());
+    }
+
+    @Test
+    public void executeBatchSendsEveryRunOnce() throws SQLException {
+        when(statement.executeBatch()).thenReturn(new int[]{1, 0});
+        QueryExecutor queryExecutor = new QueryExecutor(databaseConnection);
+        int[] counts = queryExecutor.executeBatch("UPDATE user_plants SET watering_frequency = ? WHERE nickname = ?",
+                List.of(ps -> ps.setInt(1, 3), ps -> ps.setInt(1, 5)));
+
+        assertArrayEquals(new int[]{1, 0}, counts);
+        verify(statement).setInt(1, 3);
+        verify(statement).setInt(1, 5);
+        verify(statement, times(2)).addBatch();
+        verify(statement).executeBatch();
+        verify(statement).close();
+    }
+}
@@ -0,0 +1,97 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.client.view.MultiplexedConnection;
+import se.myhappyplants.server.controller.ResponseController;
+import se.myhappyplants.server.services.ExecutionMode;
+import se.myhappyplants.server.services.NioServer;
+import se.myhappyplants.server.services.PlantApiService;
+import se.myhappyplants.server.services.Server;
+import se.myhappyplants.server.services.UserPlantRepository;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageCodecs;
+import se.myhappyplants.shared.MessageType;
+import se.myhappyplants.shared.Plant;
+import se.myhappyplants.shared.SortingOption;
+import se.myhappyplants.shared.User;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ResponseControllerAsyncTest {
+
+    private final PlantApiService plantApiService = mock(PlantApiService.class);
+    private final ResponseController responseController = new ResponseController(null, null, plantApiService);
+
+    @Test
+    public void searchCompletesWhenTheApiAnswers() {
+        CompletableFuture<Optional<List<Plant>>> apiResponse = new CompletableFuture<>();
+        when(plantApiService.getPlantsAsync("monstera", SortingOption.COMMON_NAME)).thenReturn(apiResponse);
+        Message request = new Message(MessageType.search, "monstera", SortingOption.COMMON_NAME);
+        request.setRequestId(7);
+
+        CompletableFuture<Message> response = responseController.getResponseAsync(request);
+        assertFalse(response.isDone());
+
+        apiResponse.complete(Optional.of(List.of(new Plant("1", "Monstera", "Monstera deliciosa", "m.jpg"))));
+        Message message = response.join();
+        assertTrue(message.isSuccess());
+        assertEquals(7, message.getRequestId());
+        assertEquals(1, message.getPlantArray().size());
+        verify(plantApiService, never()).getPlants(anyString(), any());
+    }
+
+    @Test
+    public void failedApiCallGivesUnsuccessfulResponse() {
+        when(plantApiService.getPlantDetailsAsync(any(Plant.class))).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("down")));
+        Message request = new Message(MessageType.getMorePlantInfo, new Plant("12", "Monstera", "Monstera deliciosa", "m.jpg"));
+
+        Message message = responseController.getResponseAsync(request).join();
+        assertFalse(message.isSuccess());
+    }
+
+    @Test
+    public void failingHandlerGivesUnsuccessfulResponseOverBothServers() throws IOException {
+        UserPlantRepository userPlantRepository = mock(UserPlantRepository.class);
+        when(userPlantRepository.getUserLibrary(any())).thenThrow(new IllegalStateException("database down"));
+        when(plantApiService.getPlantsAsync("monstera", SortingOption.COMMON_NAME))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(List.of(new Plant("1", "Monstera", "Monstera deliciosa", "m.jpg")))));
+        ResponseController failingController = new ResponseController(null, userPlantRepository, plantApiService);
+
+        int threadedPort = freePort();
+        Server server = new Server(threadedPort, failingController, ExecutionMode.FIXED_POOL, 2);
+        int nioPort = freePort();
+        NioServer nioServer = new NioServer(nioPort, failingController, ExecutionMode.FIXED_POOL, 2);
+        try {
+            for (int port : new int[]{threadedPort, nioPort}) {
+                MultiplexedConnection connection = new MultiplexedConnection("localhost", port, true, MessageCodecs.BINARY, 5000);
+                try {
+                    Message failed = connection.request(new Message(MessageType.getLibrary, new User(5, "a@b.se", "anna", false, true)));
+                    assertFalse(failed.isSuccess());
+                    // the connection is still open for the next request
+                    Message next = connection.request(new Message(MessageType.search, "monstera", SortingOption.COMMON_NAME));
+                    assertTrue(next.isSuccess());
+                }
+                finally {
+                    connection.close();
+                }
+            }
+        }
+        finally {
+            server.shutdown();
+            nioServer.shutdown();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.model.ResponseHandlers.Search;
+import se.myhappyplants.server.services.PlantApiService;
+import se.myhappyplants.shared.Message;
+import se.myhappyplants.shared.MessageType;
+import se.myhappyplants.shared.Plant;
+import se.myhappyplants.shared.SortingOption;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SearchPagingTest {
+
+    private final PlantApiService plantApiService = mock(PlantApiService.class);
+    private final Search search = new Search(plantApiService);
+
+    public SearchPagingTest() {
+        List<Plant> plants = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            plants.add(new Plant(String.valueOf(i), "Rose " + i, "Rosa " + i, "https://img/" + i + ".jpg"));
+        }
+        when(plantApiService.getPlants("rose", SortingOption.COMMON_NAME)).thenReturn(Optional.of(plants));
+        when(plantApiService.getPlantsAsync("rose", SortingOption.COMMON_NAME)).thenReturn(CompletableFuture.completedFuture(Optional.of(plants)));
+    }
+
+    @Test
+    public void returnsTheAskedPage() {
+        Message response = search.getResponse(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 15, 15));
+        assertTrue(response.isSuccess());
+        assertEquals(15, response.getPlantArray().size());
+        assertEquals("15", response.getPlantArray().get(0).getPlantId());
+        assertEquals(15, response.getOffset());
+        assertEquals(40, response.getTotalResults());
+    }
+
+    @Test
+    public void lastPageIsShortAndPagesAfterItAreEmpty() {
+        Message last = search.getResponseAsync(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 30, 15)).join();
+        assertEquals(10, last.getPlantArray().size());
+        assertEquals(40, last.getTotalResults());
+
+        Message after = search.getResponseAsync(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 45, 15)).join();
+        assertTrue(after.getPlantArray().isEmpty());
+    }
+
+    @Test
+    public void requestsWithoutLimitGetAllResults() {
+        Message response = search.getResponse(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME));
+        assertEquals(40, response.getPlantArray().size());
+    }
+
+    @Test
+    public void onlyNewSearchesAreCounted() {
+        search.getResponse(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 0, 15));
+        search.getResponse(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 15, 15));
+        search.getResponseAsync(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 0, 15, true)).join();
+        verify(plantApiService, times(1)).recordSearch("rose");
+    }
+}
@@ -0,0 +1,129 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.myhappyplants.server.services.SpeciesCatalog;
+import se.myhappyplants.shared.Plant;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpeciesCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<Plant> monsteras = List.of(
+            new Plant("1", "Swiss cheese plant", "Monstera deliciosa", "https://img/1.jpg"),
+            new Plant("2", "Monkey mask", "Monstera adansonii", "https://img/2.jpg"));
+
+    private static List<String> ids(List<Plant> plants) {
+        List<String> ids = new ArrayList<>();
+        for (Plant plant : plants) {
+            ids.add(plant.getPlantId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void findsSpeciesOnCommonAndScientificName() {
+        SpeciesCatalog catalog = new SpeciesCatalog(null);
+        catalog.addSearchResult("monstera", monsteras);
+        catalog.addSearchResult("fig", List.of(new Plant("3", "Fiddle-leaf fig", "Ficus lyrata", "https://img/3.jpg")));
+
+        assertEquals(List.of("1", "2"), ids(catalog.search("monstera")));
+        assertEquals(List.of("2"), ids(catalog.search("monkey")));
+        assertEquals(List.of("3"), ids(catalog.search("ficus lyr")));
+        assertEquals(List.of("1"), ids(catalog.search("ch")));
+        assertTrue(catalog.search("rose").isEmpty());
+        assertTrue(catalog.search("plantmonstera").isEmpty());
+    }
+
+    @Test
+    public void repeatedSearchesGetTheCompleteResultOfTheApi() {
+        SpeciesCatalog catalog = new SpeciesCatalog(null);
+        List<Plant> apiResult = new ArrayList<>(monsteras);
+        // the API also matches names the catalog doesn't know, like synonyms
+        apiResult.add(new Plant("5", "Split-leaf philodendron", "Thaumatophyllum bipinnatifidum", "https://img/5.jpg"));
+        catalog.addSearchResult("monstera", apiResult);
+
+        assertEquals(List.of("1", "2", "5"), ids(catalog.getCompleteResult("monstera")));
+        assertEquals(List.of("1", "2"), ids(catalog.search("monstera")));
+        assertNull(catalog.getCompleteResult("monstera deliciosa"));
+        assertNull(catalog.getCompleteResult("monst"));
+        assertNull(catalog.getCompleteResult("ficus"));
+
+        List<Plant> fullPage = new ArrayList<>();
+        for (int i = 0; i < SpeciesCatalog.API_PAGE_SIZE; i++) {
+            fullPage.add(new Plant(String.valueOf(100 + i), "Rose " + i, "Rosa " + i, "https://img/r.jpg"));
+        }
+        catalog.addSearchResult("rose", fullPage);
+        assertNull(catalog.getCompleteResult("rose"));
+        assertEquals(SpeciesCatalog.API_PAGE_SIZE, catalog.search("rose").size());
+    }
+
+    @Test
+    public void renamedSpeciesAreOnlyFoundOnTheirNewName() {
+        SpeciesCatalog catalog = new SpeciesCatalog(null);
+        catalog.addSearchResult("monstera", monsteras);
+        catalog.addSearchResult("cheese", List.of(new Plant("1", "Split-leaf philodendron", "Monstera deliciosa", "https://img/1.jpg")));
+
+        assertEquals(2, catalog.size());
+        assertTrue(catalog.search("cheese").isEmpty());
+        assertEquals(List.of("1"), ids(catalog.search("philodendron")));
+    }
+
+    @Test
+    public void catalogSurvivesARestart() {
+        Path file = directory.resolve("species-catalog.json");
+        SpeciesCatalog catalog = new SpeciesCatalog(file);
+        catalog.addSearchResult("monstera", monsteras);
+        catalog.flush();
+
+        SpeciesCatalog restarted = new SpeciesCatalog(file);
+        assertEquals(2, restarted.size());
+        assertEquals(List.of("1", "2"), ids(restarted.getCompleteResult("monstera")));
+        assertEquals("https://img/2.jpg", restarted.search("adansonii").get(0).getImageURL());
+    }
+
+    @Test
+    public void completeSearchesExpire() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        Path file = directory.resolve("species-catalog.json");
+        SpeciesCatalog catalog = new SpeciesCatalog(file, Duration.ofMinutes(10), now::get);
+        catalog.addSearchResult("monstera", monsteras);
+        assertFalse(Files.exists(file));
+        catalog.flush();
+
+        now.addAndGet(Duration.ofMinutes(9).toMillis());
+        assertNotNull(catalog.getCompleteResult("monstera"));
+        assertNotNull(new SpeciesCatalog(file, Duration.ofMinutes(10), now::get).getCompleteResult("monstera"));
+
+        now.addAndGet(Duration.ofMinutes(2).toMillis());
+        assertNull(catalog.getCompleteResult("monstera"));
+        assertNull(new SpeciesCatalog(file, Duration.ofMinutes(10), now::get).getCompleteResult("monstera"));
+        assertEquals(2, catalog.search("monstera").size());
+    }
+
+    @Test
+    public void fuzzySearchToleratesTypos() {
+        SpeciesCatalog catalog = new SpeciesCatalog(null);
+        catalog.addSearchResult("monstera", monsteras);
+        catalog.addSearchResult("fig", List.of(
+                new Plant("3", "Fiddle-leaf fig", "Ficus lyrata", "https://img/3.jpg"),
+                new Plant("4", "Weeping fig", "Ficus benjamina", "https://img/4.jpg")));
+
+        assertEquals(List.of("2", "1"), ids(catalog.fuzzySearch("monstra", 10)));
+        assertEquals(List.of("3"), ids(catalog.fuzzySearch("ficus lyratta", 10)));
+        assertEquals(List.of("4"), ids(catalog.fuzzySearch("weping", 10)));
+        assertEquals(1, catalog.fuzzySearch("fig", 1).size());
+        assertTrue(catalog.fuzzySearch("fog", 10).isEmpty());
+        assertTrue(catalog.fuzzySearch("cactus", 10).isEmpty());
+    }
+}
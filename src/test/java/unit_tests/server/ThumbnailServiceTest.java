@@ -0,0 +1,102 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.myhappyplants.server.services.ThumbnailService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private static byte[] picture(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private ThumbnailService service(long maxDiskBytes) throws IOException {
+        byte[] original = picture(800, 400);
+        return new ThumbnailService(directory, maxDiskBytes, Set.of("perenual.com"), url -> {
+            downloads.incrementAndGet();
+            return CompletableFuture.completedFuture(original);
+        });
+    }
+
+    @Test
+    public void scalesDownKeepingProportions() throws IOException {
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(
+                service(1024 * 1024).getThumbnail("https://perenual.com/storage/1.jpg", 70)));
+        assertEquals(70, thumbnail.getWidth());
+        assertEquals(35, thumbnail.getHeight());
+    }
+
+    @Test
+    public void doesNotScaleUp() throws IOException {
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(ThumbnailService.scale(picture(40, 20), 70)));
+        assertEquals(40, thumbnail.getWidth());
+        assertEquals(20, thumbnail.getHeight());
+    }
+
+    @Test
+    public void downloadsEachPictureOnce() throws IOException {
+        ThumbnailService service = service(1024 * 1024);
+        byte[] first = service.getThumbnail("https://cdn.perenual.com/storage/1.jpg", 70);
+        byte[] second = service.getThumbnail("https://cdn.perenual.com/storage/1.jpg", 70);
+        assertArrayEquals(first, second);
+        assertEquals(1, downloads.get());
+        assertEquals(1, service.getDiskHits());
+
+        ThumbnailService restarted = service(1024 * 1024);
+        restarted.getThumbnail("https://cdn.perenual.com/storage/1.jpg", 70);
+        assertEquals(1, downloads.get());
+
+        service.getThumbnail("https://cdn.perenual.com/storage/1.jpg", 140);
+        assertEquals(2, downloads.get());
+    }
+
+    @Test
+    public void onlyFetchesFromAllowedHosts() throws IOException {
+        ThumbnailService service = service(1024 * 1024);
+        assertThrows(CompletionException.class, () -> service.getThumbnail("http://localhost:8080/admin", 70));
+        assertThrows(CompletionException.class, () -> service.getThumbnail("https://perenual.com.evil.se/1.jpg", 70));
+        assertThrows(CompletionException.class, () -> service.getThumbnail("file:///etc/passwd", 70));
+        assertEquals(0, downloads.get());
+    }
+
+    @Test
+    public void trimsDirectoryToLimit() throws IOException {
+        ThumbnailService probe = new ThumbnailService(directory.resolve("probe"), Long.MAX_VALUE, Set.of("perenual.com"),
+                url -> CompletableFuture.completedFuture(uncheckedPicture()));
+        long thumbnailBytes = probe.getThumbnail("https://perenual.com/0.jpg", 70).length;
+
+        ThumbnailService service = service(thumbnailBytes * 4);
+        for (int i = 0; i < 10; i++) {
+            service.getThumbnail("https://perenual.com/" + i + ".jpg", 70);
+        }
+        assertTrue(service.getDiskBytes() <= thumbnailBytes * 4);
+    }
+
+    private static byte[] uncheckedPicture() {
+        try {
+            return picture(800, 400);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package unit_tests.server;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.server.services.IQueryExecutor;
+import se.myhappyplants.server.services.UserPlantRepository;
+import se.myhappyplants.shared.BatchOperation;
+import se.myhappyplants.shared.User;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UserPlantRepositoryBatchTest {
+
+    private final User user = new User(5, "a@b.se", "anna", false, true);
+
+    @Test
+    public void appliesFollowingChangesOfOneKindAsOneBatch() throws Exception {
+        IQueryExecutor database = mock(IQueryExecutor.class);
+        when(database.executeBatch(startsWith("UPDATE user_plants SET nickname"), anyList())).thenReturn(new int[]{1});
+        when(database.executeBatch(startsWith("UPDATE user_plants SET last_watered"), anyList())).thenReturn(new int[]{1, 0});
+        when(database.executeBatch(startsWith("DELETE"), anyList())).thenReturn(new int[]{1});
+        UserPlantRepository repository = new UserPlantRepository(database);
+
+        boolean[] applied = repository.applyBatch(user, List.of(
+                BatchOperation.rename("Kalle", "Olle"),
+                BatchOperation.water("Olle", LocalDate.now()),
+                BatchOperation.water("Missing", LocalDate.now()),
+                BatchOperation.water(null, LocalDate.now()),
+                BatchOperation.delete("Pelle")));
+
+        assertArrayEquals(new boolean[]{true, true, false, false, true}, applied);
+        verify(database, times(3)).executeBatch(anyString(), anyList());
+        verify(database).beginTransaction();
+        verify(database).endTransaction();
+        verify(database, never()).rollbackTransaction();
+    }
+
+    @Test
+    public void rollsBackEverythingWhenABatchFails() throws Exception {
+        IQueryExecutor database = mock(IQueryExecutor.class);
+        when(database.executeBatch(startsWith("UPDATE user_plants SET nickname"), anyList())).thenReturn(new int[]{1});
+        when(database.executeBatch(startsWith("UPDATE user_plants SET is_favorite"), anyList())).thenThrow(new SQLException("broken"));
+        UserPlantRepository repository = new UserPlantRepository(database);
+
+        boolean[] applied = repository.applyBatch(user, List.of(
+                BatchOperation.rename("Kalle", "Olle"),
+                BatchOperation.favorite("Olle", true)));
+
+        assertArrayEquals(new boolean[]{false, false}, applied);
+        verify(database).rollbackTransaction();
+        verify(database, never()).endTransaction();
+    }
+
+    @Test
+    public void renameSentAgainAfterALostResponseCountsAsApplied() throws Exception {
+        IQueryExecutor database = mock(IQueryExecutor.class);
+        when(database.executeBatch(startsWith("UPDATE user_plants SET nickname"), anyList())).thenReturn(new int[]{0, 0});
+        when(database.query(startsWith("SELECT nickname"), any(), any())).thenReturn(List.of("Olle"), List.of());
+        UserPlantRepository repository = new UserPlantRepository(database);
+
+        boolean[] applied = repository.applyBatch(user, List.of(
+                BatchOperation.rename("Kalle", "Olle"),
+                BatchOperation.rename("Missing", "Nobody")));
+
+        assertArrayEquals(new boolean[]{true, false}, applied);
+        verify(database).endTransaction();
+    }
+}
@@ -0,0 +1,150 @@
+package unit_tests.shared;
+
+import org.junit.jupiter.api.Test;
+import se.myhappyplants.shared.*;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryMessageCodecTest {
+
+    private final MessageCodec codec = MessageCodecs.BINARY;
+
+    private Message roundTrip(Message message) throws IOException {
+        return codec.decode(codec.encode(message));
+    }
+
+    @Test
+    public void roundTripsLibraryResponse() throws IOException {
+        List<Plant> plants = new ArrayList<>();
+        plants.add(new Plant(12, "Kalle", "4031", Date.valueOf("2024-03-01"), 7, "https://img/1.jpg", true));
+        plants.add(new Plant(13, "Åsa", "88", Date.valueOf("1900-01-01"), 0, null, false));
+        Message response = new Message(plants, true);
+        response.setRequestId(42);
+
+        Message decoded = roundTrip(response);
+        assertTrue(decoded.isSuccess());
+        assertEquals(42, decoded.getRequestId());
+        assertEquals(2, decoded.getPlantArray().size());
+        assertEquals(plants.get(0).toString(), decoded.getPlantArray().get(0).toString());
+        assertEquals(plants.get(1).toString(), decoded.getPlantArray().get(1).toString());
+        assertEquals(12, decoded.getPlantArray().get(0).getDatabaseId());
+        assertEquals("https://img/1.jpg", decoded.getPlantArray().get(0).getImageURL());
+    }
+
+    @Test
+    public void roundTripsRequestWithUserAndDate() throws IOException {
+        User user = new User(5, "a@b.se", "anna", false, true);
+        user.setPassword("secret");
+        Message request = new Message(MessageType.changeLastWatered, user, new Plant("Kalle", "4031", Date.valueOf("2024-03-01")), LocalDate.of(2024, 3, 2));
+
+        Message decoded = roundTrip(request);
+        assertEquals(MessageType.changeLastWatered, decoded.getMessageType());
+        assertEquals(LocalDate.of(2024, 3, 2), decoded.getDate());
+        assertEquals(5, decoded.getUser().getUniqueId());
+        assertEquals("a@b.se", decoded.getUser().getEmail());
+        assertEquals("anna", decoded.getUser().getUsername());
+        assertEquals("secret", decoded.getUser().getPassword());
+        assertFalse(decoded.getUser().areNotificationsActivated());
+        assertTrue(decoded.getUser().getFunFactsActivated());
+        assertEquals("Kalle", decoded.getPlant().getNickname());
+    }
+
+    @Test
+    public void roundTripsSearchAndDetails() throws IOException {
+        Message search = roundTrip(new Message(MessageType.search, "monstera", SortingOption.WATER_NEED));
+        assertEquals("monstera", search.getMessageText());
+        assertEquals(SortingOption.WATER_NEED, search.getSortingOption());
+
+        List<String> sunlight = List.of("full sun", "part shade");
+        Message details = roundTrip(new Message(new PlantDetails("Araceae", "Big leaves", "Average", sunlight, "Monstera deliciosa"), true));
+        assertEquals("Araceae", details.getPlantDetails().getFamilyName());
+        assertEquals("Monstera deliciosa", details.getPlantDetails().getScientificName());
+        assertEquals(sunlight, details.getPlantDetails().getSunlight());
+    }
+
+    @Test
+    public void roundTripsPagingFields() throws IOException {
+        Message request = roundTrip(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 30, 15));
+        assertEquals(30, request.getOffset());
+        assertEquals(15, request.getLimit());
+
+        Message response = roundTrip(new Message(new ArrayList<>(), 30, 42, true));
+        assertEquals(30, response.getOffset());
+        assertEquals(42, response.getTotalResults());
+        assertEquals(0, response.getLimit());
+        assertFalse(request.isSortOnly());
+        assertTrue(roundTrip(new Message(MessageType.search, "rose", SortingOption.COMMON_NAME, 0, 15, true)).isSortOnly());
+    }
+
+    @Test
+    public void roundTripsSuggestions() throws IOException {
+        Message response = roundTrip(new Message(MessageType.autocomplete, List.of("Monstera", "Monstera deliciosa"), true));
+        assertEquals(MessageType.autocomplete, response.getMessageType());
+        assertEquals(List.of("Monstera", "Monstera deliciosa"), response.getSuggestions());
+        assertNull(roundTrip(new Message(MessageType.autocomplete, "mon")).getSuggestions());
+    }
+
+    @Test
+    public void roundTripsThumbnails() throws IOException {
+        Message request = roundTrip(new Message(MessageType.getThumbnail, "https://perenual.com/1.jpg", 70));
+        assertEquals(MessageType.getThumbnail, request.getMessageType());
+        assertEquals("https://perenual.com/1.jpg", request.getMessageText());
+        assertEquals(70, request.getImageSize());
+
+        byte[] thumbnail = {(byte) 0xFF, (byte) 0xD8, 0, 1, 2};
+        Message response = roundTrip(new Message(MessageType.getThumbnail, thumbnail, true));
+        assertArrayEquals(thumbnail, response.getImageData());
+        assertNull(request.getImageData());
+    }
+
+    @Test
+    public void roundTripsBatches() throws IOException {
+        User user = new User(5, "a@b.se", "anna", false, true);
+        List<BatchOperation> operations = List.of(
+                BatchOperation.rename("Kalle", "Olle"),
+                BatchOperation.water("Olle", LocalDate.of(2024, 3, 1)),
+                BatchOperation.wateringFrequency("Olle", 3),
+                BatchOperation.favorite("Fia", true),
+                BatchOperation.delete("Pelle"));
+        List<BatchOperation> decoded = roundTrip(new Message(MessageType.batch, user, operations)).getBatchOperations();
+        assertEquals(5, decoded.size());
+        assertEquals(BatchOperation.Type.RENAME, decoded.get(0).getType());
+        assertEquals("Kalle", decoded.get(0).getNickname());
+        assertEquals("Olle", decoded.get(0).getNewNickname());
+        assertEquals(LocalDate.of(2024, 3, 1), decoded.get(1).getDate());
+        assertEquals(3, decoded.get(2).getWateringFrequency());
+        assertTrue(decoded.get(3).isFavorite());
+        assertEquals(BatchOperation.Type.DELETE, decoded.get(4).getType());
+        assertEquals("Pelle", decoded.get(4).getNickname());
+
+        Message response = roundTrip(new Message(new boolean[]{true, false, true}, false));
+        assertArrayEquals(new boolean[]{true, false, true}, response.getBatchResults());
+        assertNull(response.getBatchOperations());
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws IOException {
+        List<Plant> plants = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            plants.add(new Plant(i, "Plant " + i, String.valueOf(i), Date.valueOf("2024-03-01"), 7, "https://img/" + i + ".jpg", i % 2 == 0));
+        }
+        Message response = new Message(plants, true);
+        int binary = codec.encode(response).length;
+        int java = MessageCodecs.JAVA_SERIALIZATION.encode(response).length;
+        assertTrue(binary * 2 < java, "binary " + binary + " bytes, java " + java + " bytes");
+    }
+
+    @Test
+    public void rejectsTruncatedMessage() throws IOException {
+        byte[] encoded = codec.encode(new Message(MessageType.search, "monstera", SortingOption.COMMON_NAME));
+        byte[] truncated = new byte[encoded.length - 3];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> codec.decode(truncated));
+    }
+}